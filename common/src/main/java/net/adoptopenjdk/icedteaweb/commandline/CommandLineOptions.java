@@ -12,6 +12,10 @@ public enum CommandLineOptions {
     VIEWER("-viewer", "BOViewer"),
     CLEARCACHE("-Xclearcache", "BXclearcache", NumberOfArguments.NONE_OR_ONE),
     LISTCACHEIDS("-Xcacheids", "BXcacheids", NumberOfArguments.NONE_OR_ONE),
+    CACHEEXPORT("-Xcacheexport", "file", "BXcacheexport", NumberOfArguments.ONE),
+    CACHEIMPORT("-Xcacheimport", "file", "BXcacheimport", NumberOfArguments.ONE),
+    CACHESTATS("-Xcachestats", "BXcachestats"),
+    CACHEVERIFY("-Xcacheverify", "BXcacheverify", NumberOfArguments.NONE_OR_ONE),
     LICENSE("-license", "BOLicense"),
     HELP1("-help", "BOHelp1"),
     //javaws run-options
@@ -71,6 +71,10 @@ public class CommandLineOptionsDefinition {
                 CommandLineOptions.VIEWER,
                 CommandLineOptions.CLEARCACHE,
                 CommandLineOptions.LISTCACHEIDS,
+                CommandLineOptions.CACHEEXPORT,
+                CommandLineOptions.CACHEIMPORT,
+                CommandLineOptions.CACHESTATS,
+                CommandLineOptions.CACHEVERIFY,
                 CommandLineOptions.LICENSE,
                 CommandLineOptions.HELP1);
     }
@@ -101,6 +101,13 @@ public abstract class LockingReaderWriter {
         }
     }
 
+    /**
+     * @return if the current thread holds the lock of the underlying storage.
+     */
+    public boolean isHeldByCurrentThread() {
+        return lockableFile.isHeldByCurrentThread();
+    }
+
     /**
      * Writes stored contents to file. Assumes lock is held.
      *
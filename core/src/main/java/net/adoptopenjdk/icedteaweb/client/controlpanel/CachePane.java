@@ -23,7 +23,6 @@ import net.adoptopenjdk.icedteaweb.io.FileUtils;
 import net.adoptopenjdk.icedteaweb.logging.Logger;
 import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
 import net.adoptopenjdk.icedteaweb.resources.cache.Cache;
-import net.adoptopenjdk.icedteaweb.resources.cache.CacheId;
 import net.adoptopenjdk.icedteaweb.resources.cache.ResourceInfo;
 import net.adoptopenjdk.icedteaweb.ui.swing.SwingUtils;
 import net.sourceforge.jnlp.config.DeploymentConfiguration;
@@ -32,17 +31,20 @@ import net.sourceforge.jnlp.config.PathsAndFiles;
 import javax.swing.JButton;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextArea;
+import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.TableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.Cursor;
@@ -55,6 +57,8 @@ import java.awt.SystemColor;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -63,7 +67,6 @@ import java.nio.channels.FileLock;
 import java.text.DateFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 
 public class CachePane extends JPanel {
@@ -99,7 +102,7 @@ public class CachePane extends JPanel {
         final GridBagConstraints c = new GridBagConstraints();
         c.fill = GridBagConstraints.BOTH;
 
-        final TableModel model = new CacheTableModel();
+        final CacheTableModel model = new CacheTableModel();
 
         cacheTable = new JTable(model);
         cacheTable.getSelectionModel().setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -122,18 +125,17 @@ public class CachePane extends JPanel {
         cacheTable.setFillsViewportHeight(true);
         JScrollPane scrollPane = new JScrollPane(cacheTable);
 
-        TableRowSorter<TableModel> tableSorter = new TableRowSorter<>(model);
-        final Comparator<Comparable<?>> comparator = new Comparator<Comparable<?>>() { // General purpose Comparator
+        // sorting and filtering is done on the cache index, so only the visible rows need to be read
+        cacheTable.getTableHeader().addMouseListener(new MouseAdapter() {
             @Override
-            @SuppressWarnings("unchecked")
-            public final int compare(final Comparable a, final Comparable b) {
-                return a.compareTo(b);
+            public void mouseClicked(MouseEvent e) {
+                final int column = cacheTable.columnAtPoint(e.getPoint());
+                if (column >= 0) {
+                    cacheTable.getSelectionModel().clearSelection();
+                    model.sortBy(cacheTable.convertColumnIndexToModel(column));
+                }
             }
-        };
-        tableSorter.setComparator(1, comparator); // Comparator for path column.
-        tableSorter.setComparator(4, comparator); // Comparator for size column.
-        tableSorter.setComparator(5, comparator); // Comparator for modified column.
-        cacheTable.setRowSorter(tableSorter);
+        });
         final DefaultTableCellRenderer tableCellRenderer = new DefaultTableCellRenderer() {
             @Override
             public final Component getTableCellRendererComponent(final JTable table, final Object value, final boolean isSelected, final boolean hasFocus, final int row, final int column) {
@@ -163,10 +165,38 @@ public class CachePane extends JPanel {
         // TableCellRenderer for last modified column
         cacheTable.getColumn(CacheTableModel.columns[5]).setCellRenderer(tableCellRenderer);
 
+        final JTextField filterField = new JTextField();
+        final Timer filterTimer = new Timer(300, e -> {
+            cacheTable.getSelectionModel().clearSelection();
+            model.setFilter(filterField.getText());
+        });
+        filterTimer.setRepeats(false);
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                filterTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                filterTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                filterTimer.restart();
+            }
+        });
+        final JPanel filterPanel = new JPanel(new BorderLayout(5, 0));
+        filterPanel.add(new JLabel(Translator.R("CVCPFilter")), BorderLayout.WEST);
+        filterPanel.add(filterField, BorderLayout.CENTER);
+
         c.weightx = 1;
-        c.weighty = 1;
         c.gridx = 0;
         c.gridy = 0;
+        topPanel.add(filterPanel, c);
+        c.weighty = 1;
+        c.gridy = 1;
         topPanel.add(scrollPane, c);
         this.add(topPanel, BorderLayout.CENTER);
         this.add(createButtonPanel(), BorderLayout.SOUTH);
@@ -400,12 +430,7 @@ public class CachePane extends JPanel {
             // Populating the cacheTable may take a while, so indicate busy by cursor
             parent.getContentPane().setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
 
-            CacheTableModel tableModel;
-            (tableModel = (CacheTableModel)cacheTable.getModel()).clear(); //Clears the table
-            final List<CacheId> cacheIds = Cache.getDomainCacheIds();
-            for (CacheId cacheId : cacheIds) {
-                tableModel.addAll(cacheId.getFiles());
-            }
+            ((CacheTableModel) cacheTable.getModel()).reload();
 
         } catch (Exception exception) {
             LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, exception);
@@ -1,16 +1,26 @@
 package net.adoptopenjdk.icedteaweb.client.controlpanel;
 
 import net.adoptopenjdk.icedteaweb.i18n.Translator;
+import net.adoptopenjdk.icedteaweb.resources.cache.Cache;
 import net.adoptopenjdk.icedteaweb.resources.cache.CacheFile;
 
 import javax.swing.table.AbstractTableModel;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Table model of the cache viewer.
+ * <p>
+ * The rows are a snapshot of the cache index which is filtered and sorted by the cache.
+ * The values of the rows are only computed when a row is displayed. They are kept in pages
+ * of which only a bounded number is held in memory.
+ */
 public class CacheTableModel extends AbstractTableModel {
 
-    private final List<CacheFile> data = new ArrayList<>();
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_PAGES = 10;
 
     public final static String[] columns = {
             Translator.R("CVCPColName"),
@@ -22,19 +32,53 @@ public class CacheTableModel extends AbstractTableModel {
             Translator.R("CVCPColJnlPath")
     };
 
+    /** the sort key of each column */
+    private static final CacheFile.SortKey[] sortKeys = {
+            CacheFile.SortKey.NAME,
+            CacheFile.SortKey.PATH,
+            CacheFile.SortKey.TYPE,
+            CacheFile.SortKey.DOMAIN,
+            CacheFile.SortKey.SIZE,
+            CacheFile.SortKey.LAST_MODIFIED,
+            CacheFile.SortKey.JNLP_PATH
+    };
+
+    private List<CacheFile> data = new ArrayList<>();
+
+    private final Map<Integer, Object[][]> pages = new LinkedHashMap<Integer, Object[][]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    private String filter;
+    private int sortColumn = 3;
+    private boolean ascending = true;
+
     @Override
     public Object getValueAt(final int rowIndex, final int columnIndex) {
-        final CacheFile cacheFile = data.get(rowIndex);
-        switch (columnIndex) {
-            case 0: return cacheFile.getInfoFile();
-            case 1: return cacheFile.getParentFile();
-            case 2: return cacheFile.getProtocol();
-            case 3: return cacheFile.getDomain();
-            case 4: return cacheFile.getSize();
-            case 5: return cacheFile.getLastModified();
-            case 6: return cacheFile.getJnlpPath();
+        final Object[][] page = pages.computeIfAbsent(rowIndex / PAGE_SIZE, this::loadPage);
+        return page[rowIndex % PAGE_SIZE][columnIndex];
+    }
+
+    private Object[][] loadPage(final int pageIndex) {
+        final int start = pageIndex * PAGE_SIZE;
+        final int end = Math.min(start + PAGE_SIZE, data.size());
+        final Object[][] page = new Object[end - start][];
+        for (int i = start; i < end; i++) {
+            final CacheFile cacheFile = data.get(i);
+            page[i - start] = new Object[]{
+                    cacheFile.getInfoFile(),
+                    cacheFile.getParentFile(),
+                    cacheFile.getProtocol(),
+                    cacheFile.getDomain(),
+                    cacheFile.getSize(),
+                    cacheFile.getLastModified(),
+                    cacheFile.getJnlpPath()
+            };
         }
-        return null;
+        return page;
     }
 
     @Override
@@ -62,22 +106,52 @@ public class CacheTableModel extends AbstractTableModel {
         return data.size();
     }
 
-    public void addAll(final Collection<CacheFile> cacheFiles) {
-        final int size = data.size();
-        data.addAll(cacheFiles);
-        fireTableRowsInserted(size, data.size() - 1);
+    /**
+     * Reads the rows from the cache index using the current filter and sort order.
+     */
+    public void reload() {
+        data = new ArrayList<>(Cache.getCacheFiles(filter, sortKeys[sortColumn], ascending));
+        pages.clear();
+        fireTableDataChanged();
+    }
+
+    /**
+     * Only shows the resources whose location or jnlp path contains the filter.
+     *
+     * @param filter text to search for, {@code null} or empty to show all resources
+     */
+    public void setFilter(final String filter) {
+        this.filter = filter;
+        reload();
+    }
+
+    /**
+     * Sorts the rows by the given column. Sorting by the same column again reverses the order.
+     *
+     * @param columnIndex the column to sort by
+     */
+    public void sortBy(final int columnIndex) {
+        if (columnIndex == sortColumn) {
+            ascending = !ascending;
+        } else {
+            sortColumn = columnIndex;
+            ascending = true;
+        }
+        reload();
     }
 
     public void clear() {
         final int size = data.size();
         if (size > 0) {
-            data.clear();
+            data = new ArrayList<>();
+            pages.clear();
             fireTableRowsDeleted(0, size - 1);
         }
     }
 
     public void removeRow(final int index) {
         data.remove(index);
+        pages.clear();
         fireTableRowsDeleted(index, index);
     }
 }
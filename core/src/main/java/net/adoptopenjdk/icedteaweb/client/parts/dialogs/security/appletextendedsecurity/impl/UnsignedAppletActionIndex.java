@@ -0,0 +1,253 @@
+package net.adoptopenjdk.icedteaweb.client.parts.dialogs.security.appletextendedsecurity.impl;
+
+import net.adoptopenjdk.icedteaweb.IcedTeaWebConstants;
+import net.adoptopenjdk.icedteaweb.client.parts.dialogs.security.appletextendedsecurity.UnsignedAppletActionEntry;
+import net.adoptopenjdk.icedteaweb.client.parts.dialogs.security.appletextendedsecurity.UrlRegEx;
+import net.adoptopenjdk.icedteaweb.logging.Logger;
+import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The entries of an {@link UnsignedAppletActionStorageImpl} prepared for matching.
+ * <p>
+ * The regular expressions of the entries are compiled once. Entries whose document base or code base can only match
+ * urls of one host are grouped by that host, so a query only tries the entries of its host and the entries which
+ * may match any host. The result keeps the order of the entries in the storage.
+ * <p>
+ * The index is a snapshot, it has to be created again once the entries change.
+ */
+final class UnsignedAppletActionIndex {
+
+    private final static Logger LOG = LoggerFactory.getLogger(UnsignedAppletActionIndex.class);
+
+    private static final String QUOTE_START = "\\Q";
+    private static final String QUOTE_END = "\\E";
+    private static final String SCHEME_SEPARATOR = "://";
+    private static final String HOST_TERMINATORS = "/:?#";
+
+    private final List<CompiledEntry> entries = new ArrayList<>();
+    private final Map<String, List<CompiledEntry>> byDocumentBaseHost = new HashMap<>();
+    private final List<CompiledEntry> anyDocumentBaseHost = new ArrayList<>();
+    private final Map<String, List<CompiledEntry>> byCodeBaseHost = new HashMap<>();
+    private final List<CompiledEntry> anyCodeBaseHost = new ArrayList<>();
+
+    UnsignedAppletActionIndex(final List<UnsignedAppletActionEntry> items) {
+        for (UnsignedAppletActionEntry item : items) {
+            final CompiledEntry entry = new CompiledEntry(entries.size(), item);
+            entries.add(entry);
+            addToBucket(entry, entry.documentBaseHost, byDocumentBaseHost, anyDocumentBaseHost);
+            addToBucket(entry, entry.codeBaseHost, byCodeBaseHost, anyCodeBaseHost);
+        }
+    }
+
+    private static void addToBucket(final CompiledEntry entry, final String host, final Map<String, List<CompiledEntry>> byHost, final List<CompiledEntry> anyHost) {
+        if (host == null) {
+            anyHost.add(entry);
+        } else {
+            byHost.computeIfAbsent(host, h -> new ArrayList<>()).add(entry);
+        }
+    }
+
+    /**
+     * @see UnsignedAppletActionStorageImpl#getMatchingItems(String, String, List)
+     */
+    List<UnsignedAppletActionEntry> getMatchingItems(final String documentBase, final String codeBase, final List<String> archives) {
+        final List<UnsignedAppletActionEntry> result = new ArrayList<>();
+        for (CompiledEntry entry : getCandidates(documentBase, codeBase)) {
+            if (entry.isMatching(documentBase, codeBase, archives)) {
+                result.add(entry.item);
+            }
+        }
+        return result;
+    }
+
+    private List<CompiledEntry> getCandidates(final String documentBase, final String codeBase) {
+        if (isSet(documentBase)) {
+            return getCandidates(getHost(documentBase), byDocumentBaseHost, anyDocumentBaseHost);
+        }
+        if (isSet(codeBase)) {
+            return getCandidates(getHost(codeBase), byCodeBaseHost, anyCodeBaseHost);
+        }
+        return entries;
+    }
+
+    /**
+     * Merges the entries of the host with the entries for any host, in the order of the storage.
+     */
+    private static List<CompiledEntry> getCandidates(final String host, final Map<String, List<CompiledEntry>> byHost, final List<CompiledEntry> anyHost) {
+        final List<CompiledEntry> ofHost = host == null ? null : byHost.get(host);
+        if (ofHost == null) {
+            return anyHost;
+        }
+        final List<CompiledEntry> candidates = new ArrayList<>(ofHost.size() + anyHost.size());
+        int i = 0;
+        int j = 0;
+        while (i < ofHost.size() || j < anyHost.size()) {
+            if (j == anyHost.size() || (i < ofHost.size() && ofHost.get(i).position < anyHost.get(j).position)) {
+                candidates.add(ofHost.get(i++));
+            } else {
+                candidates.add(anyHost.get(j++));
+            }
+        }
+        return candidates;
+    }
+
+    private static boolean isSet(final String url) {
+        return url != null && !url.trim().isEmpty();
+    }
+
+    /**
+     * @param url the url
+     * @return the part between the scheme and the port or path, {@code null} if the url has no scheme
+     */
+    static String getHost(final String url) {
+        final int schemeEnd = url.indexOf(SCHEME_SEPARATOR);
+        if (schemeEnd < 0) {
+            return null;
+        }
+        final int hostStart = schemeEnd + SCHEME_SEPARATOR.length();
+        for (int i = hostStart; i < url.length(); i++) {
+            if (HOST_TERMINATORS.indexOf(url.charAt(i)) >= 0) {
+                return url.substring(hostStart, i);
+            }
+        }
+        return url.substring(hostStart);
+    }
+
+    /**
+     * Only urls starting with the quoted beginning of a regular expression can match it. If this beginning contains
+     * the whole host of the url, as the expressions created by {@link UrlRegEx#quote(String)} do, all matching urls
+     * have this host. This does not hold if the rest of the expression contains an alternative, which may match
+     * urls of other hosts.
+     *
+     * @param regEx the regular expression
+     * @return the host of all urls matching the expression, {@code null} if the urls may have any host
+     */
+    static String getRestrictedHost(final String regEx) {
+        if (regEx == null || !regEx.startsWith(QUOTE_START)) {
+            return null;
+        }
+        final int quoteEnd = regEx.indexOf(QUOTE_END, QUOTE_START.length());
+        if (quoteEnd >= 0 && mayContainAlternative(regEx.substring(quoteEnd + QUOTE_END.length()))) {
+            return null;
+        }
+        final String literal = quoteEnd < 0 ? regEx.substring(QUOTE_START.length()) : regEx.substring(QUOTE_START.length(), quoteEnd);
+        final int schemeEnd = literal.indexOf(SCHEME_SEPARATOR);
+        if (schemeEnd < 0) {
+            return null;
+        }
+        final int hostStart = schemeEnd + SCHEME_SEPARATOR.length();
+        for (int i = hostStart; i < literal.length(); i++) {
+            if (HOST_TERMINATORS.indexOf(literal.charAt(i)) >= 0) {
+                return literal.substring(hostStart, i);
+            }
+        }
+        // the host may go on after the quoted part
+        return null;
+    }
+
+    /**
+     * @param regEx part of a regular expression
+     * @return if the part contains a {@code |} which is not escaped, also if it is quoted or in a character class
+     */
+    private static boolean mayContainAlternative(final String regEx) {
+        for (int i = 0; i < regEx.length(); i++) {
+            final char c = regEx.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '|') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Pattern compile(final UrlRegEx regEx) {
+        if (regEx == null) {
+            return null;
+        }
+        try {
+            return Pattern.compile(regEx.getRegEx());
+        } catch (PatternSyntaxException ex) {
+            LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
+            return null;
+        }
+    }
+
+    private static boolean compareArchives(List<String> archives, List<String> saved) {
+        if (archives == null && saved !=null){
+            return false;
+        }
+        if (archives != null && saved ==null){
+            return false;
+        }
+        if (archives == null && saved ==null){
+            return true;
+        }
+        if (archives.size() != saved.size()) {
+            return false;
+        }
+        Collections.sort(archives);
+        Collections.sort(saved);
+        for (int i = 0; i < saved.size(); i++) {
+            String string1 = saved.get(i);
+            String string2 = archives.get(i);
+            //intentional reference compare
+            if (string1 == string2) {
+                continue;
+            }
+            if (string1 == null || string2 == null) {
+                return false;
+            }
+            if (string1.trim().equals(string2.trim())) {
+                continue;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static class CompiledEntry {
+        private final int position;
+        private final UnsignedAppletActionEntry item;
+        private final Pattern documentBase;
+        private final Pattern codeBase;
+        private final String documentBaseHost;
+        private final String codeBaseHost;
+
+        private CompiledEntry(final int position, final UnsignedAppletActionEntry item) {
+            this.position = position;
+            this.item = item;
+            this.documentBase = compile(item.getDocumentBase());
+            this.codeBase = compile(item.getCodeBase());
+            // entries with invalid expressions never match, it does not matter which bucket they are in
+            this.documentBaseHost = documentBase == null ? null : getRestrictedHost(documentBase.pattern());
+            this.codeBaseHost = codeBase == null ? null : getRestrictedHost(codeBase.pattern());
+        }
+
+        private boolean isMatching(final String documentBase, final String codeBase, final List<String> archives) {
+            boolean result = true;
+            if (isSet(documentBase)) {
+                result = this.documentBase != null && this.documentBase.matcher(documentBase).matches();
+            }
+            if (isSet(codeBase)) {
+                result = result && this.codeBase != null && this.codeBase.matcher(codeBase).matches();
+            }
+            if (archives != null) {
+                List<String> saved = item.getArchives();
+                if (saved == null || saved.isEmpty()) {
+                    return result;
+                }
+                result = result && compareArchives(archives, saved);
+            }
+            return result;
+        }
+    }
+}
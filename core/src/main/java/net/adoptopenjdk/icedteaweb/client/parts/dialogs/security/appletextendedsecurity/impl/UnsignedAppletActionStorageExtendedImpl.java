@@ -57,7 +57,7 @@ public class UnsignedAppletActionStorageExtendedImpl extends UnsignedAppletActio
 
     /**
      * 
-     * @return  always fresh copy loaded from disc
+     * @return  always fresh copy of the entries on disc, read again if the file changed
      */
     public UnsignedAppletActionEntry[] toArray() {
         lock();
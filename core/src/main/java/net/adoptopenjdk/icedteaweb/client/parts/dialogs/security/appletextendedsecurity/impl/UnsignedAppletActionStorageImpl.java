@@ -50,11 +50,20 @@ import net.adoptopenjdk.icedteaweb.io.FileUtils;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.regex.PatternSyntaxException;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Storage of remembered security decisions in a file.
+ * <p>
+ * The entries are read again only if the file changed since it was last read or written. Queries are answered
+ * by an {@link UnsignedAppletActionIndex} of the entries, which is created again whenever the entries change.
+ * Changes made while the storage is locked by a caller, for example a lookup followed by an update, are written
+ * to the file once the caller unlocks the storage.
+ */
 public class UnsignedAppletActionStorageImpl extends LockingReaderWriter implements UnsignedAppletActionStorage {
 
     private final static Logger LOG = LoggerFactory.getLogger(UnsignedAppletActionStorageImpl.class);
@@ -67,13 +76,52 @@ public class UnsignedAppletActionStorageImpl extends LockingReaderWriter impleme
     private int lineCounter = 0;
     private boolean loadingDisabled = false;
 
+    /** identity of the file whose content is in {@link #items}, {@code null} if it has to be read */
+    private String readStamp = null;
+    private UnsignedAppletActionIndex index = null;
+    private int lockCount = 0;
+    private boolean writePending = false;
+
     public UnsignedAppletActionStorageImpl(File location) {
         super(location);
     }
 
+    @Override
+    public void lock() {
+        super.lock();
+        lockCount++;
+    }
+
+    @Override
+    public void unlock() {
+        if (!isHeldByCurrentThread()) {
+            super.unlock();
+            return;
+        }
+        try {
+            if (lockCount == 1 && writePending) {
+                writeContents();
+            }
+        } catch (IOException ex) {
+            throw new StorageIoException(ex);
+        } finally {
+            lockCount--;
+            super.unlock();
+        }
+    }
+
     @Override
     public void writeContents() throws IOException {
+        index = null;
+        if (lockCount > 1) {
+            // the caller holds the lock, the changes are written when it unlocks the storage
+            writePending = true;
+            return;
+        }
+        writePending = false;
         super.writeContents();
+        // if nothing was written, the entries have to be read again
+        readStamp = getBackingFile().isFile() && !isReadOnly() ? getStamp() : null;
     }
 
     @Override
@@ -83,12 +131,33 @@ public class UnsignedAppletActionStorageImpl extends LockingReaderWriter impleme
 
     @Override
     protected void readContents() throws IOException {
+        final String stamp = getStamp();
+        if (items != null && stamp != null && stamp.equals(readStamp)) {
+            return;
+        }
         if (items == null) {
             items = new ArrayList<>();
         } else {
             items.clear();
         }
+        index = null;
         super.readContents();
+        readStamp = stamp;
+    }
+
+    /**
+     * The file is identified by its inode (where supported), size and modification time, so a file replaced
+     * or rewritten by another process is read again.
+     *
+     * @return the stamp of the backing file or {@code null} if it cannot be read
+     */
+    private String getStamp() {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(getBackingFile().toPath(), BasicFileAttributes.class);
+            return attributes.fileKey() + ":" + attributes.size() + ":" + attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        } catch (IOException ex) {
+            return null;
+        }
     }
 
     @Override
@@ -188,47 +257,21 @@ public class UnsignedAppletActionStorageImpl extends LockingReaderWriter impleme
     }
 
     public List<UnsignedAppletActionEntry> getMatchingItems(String documentBase, String codeBase, List<String> archives) {
-        List<UnsignedAppletActionEntry> result = new ArrayList<>();
         lock();
         try {
             readContents();
             if (items == null) {
-                return result;
+                return new ArrayList<>();
             }
-            for (UnsignedAppletActionEntry unsignedAppletActionEntry : items) {
-                if (isMatching(unsignedAppletActionEntry, documentBase, codeBase, archives)) {
-                    result.add(unsignedAppletActionEntry);
-                }
+            if (index == null) {
+                index = new UnsignedAppletActionIndex(items);
             }
+            return index.getMatchingItems(documentBase, codeBase, archives);
         } catch (IOException e) {
             throw new StorageIoException(e);
         } finally {
             unlock();
         }
-        return result;
-    }
-
-    private boolean isMatching(UnsignedAppletActionEntry unsignedAppletActionEntry, String documentBase, String codeBase, List<String> archives) {
-        try {
-            boolean result = true;
-            if (documentBase != null && !documentBase.trim().isEmpty()) {
-                result = result && documentBase.matches(unsignedAppletActionEntry.getDocumentBase().getRegEx());
-            }
-            if (codeBase != null && !codeBase.trim().isEmpty()) {
-                result = result && codeBase.matches(unsignedAppletActionEntry.getCodeBase().getRegEx());
-            }
-            if (archives != null) {
-                List<String> saved = unsignedAppletActionEntry.getArchives();
-                if (saved == null || saved.isEmpty()) {
-                    return result;
-                }
-                result = result && compareArchives(archives, saved);
-            }
-            return result;
-        } catch (PatternSyntaxException ex) {
-            LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
-            return false;
-        }
     }
 
     @Override
@@ -236,39 +279,6 @@ public class UnsignedAppletActionStorageImpl extends LockingReaderWriter impleme
         return getBackingFile() + " " + super.toString();
     }
 
-    private boolean compareArchives(List<String> archives, List<String> saved) {
-        if (archives == null && saved !=null){
-            return false;
-        }
-        if (archives != null && saved ==null){
-            return false;
-        }
-        if (archives == null && saved ==null){
-            return true;
-        }
-        if (archives.size() != saved.size()) {
-            return false;
-        }
-        Collections.sort(archives);
-        Collections.sort(saved);
-        for (int i = 0; i < saved.size(); i++) {
-            String string1 = saved.get(i);
-            String string2 = archives.get(i);
-            //intentional reference compare
-            if (string1 == string2) {
-                continue;
-            }
-            if (string1 == null || string2 == null) {
-                return false;
-            }
-            if (string1.trim().equals(string2.trim())) {
-                continue;
-            }
-            return false;
-        }
-        return true;
-    }
-
     @Override
     public UnsignedAppletActionEntry getMatchingItemByDocumentBase(String documentBase, Class<? extends RememberableDialog> id) {
         return getMatchingItem(documentBase, null, null, id);
@@ -0,0 +1,86 @@
+package net.adoptopenjdk.icedteaweb.manifest;
+
+import net.sourceforge.jnlp.util.JarFilePool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.Attributes.Name;
+import java.util.jar.Manifest;
+
+/**
+ * Cache of the main attributes of the manifests of jars, shared by all readers in the JVM.
+ * <p>
+ * The manifest of a jar is read once into a snapshot which answers all later queries for its attributes.
+ * Jars are identified by their path and modification stamp so the manifest of a replaced file is read again.
+ */
+final class ManifestAttributesCache {
+
+    private static final int MAX_SIZE = 256;
+
+    /** snapshots by absolute path, in access order */
+    private static final Map<String, Snapshot> SNAPSHOTS = new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private ManifestAttributesCache() {
+    }
+
+    /**
+     * @param jar  the jar
+     * @param name the name of the attribute
+     * @return the value of the main attribute, null if the jar has no manifest or the manifest has no such attribute
+     * @throws IOException if the jar cannot be read
+     */
+    static String getMainAttribute(final File jar, final Name name) throws IOException {
+        return getSnapshot(jar).getValue(name);
+    }
+
+    private static Snapshot getSnapshot(final File jar) throws IOException {
+        final String path = jar.getAbsolutePath();
+        final long lastModified = jar.lastModified();
+        final long length = jar.length();
+
+        synchronized (SNAPSHOTS) {
+            final Snapshot snapshot = SNAPSHOTS.get(path);
+            if (snapshot != null && snapshot.lastModified == lastModified && snapshot.length == length) {
+                return snapshot;
+            }
+        }
+
+        final Snapshot snapshot;
+        try (JarFilePool.Lease lease = JarFilePool.getInstance().acquire(jar)) {
+            final Manifest manifest = lease.getJarFile().getManifest();
+            //yes, jars without manifest exists
+            snapshot = new Snapshot(lastModified, length, manifest == null ? null : manifest.getMainAttributes());
+        }
+        synchronized (SNAPSHOTS) {
+            SNAPSHOTS.put(path, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * The main attributes of a manifest at one point in time.
+     */
+    private static class Snapshot {
+        private final long lastModified;
+        private final long length;
+        private final Attributes mainAttributes;
+
+        private Snapshot(final long lastModified, final long length, final Attributes mainAttributes) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.mainAttributes = mainAttributes == null ? null : new Attributes(mainAttributes);
+        }
+
+        private String getValue(final Name name) {
+            return mainAttributes == null ? null : mainAttributes.getValue(name);
+        }
+    }
+}
@@ -276,6 +276,7 @@ public class ManifestAttributesReader {
     /**
      * Returns the value of the specified manifest attribute name, or null if the JAR referenced by the given location URL
      * does not contain a manifest or the attribute could not not be found in the manifest.
+     * The manifest of each jar is only read once as long as the jar does not change.
      *
      * @param name name of the attribute to find
      * @param location The JAR location
@@ -291,13 +292,8 @@ public class ManifestAttributesReader {
         final File file = tracker.getCacheFile(location);
 
         if (file != null) {
-            try (JarFile mainJar = new JarFile(file)) {
-                final Manifest manifest = mainJar.getManifest();
-                if (manifest == null || manifest.getMainAttributes() == null) {
-                    //yes, jars without manifest exists
-                    return null;
-                }
-                return manifest.getMainAttributes().getValue(name);
+            try {
+                return ManifestAttributesCache.getMainAttribute(file, name);
             } catch (IOException ioe) {
                 return null;
             }
@@ -36,6 +36,8 @@
  exception statement from your version. */
 package net.adoptopenjdk.icedteaweb.resources;
 
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -49,6 +51,37 @@ public class CachedDaemonThreadPoolProvider {
         return DAEMON_THREAD_POOL;
     }
 
+    /**
+     * Creates a new pool of daemon threads for work which should not compete with the shared pool.
+     * The caller is responsible for shutting the pool down.
+     *
+     * @param nThreads the number of threads in the pool
+     * @return the new pool
+     */
+    public static ExecutorService createThreadPool(int nThreads) {
+        return Executors.newFixedThreadPool(nThreads, new DaemonThreadFactory());
+    }
+
+    /**
+     * Creates a new pool of daemon threads which is shared by all applications and never shut down.
+     * The threads do not depend on the thread creating the pool or its threads: they belong to the top level
+     * thread group, so they are not stopped together with the thread group of an application, and they get
+     * the context class loader and the access control context of ITW instead of those of an application.
+     *
+     * @param nThreads the number of threads in the pool
+     * @return the new pool
+     */
+    public static ExecutorService createSharedThreadPool(int nThreads) {
+        final ThreadGroup group = AccessController.doPrivileged((PrivilegedAction<ThreadGroup>) () -> {
+            ThreadGroup topLevel = Thread.currentThread().getThreadGroup();
+            while (topLevel.getParent() != null) {
+                topLevel = topLevel.getParent();
+            }
+            return topLevel;
+        });
+        return Executors.newFixedThreadPool(nThreads, new SharedDaemonThreadFactory(group));
+    }
+
     /**
      * This is copypasted default factory from java.util.concurrent.Executors.
      * The only difference is, that it creates daemon threads.
@@ -64,14 +97,22 @@ public class CachedDaemonThreadPoolProvider {
         private final String namePrefix;
 
         DaemonThreadFactory() {
-            SecurityManager s = System.getSecurityManager();
-            group = (s != null) ? s.getThreadGroup()
-                    : Thread.currentThread().getThreadGroup();
+            this(getCallerThreadGroup());
+        }
+
+        DaemonThreadFactory(ThreadGroup group) {
+            this.group = group;
             namePrefix = "itwpool-"
                     + poolNumber.getAndIncrement()
                     + "-itwthread-";
         }
 
+        private static ThreadGroup getCallerThreadGroup() {
+            SecurityManager s = System.getSecurityManager();
+            return (s != null) ? s.getThreadGroup()
+                    : Thread.currentThread().getThreadGroup();
+        }
+
         @Override
         public Thread newThread(Runnable r) {
             Thread t = new Thread(group, r,
@@ -87,4 +128,23 @@ public class CachedDaemonThreadPoolProvider {
         }
     }
 
+    /**
+     * Creates the daemon threads with the privileges and the context class loader of ITW.
+     */
+    private static class SharedDaemonThreadFactory extends DaemonThreadFactory {
+
+        SharedDaemonThreadFactory(ThreadGroup group) {
+            super(group);
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return AccessController.doPrivileged((PrivilegedAction<Thread>) () -> {
+                final Thread t = super.newThread(r);
+                t.setContextClassLoader(CachedDaemonThreadPoolProvider.class.getClassLoader());
+                return t;
+            });
+        }
+    }
+
 }
@@ -1,18 +1,27 @@
 package net.adoptopenjdk.icedteaweb.resources.cache;
 
 import net.adoptopenjdk.icedteaweb.jnlp.version.VersionId;
+import net.adoptopenjdk.icedteaweb.jnlp.version.VersionIdComparator;
 import net.adoptopenjdk.icedteaweb.jnlp.version.VersionString;
 import net.sourceforge.jnlp.cache.CacheUtil;
+import net.sourceforge.jnlp.util.JarFilePool;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * The Cache
+ * <p>
+ * Lookups first consult the read-only system cache (if configured) and then the cache of the user.
+ * All modifications go to the cache of the user.
  */
 public class Cache {
     /**
@@ -25,6 +34,7 @@ public class Cache {
      * @return true if the cache could and was cleared
      */
     public static boolean clearCache() {
+        JarFilePool.getInstance().closeIdle();
         return LeastRecentlyUsedCache.getInstance().clearCache();
     }
 
@@ -35,6 +45,49 @@ public class Cache {
         LeastRecentlyUsedCache.getInstance().cleanCache();
     }
 
+    /**
+     * Removes directories which are no longer referenced by the cache index.
+     * The sweep runs on a background thread and at most once per day.
+     */
+    public static void sweepCacheInBackground() {
+        LeastRecentlyUsedCache.getInstance().sweepCacheInBackground();
+    }
+
+    /**
+     * Adds the cache statistics of this process to the statistics of earlier runs.
+     */
+    public static void saveStatistics() {
+        LeastRecentlyUsedCache.getInstance().saveStatistics();
+    }
+
+    /**
+     * @return the cache statistics of all runs (including this process) as JSON document
+     */
+    public static String getStatisticsAsJson() {
+        return LeastRecentlyUsedCache.getInstance().getStatisticsAsJson();
+    }
+
+    /**
+     * @return the number of entries evicted from the cache by this process to stay within the size limit
+     */
+    public static long getEvictedEntryCount() {
+        return LeastRecentlyUsedCache.getInstance().getEvictedEntries();
+    }
+
+    /**
+     * @return the number of bytes evicted from the cache by this process to stay within the size limit
+     */
+    public static long getEvictedBytes() {
+        return LeastRecentlyUsedCache.getInstance().getEvictedBytes();
+    }
+
+    /**
+     * @return the number of directories removed by this process as they were not referenced by the cache index
+     */
+    public static long getRemovedOrphanCount() {
+        return LeastRecentlyUsedCache.getInstance().getRemovedOrphans();
+    }
+
     /**
      * Returns the file for the locally cached contents of the
      * resource.  This method returns the file location only and does
@@ -50,9 +103,105 @@ public class Cache {
         if (!CacheUtil.isCacheable(resource)) {
             throw new IllegalArgumentException(resource + " is not a cacheable resource");
         }
+        final Optional<CacheEntry> systemEntry = findInSystemCache(resource, version);
+        if (systemEntry.isPresent()) {
+            LeastRecentlyUsedCache.getInstance().getStatistics().recordHit(systemEntry.get().getSize());
+            return systemEntry.get().getCacheFile();
+        }
         return LeastRecentlyUsedCache.getInstance().getOrCreateCacheFile(resource, version);
     }
 
+    /**
+     * Returns the directory into which the jars nested in a cached jar are extracted.
+     * For jars in the user cache this is a derived artifact of the cache entry, see {@link #updateDerivedArtifacts(File)}.
+     *
+     * @param cacheFile the cached jar
+     * @return the directory for the nested jars
+     */
+    public static File getNestedJarsDir(final File cacheFile) {
+        final SystemCache systemCache = SystemCache.getInstance();
+        if (systemCache.contains(cacheFile)) {
+            return systemCache.getNestedJarsDir(cacheFile);
+        }
+        return new File(cacheFile.getPath() + ".nested");
+    }
+
+    /**
+     * Stores the size of the files derived from a cached file (e.g. extracted nested jars) in the cache index
+     * so they count against the size limit of the cache.
+     *
+     * @param cacheFile the cached file
+     */
+    public static void updateDerivedArtifacts(final File cacheFile) {
+        LeastRecentlyUsedCache.getInstance().updateDerivedArtifacts(cacheFile);
+    }
+
+    /**
+     * Returns the SHA-256 digest of a file. For files in the user or system cache the digest stored in their index is used.
+     *
+     * @param file the file
+     * @return the hex encoded digest
+     * @throws IOException if the file cannot be read
+     */
+    public static String getDigest(final File file) throws IOException {
+        final Optional<String> systemDigest = SystemCache.getInstance().findDigest(file);
+        if (systemDigest.isPresent()) {
+            return systemDigest.get();
+        }
+        return LeastRecentlyUsedCache.getInstance().getDigest(file);
+    }
+
+    /**
+     * Returns the digest of the cached content of a resource, i.e. of the version the resource is loaded from.
+     * Only the indexes of the caches are consulted, the content is not read.
+     *
+     * @param resource the resource {@link URL}
+     * @param version  the versions of the resource, may be {@code null}
+     * @return the hex encoded digest, empty if the resource is not cached or its digest is not known
+     */
+    public static Optional<String> findDigest(final URL resource, final VersionString version) {
+        if (!CacheUtil.isCacheable(resource)) {
+            return Optional.empty();
+        }
+        final VersionId cachedVersion = version == null ? null : getBestMatchingVersionInCache(resource, version);
+        if (version != null && cachedVersion == null) {
+            return Optional.empty();
+        }
+        final Optional<CacheEntry> systemEntry = findInSystemCache(resource, cachedVersion);
+        final Optional<CacheEntry> entry = systemEntry.isPresent() ? systemEntry : LeastRecentlyUsedCache.getInstance().getResourceInfo(resource, cachedVersion);
+        return entry.filter(CacheEntry::isCached).map(CacheEntry::getDigest);
+    }
+
+    /**
+     * Returns the directory in which native libraries extracted from jars are kept across runs.
+     * Libraries of jars which are no longer cached are removed by the sweep of the cache.
+     *
+     * @return the directory with the native libraries
+     */
+    public static File getNativeLibrariesDir() {
+        return LeastRecentlyUsedCache.getInstance().getNativeLibrariesDir();
+    }
+
+    /**
+     * Returns the directory in which the indexes from packages to the jars of applications are kept across runs.
+     * Indexes of applications which were not started for a while are removed by the sweep of the cache.
+     *
+     * @return the directory with the class indexes
+     */
+    public static File getClassIndexesDir() {
+        return LeastRecentlyUsedCache.getInstance().getClassIndexesDir();
+    }
+
+    /**
+     * Returns the directory in which the results of the signature verification of jars are kept across runs.
+     * Results of jars which are no longer cached are removed by the sweep of the cache.
+     *
+     * @return the directory with the verification results
+     */
+    public static File getVerificationResultsDir() {
+        return LeastRecentlyUsedCache.getInstance().getVerificationResultsDir();
+    }
+
     public static File addToCache(DownloadInfo infoFromRemote, InputStream unpackedStream) throws IOException {
         if (!CacheUtil.isCacheable(infoFromRemote.getResourceHref())) {
             throw new IllegalArgumentException(infoFromRemote.getResourceHref() + " is not a cacheable resource");
@@ -100,7 +249,8 @@ public class Cache {
             throw new IllegalArgumentException(resource + " is not a cacheable resource");
         }
 
-        return LeastRecentlyUsedCache.getInstance().isCached(resource, version);
+        return findInSystemCache(resource, version).isPresent()
+                || LeastRecentlyUsedCache.getInstance().isCached(resource, version);
     }
 
     public static ResourceInfo getInfo(final URL resource, final VersionId version) {
@@ -108,6 +258,10 @@ public class Cache {
             throw new IllegalArgumentException(resource + " is not a cacheable resource");
         }
 
+        final Optional<CacheEntry> systemEntry = findInSystemCache(resource, version);
+        if (systemEntry.isPresent()) {
+            return systemEntry.get();
+        }
         return LeastRecentlyUsedCache.getInstance().getResourceInfo(resource, version).orElse(null);
     }
 
@@ -124,15 +278,23 @@ public class Cache {
         if (!CacheUtil.isCacheable(resource)) {
             throw new IllegalArgumentException(resource + " is not a cacheable resource");
         }
-        return LeastRecentlyUsedCache.getInstance().getBestMatchingEntryInCache(resource, version).isPresent();
+        return !SystemCache.getInstance().findAll(resource, version).isEmpty()
+                || LeastRecentlyUsedCache.getInstance().getBestMatchingEntryInCache(resource, version).isPresent();
     }
 
     public static VersionId getBestMatchingVersionInCache(final URL resource, final VersionString version) {
         if (!CacheUtil.isCacheable(resource)) {
             throw new IllegalArgumentException(resource + " is not a cacheable resource");
         }
-        return LeastRecentlyUsedCache.getInstance().getBestMatchingEntryInCache(resource, version)
-                .map(LeastRecentlyUsedCacheEntry::getVersion)
+        final List<VersionId> candidates = new ArrayList<>();
+        LeastRecentlyUsedCache.getInstance().getBestMatchingEntryInCache(resource, version)
+                .ifPresent(entry -> candidates.add(entry.getVersion()));
+        SystemCache.getInstance().findAll(resource, version)
+                .forEach(entry -> candidates.add(entry.getVersion()));
+
+        final Comparator<VersionId> versionComparator = version != null ? new VersionIdComparator(version) : VersionId::compareTo;
+        return candidates.stream()
+                .min(Comparator.nullsFirst(versionComparator))
                 .orElse(null);
     }
 
@@ -140,8 +302,13 @@ public class Cache {
         if (!CacheUtil.isCacheable(resourceHref)) {
             throw new IllegalArgumentException(resourceHref + " is not a cacheable resource");
         }
-        return LeastRecentlyUsedCache.getInstance().getAllEntriesInCache(resourceHref).stream()
-                .map(LeastRecentlyUsedCacheEntry::getVersion)
+        final Stream<VersionId> userVersions = LeastRecentlyUsedCache.getInstance().getAllEntriesInCache(resourceHref).stream()
+                .map(LeastRecentlyUsedCacheEntry::getVersion);
+        final Stream<VersionId> systemVersions = SystemCache.getInstance().findAll(resourceHref).stream()
+                .map(CacheEntry::getVersion);
+        return Stream.concat(userVersions, systemVersions)
+                .distinct()
+                .sorted(Comparator.nullsFirst(Comparator.naturalOrder()))
                 .collect(Collectors.toList());
     }
 
@@ -161,7 +328,28 @@ public class Cache {
             throw new IllegalArgumentException(resource + " is not a cacheable resource");
         }
 
-        return LeastRecentlyUsedCache.getInstance().isUpToDate(resource, version, lastModified);
+        final boolean systemUpToDate = findInSystemCache(resource, version)
+                .map(entry -> entry.isCurrent(lastModified))
+                .orElse(false);
+        return systemUpToDate || LeastRecentlyUsedCache.getInstance().isUpToDate(resource, version, lastModified);
+    }
+
+    /**
+     * Looks up a resource in the system cache.
+     * A copy in the cache of the user wins if it is newer, e.g. because the server had an update
+     * which is not yet in the system cache.
+     */
+    private static Optional<CacheEntry> findInSystemCache(final URL resource, final VersionId version) {
+        final Optional<CacheEntry> systemEntry = SystemCache.getInstance().find(resource, version);
+        if (!systemEntry.isPresent()) {
+            return systemEntry;
+        }
+        final long systemLastModified = systemEntry.get().getLastModified();
+        final boolean userHasNewer = LeastRecentlyUsedCache.getInstance().getResourceInfo(resource, version)
+                .filter(CacheEntry::isCached)
+                .map(userEntry -> userEntry.getLastModified() > systemLastModified)
+                .orElse(false);
+        return userHasNewer ? Optional.empty() : systemEntry;
     }
 
     /* ***************
@@ -191,6 +379,52 @@ public class Cache {
         return LeastRecentlyUsedCache.getInstance().getCacheIds(filter, true, true);
     }
 
+    /**
+     * Returns the cached files whose location or jnlp path contains the filter.
+     * The files are filtered and sorted using the cache index only, their details are read on first access.
+     *
+     * @param filter    text to search for (ignoring case), {@code null} or blank to return all files
+     * @param sortKey   the order of the returned files
+     * @param ascending whether to sort in ascending order
+     * @return the matching files
+     */
+    public static List<CacheFile> getCacheFiles(final String filter, final CacheFile.SortKey sortKey, final boolean ascending) {
+        return LeastRecentlyUsedCache.getInstance().getCacheFiles(filter, sortKey, ascending);
+    }
+
+    /**
+     * Writes all cached resources whose cache ID matches the filter into a bundle
+     * which can be imported into the cache of another machine.
+     *
+     * @param bundle the file to write the bundle to
+     * @param filter regex to filter the cache IDs
+     * @return the number of exported resources
+     */
+    public static int exportCache(final File bundle, final String filter) throws IOException {
+        return LeastRecentlyUsedCache.getInstance().exportCache(bundle, filter);
+    }
+
+    /**
+     * Merges the resources of a bundle created by {@link #exportCache(File, String)} into the cache.
+     *
+     * @param bundle the bundle to import
+     * @return the number of imported resources
+     */
+    public static int importCache(final File bundle) throws IOException {
+        return LeastRecentlyUsedCache.getInstance().importCache(bundle);
+    }
+
+    /**
+     * Checks all cached files against the sizes and digests stored in the cache index.
+     * Entries which fail the check are moved into a quarantine directory and removed from the cache.
+     *
+     * @param parallelism number of threads reading files
+     * @return the result of the verification
+     */
+    public static CacheVerificationReport verifyCache(final int parallelism) {
+        return LeastRecentlyUsedCache.getInstance().verifyCache(parallelism);
+    }
+
     public static void deleteFromCache(final String cacheId) {
         LeastRecentlyUsedCache.getInstance().deleteFromCache(cacheId);
     }
@@ -0,0 +1,205 @@
+package net.adoptopenjdk.icedteaweb.resources.cache;
+
+import net.adoptopenjdk.icedteaweb.io.IOUtils;
+import net.adoptopenjdk.icedteaweb.jnlp.version.VersionId;
+import net.adoptopenjdk.icedteaweb.logging.Logger;
+import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
+import net.sourceforge.jnlp.util.DigestUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A zip archive containing cached resources together with their index information.
+ * Used to seed the cache of one machine with the content of the cache of another.
+ * <p>
+ * The first entry of the archive is a properties file describing all resources,
+ * followed by the content of the resources.
+ */
+class CacheBundle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheBundle.class);
+
+    static final String INDEX_ENTRY_NAME = "cache-index.properties";
+    private static final String RESOURCE_ENTRY_PREFIX = "resources/";
+
+    private static final String KEY_FORMAT = "format";
+    private static final String FORMAT_VERSION = "1";
+
+    private static final String KEY_HREF = "href";
+    private static final String KEY_VERSION = "version";
+    private static final String KEY_SIZE = "size";
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+    private static final String KEY_DOWNLOADED_AT = "downloadedAt";
+    private static final String KEY_JNLP_PATH = "jnlpPath";
+    private static final String KEY_DIGEST = "digest";
+    private static final String KEY_ENTRY_NAME = "entry";
+
+    private CacheBundle() {
+        // static helper
+    }
+
+    /**
+     * Writes the passed cache entries into a new bundle.
+     */
+    static void write(File bundle, List<CacheEntry> entries) throws IOException {
+        final Properties index = new Properties();
+        index.setProperty(KEY_FORMAT, FORMAT_VERSION);
+        for (int i = 0; i < entries.size(); i++) {
+            final CacheEntry entry = entries.get(i);
+            final String prefix = i + ".";
+            index.setProperty(prefix + KEY_HREF, entry.getResourceHref().toString());
+            if (entry.getVersion() != null) {
+                index.setProperty(prefix + KEY_VERSION, entry.getVersion().toString());
+            }
+            index.setProperty(prefix + KEY_SIZE, Long.toString(entry.getSize()));
+            index.setProperty(prefix + KEY_LAST_MODIFIED, Long.toString(entry.getLastModified()));
+            index.setProperty(prefix + KEY_DOWNLOADED_AT, Long.toString(entry.getDownloadedAt()));
+            if (entry.getJnlpPath() != null) {
+                index.setProperty(prefix + KEY_JNLP_PATH, entry.getJnlpPath());
+            }
+            if (entry.getDigest() != null) {
+                index.setProperty(prefix + KEY_DIGEST, entry.getDigest());
+            }
+            index.setProperty(prefix + KEY_ENTRY_NAME, RESOURCE_ENTRY_PREFIX + i + "/" + entry.getCacheFile().getName());
+        }
+
+        try (final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(bundle))) {
+            // most cached resources are already compressed jars
+            out.setLevel(Deflater.BEST_SPEED);
+
+            out.putNextEntry(new ZipEntry(INDEX_ENTRY_NAME));
+            index.store(out, "IcedTea-Web cache bundle");
+            out.closeEntry();
+
+            for (int i = 0; i < entries.size(); i++) {
+                final CacheEntry entry = entries.get(i);
+                out.putNextEntry(new ZipEntry(index.getProperty(i + "." + KEY_ENTRY_NAME)));
+                try (final InputStream in = new FileInputStream(entry.getCacheFile())) {
+                    IOUtils.copy(in, out);
+                }
+                out.closeEntry();
+            }
+        }
+        LOG.debug("Wrote {} resources into cache bundle {}", entries.size(), bundle);
+    }
+
+    /**
+     * Extracts all resources of the bundle into the staging directory.
+     * The size and the digest of every extracted file are checked against the index of the bundle.
+     *
+     * @return the extracted resources
+     * @throws IOException if the bundle cannot be read or is corrupt
+     */
+    static List<Item> extract(File bundle, File stagingDir) throws IOException {
+        final List<Item> result = new ArrayList<>();
+        try (final ZipInputStream in = new ZipInputStream(new FileInputStream(bundle))) {
+            final ZipEntry indexEntry = in.getNextEntry();
+            if (indexEntry == null || !INDEX_ENTRY_NAME.equals(indexEntry.getName())) {
+                throw new IOException(bundle + " is not a cache bundle");
+            }
+            final Properties index = new Properties();
+            index.load(in); // reads up to the end of the current zip entry
+
+            final List<Item> items = readItems(index);
+            int next = 0;
+            for (ZipEntry zipEntry = in.getNextEntry(); zipEntry != null; zipEntry = in.getNextEntry()) {
+                if (next >= items.size() || !items.get(next).entryName.equals(zipEntry.getName())) {
+                    throw new IOException("Unexpected entry " + zipEntry.getName() + " in cache bundle " + bundle);
+                }
+                final Item item = items.get(next++);
+                item.file = new File(stagingDir, Integer.toString(next));
+                extractAndVerify(in, item);
+                result.add(item);
+            }
+            if (next != items.size()) {
+                throw new IOException("Cache bundle " + bundle + " is incomplete");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the index of a bundle which has been unzipped into a directory.
+     * The files of the returned items point to the resources within this directory.
+     *
+     * @throws IOException if the index cannot be read or is corrupt
+     */
+    static List<Item> readExtracted(File dir) throws IOException {
+        final Properties index = new Properties();
+        try (final InputStream in = new FileInputStream(new File(dir, INDEX_ENTRY_NAME))) {
+            index.load(in);
+        }
+        final List<Item> items = readItems(index);
+        items.forEach(item -> item.file = new File(dir, item.entryName));
+        return items;
+    }
+
+    private static List<Item> readItems(Properties index) throws IOException {
+        if (!FORMAT_VERSION.equals(index.getProperty(KEY_FORMAT))) {
+            throw new IOException("Unsupported cache bundle format " + index.getProperty(KEY_FORMAT));
+        }
+        final List<Item> items = new ArrayList<>();
+        for (int i = 0; index.getProperty(i + "." + KEY_HREF) != null; i++) {
+            final String prefix = i + ".";
+            try {
+                final Item item = new Item();
+                item.resourceHref = new URL(index.getProperty(prefix + KEY_HREF));
+                final String version = index.getProperty(prefix + KEY_VERSION);
+                item.version = version != null ? VersionId.fromString(version) : null;
+                item.size = Long.parseLong(index.getProperty(prefix + KEY_SIZE));
+                item.lastModified = Long.parseLong(index.getProperty(prefix + KEY_LAST_MODIFIED));
+                item.downloadedAt = Long.parseLong(index.getProperty(prefix + KEY_DOWNLOADED_AT));
+                item.jnlpPath = index.getProperty(prefix + KEY_JNLP_PATH);
+                item.digest = index.getProperty(prefix + KEY_DIGEST);
+                item.entryName = index.getProperty(prefix + KEY_ENTRY_NAME);
+                items.add(item);
+            } catch (Exception e) {
+                throw new IOException("Broken entry " + i + " in cache bundle index", e);
+            }
+        }
+        return items;
+    }
+
+    private static void extractAndVerify(ZipInputStream in, Item item) throws IOException {
+        final MessageDigest digest = DigestUtils.newSha256();
+        try (final OutputStream out = new FileOutputStream(item.file)) {
+            IOUtils.copy(new DigestInputStream(in, digest), out);
+        }
+        if (item.file.length() != item.size) {
+            throw new IOException("Size of " + item.resourceHref + " does not match the cache bundle index");
+        }
+        if (item.digest != null && !item.digest.equals(DigestUtils.toHex(digest.digest()))) {
+            throw new IOException("Digest of " + item.resourceHref + " does not match the cache bundle index");
+        }
+    }
+
+    /**
+     * A resource extracted from a bundle.
+     */
+    static class Item {
+        URL resourceHref;
+        VersionId version;
+        long size;
+        long lastModified;
+        long downloadedAt;
+        String jnlpPath;
+        String digest;
+        String entryName;
+        File file;
+    }
+}
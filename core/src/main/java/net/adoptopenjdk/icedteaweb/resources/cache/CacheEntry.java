@@ -17,11 +17,9 @@
 package net.adoptopenjdk.icedteaweb.resources.cache;
 
 import net.adoptopenjdk.icedteaweb.IcedTeaWebConstants;
-import net.adoptopenjdk.icedteaweb.StringUtils;
 import net.adoptopenjdk.icedteaweb.jnlp.version.VersionId;
 import net.adoptopenjdk.icedteaweb.logging.Logger;
 import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
-import net.sourceforge.jnlp.runtime.JNLPRuntime;
 import net.sourceforge.jnlp.util.PropertiesFile;
 
 import java.io.File;
@@ -31,6 +29,10 @@ import static net.adoptopenjdk.icedteaweb.i18n.Translator.R;
 
 /**
  * Describes an entry in the cache.
+ * <p>
+ * All information is taken from the cache index. Older versions stored the
+ * information in a separate {@link #INFO_SUFFIX} file next to the cached file.
+ * These files are only read once to migrate their content into the index.
  *
  * @author <a href="mailto:jmaxwell@users.sourceforge.net">Jon A. Maxwell (JAM)</a> - initial author
  * @version $Revision: 1.10 $
@@ -40,33 +42,20 @@ class CacheEntry implements ResourceInfo {
     private static final Logger LOG = LoggerFactory.getLogger(CacheEntry.class);
 
     static final String INFO_SUFFIX = ".info";
-
     private static final String KEY_SIZE = "content-length";
     private static final String KEY_LAST_MODIFIED = "last-modified";
     private static final String KEY_DOWNLOADED_AT = "last-updated";
-    static final String KEY_JNLP_PATH = "jnlp-path";
-
-    /** the remote resource location */
-    private final URL location;
+    private static final String KEY_JNLP_PATH = "jnlp-path";
 
-    /** the requested version */
-    private final VersionId version;
+    /** the entry in the cache index */
+    private final LeastRecentlyUsedCacheEntry entry;
 
     /** the cache file */
     private final File cacheFile;
 
-    /** info about the cached file */
-    private final PropertiesFile properties;
-
-    CacheEntry(LeastRecentlyUsedCacheEntry lruEntry, File cacheFile, File infoFile) {
-        this(lruEntry.getResourceHref(), lruEntry.getVersion(), cacheFile, infoFile);
-    }
-
-    CacheEntry(URL location, VersionId version, File cacheFile, File infoFile) {
-        this.location = location;
-        this.version = version;
+    CacheEntry(LeastRecentlyUsedCacheEntry entry, File cacheFile) {
+        this.entry = entry;
         this.cacheFile = cacheFile;
-        this.properties = new PropertiesFile(infoFile, R("CAutoGen"));
     }
 
     /**
@@ -75,12 +64,12 @@ class CacheEntry implements ResourceInfo {
      */
     @Override
     public URL getResourceHref() {
-        return location;
+        return entry.getResourceHref();
     }
 
     @Override
     public VersionId getVersion() {
-        return version;
+        return entry.getVersion();
     }
 
     /**
@@ -90,41 +79,33 @@ class CacheEntry implements ResourceInfo {
      */
     @Override
     public long getDownloadedAt() {
-        return getLongKey(KEY_DOWNLOADED_AT);
+        return entry.getDownloadedAt();
     }
 
     @Override
     public long getSize() {
-        return getLongKey(KEY_SIZE);
+        return entry.getSize();
     }
 
     @Override
     public long getLastModified() {
-        return getLongKey(KEY_LAST_MODIFIED);
+        return entry.getLastModified();
     }
 
     String getJnlpPath() {
-        return properties.getProperty(KEY_JNLP_PATH);
-    }
-
-    File getCacheFile() {
-        return cacheFile;
+        return entry.getJnlpPath();
     }
 
-    private long getLongKey(String key) {
-        try {
-            return Long.parseLong(properties.getProperty(key));
-        } catch (Exception ex) {
-            return 0;
-        }
+    String getDigest() {
+        return entry.getDigest();
     }
 
-    private void setLongKey(String key, long value) {
-        properties.setProperty(key, Long.toString(value));
+    File getCacheFile() {
+        return cacheFile;
     }
 
-    boolean exists() {
-        return properties.getStoreFile().isFile();
+    LeastRecentlyUsedCacheEntry getEntry() {
+        return entry;
     }
 
     /**
@@ -136,7 +117,7 @@ class CacheEntry implements ResourceInfo {
      */
     boolean isCurrent(long lastModified) {
         boolean cached = isCached();
-        LOG.debug("{} - version {}: isCached {}", location, version, cached);
+        LOG.debug("{} - version {}: isCached {}", getResourceHref(), getVersion(), cached);
 
         if (!cached) {
             return false;
@@ -144,7 +125,7 @@ class CacheEntry implements ResourceInfo {
         try {
             long cachedModified = getLastModified();
             final boolean isCurrent = lastModified > 0 && lastModified <= cachedModified;
-            LOG.debug("{} - version {}: lastModified cache:{} actual:{} -> {}", location, version, cachedModified, lastModified, isCurrent);
+            LOG.debug("{} - version {}: lastModified cache:{} actual:{} -> {}", getResourceHref(), getVersion(), cachedModified, lastModified, isCurrent);
             return isCurrent;
         } catch (Exception ex){
             LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
@@ -159,47 +140,46 @@ class CacheEntry implements ResourceInfo {
      * @return true if the resource is in the cache
      */
     boolean isCached() {
-        if (!cacheFile.exists()) {
+        if (!entry.hasDownloadInfo()) {
             return false;
         }
+        final long cachedLength = cacheFile.length(); // zero if the file does not exist
+        final long remoteLength = getSize();
+        final boolean isCached = cachedLength == remoteLength && cacheFile.isFile();
+        LOG.debug("isCached: remote size:{} cached size:{} -> {}", remoteLength, cachedLength, isCached);
+        return isCached;
+    }
 
-        if (! properties.containsPropertyKey(KEY_SIZE)) {
-            return false;
+    /**
+     * Reads the info file written by older versions and stores its content in the index.
+     *
+     * @return the updated entry or the passed entry if there is no info file
+     */
+    static LeastRecentlyUsedCacheEntry migrateInfoFile(LeastRecentlyUsedCacheIndex idx, LeastRecentlyUsedCacheEntry entry, File infoFile) {
+        if (!infoFile.isFile()) {
+            return entry;
         }
-
-        try {
-            long cachedLength = cacheFile.length();
-            long remoteLength = getSize();
-            final boolean isCached = cachedLength == remoteLength;
-
-            LOG.debug("isCached: remote size:{} cached size:{} -> {}", remoteLength, cachedLength, isCached);
-            return isCached;
-        } catch (Exception ex) {
-            LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
-
-            return false; // should throw?
+        final PropertiesFile properties = new PropertiesFile(infoFile, R("CAutoGen"));
+        LeastRecentlyUsedCacheEntry result = entry;
+        final String jnlpPath = properties.getProperty(KEY_JNLP_PATH);
+        if (jnlpPath != null) {
+            result = idx.updateJnlpPath(result, jnlpPath);
+        }
+        if (properties.containsPropertyKey(KEY_SIZE)) {
+            final long size = getLongKey(properties, KEY_SIZE);
+            final long lastModified = getLongKey(properties, KEY_LAST_MODIFIED);
+            final long downloadedAt = Math.max(1, getLongKey(properties, KEY_DOWNLOADED_AT));
+            result = idx.updateDownloadInfo(result, size, lastModified, downloadedAt, null);
         }
+        LOG.debug("Migrated info file {} into the cache index", infoFile);
+        return result;
     }
 
-    void storeInfo(long downloadedAt, long lastModified, long size) {
-        properties.lock();
+    private static long getLongKey(PropertiesFile properties, String key) {
         try {
-            setLongKey(KEY_SIZE, size);
-            setLongKey(KEY_LAST_MODIFIED, lastModified);
-            setLongKey(KEY_DOWNLOADED_AT, downloadedAt);
-
-            final String jnlpPath = JNLPRuntime.getJnlpPath();
-            if (StringUtils.isBlank(jnlpPath)) {
-                LOG.info("Not-setting jnlp-path for missing main/jnlp argument");
-            } else {
-                properties.setProperty(KEY_JNLP_PATH, jnlpPath);
-            }
-
-            if (properties.isHeldByCurrentThread()) {
-                properties.store();
-            }
-        } finally {
-            properties.unlock();
+            return Long.parseLong(properties.getProperty(key));
+        } catch (Exception ex) {
+            return 0;
         }
     }
 
@@ -3,25 +3,68 @@ package net.adoptopenjdk.icedteaweb.resources.cache;
 import net.adoptopenjdk.icedteaweb.Assert;
 
 import java.io.File;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.function.Supplier;
+
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.nullsFirst;
 
 public class CacheFile {
 
-    private final CacheEntry infoFile;
+    /**
+     * Orders in which {@link Cache#getCacheFiles(String, SortKey, boolean)} can return the cached files.
+     * The order is computed from the values in the cache index without touching the file system.
+     */
+    public enum SortKey {
+        NAME(comparing(entry -> entry.getResourceHref().getPath())),
+        PATH(comparing(LeastRecentlyUsedCacheEntry::getId, CacheFile::compareEntryIds)),
+        TYPE(comparing(LeastRecentlyUsedCacheEntry::getProtocol)),
+        DOMAIN(comparing(LeastRecentlyUsedCacheEntry::getDomain, nullsFirst(Comparator.<String>naturalOrder()))),
+        SIZE(comparing(LeastRecentlyUsedCacheEntry::getSize)),
+        LAST_MODIFIED(comparing(LeastRecentlyUsedCacheEntry::getLastModified)),
+        JNLP_PATH(comparing(LeastRecentlyUsedCacheEntry::getJnlpPath, nullsFirst(Comparator.<String>naturalOrder())));
+
+        private final Comparator<LeastRecentlyUsedCacheEntry> comparator;
+
+        SortKey(Comparator<LeastRecentlyUsedCacheEntry> comparator) {
+            this.comparator = comparator;
+        }
+
+        Comparator<LeastRecentlyUsedCacheEntry> getComparator() {
+            return comparator;
+        }
+    }
 
     private final LeastRecentlyUsedCacheEntry entry;
 
+    private final Supplier<CacheEntry> infoFileSupplier;
+
+    private CacheEntry infoFile;
+
     public CacheFile(final CacheEntry infoFile, final LeastRecentlyUsedCacheEntry entry) {
         this.infoFile = Assert.requireNonNull(infoFile, "infoFile");
         this.entry = Assert.requireNonNull(entry, "entry");
+        this.infoFileSupplier = null;
     }
 
-    public CacheEntry getInfoFile() {
+    /**
+     * Creates a cache file whose info is only resolved when it is accessed for the first time.
+     */
+    CacheFile(final LeastRecentlyUsedCacheEntry entry, final Supplier<CacheEntry> infoFileSupplier) {
+        this.entry = Assert.requireNonNull(entry, "entry");
+        this.infoFileSupplier = Assert.requireNonNull(infoFileSupplier, "infoFileSupplier");
+    }
+
+    public synchronized CacheEntry getInfoFile() {
+        if (infoFile == null) {
+            infoFile = infoFileSupplier.get();
+        }
         return infoFile;
     }
 
     public File getParentFile() {
-        return infoFile.getCacheFile().getParentFile();
+        return getInfoFile().getCacheFile().getParentFile();
     }
 
     public String getProtocol() {
@@ -33,18 +76,33 @@ public class CacheFile {
     }
 
     public long getSize() {
-        return infoFile.getSize();
+        return getInfoFile().getSize();
     }
 
     public Date getLastModified() {
-        return new Date(infoFile.getLastModified());
+        return new Date(getInfoFile().getLastModified());
     }
 
     public String getJnlpPath() {
-        return infoFile.getJnlpPath();
+        return getInfoFile().getJnlpPath();
     }
 
     public LeastRecentlyUsedCacheEntry getEntry() {
         return entry;
     }
+
+    private static int compareEntryIds(String id1, String id2) {
+        final String[] parts1 = id1.split("-");
+        final String[] parts2 = id2.split("-");
+        if (parts1.length != 2 || parts2.length != 2) {
+            return id1.compareTo(id2);
+        }
+        final int result = compareNumbers(parts1[0], parts2[0]);
+        return result != 0 ? result : compareNumbers(parts1[1], parts2[1]);
+    }
+
+    private static int compareNumbers(String s1, String s2) {
+        final int result = Integer.compare(s1.length(), s2.length());
+        return result != 0 ? result : s1.compareTo(s2);
+    }
 }
@@ -0,0 +1,196 @@
+package net.adoptopenjdk.icedteaweb.resources.cache;
+
+import net.adoptopenjdk.icedteaweb.io.FileUtils;
+import net.adoptopenjdk.icedteaweb.logging.Logger;
+import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and timers of the cache.
+ * <p>
+ * The values of the running process are kept in memory. At shutdown they are added to the aggregates
+ * of earlier runs which are stored in a properties file in the cache directory.
+ */
+class CacheStatistics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheStatistics.class);
+
+    /**
+     * File in the root of the cache directory containing the aggregated statistics of all runs.
+     */
+    static final String STATISTICS_FILE_NAME = "statistics";
+
+    private static final String KEY_RUNS = "runs";
+    private static final String KEY_SINCE = "since";
+
+    enum Counter {
+        /** resources served from the cache */
+        HITS("hits"),
+        /** resources downloaded into the cache */
+        MISSES("misses"),
+        BYTES_FROM_CACHE("bytesFromCache"),
+        BYTES_FROM_NETWORK("bytesFromNetwork"),
+        EVICTED_ENTRIES("evictedEntries"),
+        EVICTED_BYTES("evictedBytes"),
+        REMOVED_ORPHANS("removedOrphans"),
+        /** number of times the index was (re)built from the index file */
+        INDEX_LOADS("indexLoads"),
+        INDEX_LOAD_NANOS("indexLoadNanos"),
+        LOCK_ACQUISITIONS("lockAcquisitions"),
+        LOCK_WAIT_NANOS("lockWaitNanos");
+
+        private final String key;
+
+        Counter(String key) {
+            this.key = key;
+        }
+
+        String getKey() {
+            return key;
+        }
+    }
+
+    private final Map<Counter, AtomicLong> values = new EnumMap<>(Counter.class);
+
+    CacheStatistics() {
+        for (Counter counter : Counter.values()) {
+            values.put(counter, new AtomicLong());
+        }
+    }
+
+    void increment(Counter counter) {
+        values.get(counter).incrementAndGet();
+    }
+
+    void add(Counter counter, long delta) {
+        values.get(counter).addAndGet(delta);
+    }
+
+    long get(Counter counter) {
+        return values.get(counter).get();
+    }
+
+    void recordHit(long bytes) {
+        increment(Counter.HITS);
+        add(Counter.BYTES_FROM_CACHE, bytes);
+    }
+
+    void recordMiss(long bytes) {
+        increment(Counter.MISSES);
+        add(Counter.BYTES_FROM_NETWORK, bytes);
+    }
+
+    /**
+     * Adds the values of this process to the aggregates in the file and resets them.
+     * Must be called while holding the lock on the cache index, as other processes update the file as well.
+     */
+    void persist(File file) {
+        final Properties aggregates = load(file);
+        for (Counter counter : Counter.values()) {
+            final long value = values.get(counter).getAndSet(0);
+            aggregates.setProperty(counter.getKey(), Long.toString(parseLong(aggregates, counter.getKey()) + value));
+        }
+        aggregates.setProperty(KEY_RUNS, Long.toString(parseLong(aggregates, KEY_RUNS) + 1));
+        if (parseLong(aggregates, KEY_SINCE) == 0) {
+            aggregates.setProperty(KEY_SINCE, Long.toString(System.currentTimeMillis()));
+        }
+
+        try {
+            if (!file.exists()) {
+                FileUtils.createRestrictedFile(file);
+            }
+            try (final OutputStream out = new FileOutputStream(file)) {
+                aggregates.store(out, "IcedTea-Web cache statistics");
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to store cache statistics in {} - {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Creates a JSON document with the aggregates stored in the file plus the values of this process.
+     *
+     * @param file       the file with the aggregates
+     * @param cacheDir   the cache directory
+     * @param entries    number of entries in the cache
+     * @param size       size of the cache in bytes
+     * @param maxSize    size limit of the cache in bytes, negative if unlimited
+     * @return the JSON document
+     */
+    String toJson(File file, File cacheDir, int entries, long size, long maxSize) {
+        final Properties aggregates = load(file);
+        final Map<Counter, Long> totals = new EnumMap<>(Counter.class);
+        for (Counter counter : Counter.values()) {
+            totals.put(counter, parseLong(aggregates, counter.getKey()) + get(counter));
+        }
+
+        final long hits = totals.get(Counter.HITS);
+        final long misses = totals.get(Counter.MISSES);
+        final long indexLoads = totals.get(Counter.INDEX_LOADS);
+        final long lockAcquisitions = totals.get(Counter.LOCK_ACQUISITIONS);
+
+        final StringBuilder json = new StringBuilder("{\n");
+        appendJson(json, "cacheDirectory", "\"" + escapeJson(cacheDir.getAbsolutePath()) + "\"");
+        appendJson(json, "entries", entries);
+        appendJson(json, "sizeInBytes", size);
+        appendJson(json, "maxSizeInBytes", maxSize);
+        appendJson(json, KEY_RUNS, parseLong(aggregates, KEY_RUNS));
+        appendJson(json, KEY_SINCE, parseLong(aggregates, KEY_SINCE));
+        for (Counter counter : Counter.values()) {
+            appendJson(json, counter.getKey(), totals.get(counter));
+        }
+        appendJson(json, "hitRatio", ratio(hits, hits + misses));
+        appendJson(json, "averageIndexLoadMillis", ratio(toMillis(totals.get(Counter.INDEX_LOAD_NANOS)), indexLoads));
+        appendJson(json, "averageLockWaitMillis", ratio(toMillis(totals.get(Counter.LOCK_WAIT_NANOS)), lockAcquisitions));
+        json.setLength(json.length() - 2); // trailing comma
+        return json.append("\n}").toString();
+    }
+
+    private static Properties load(File file) {
+        final Properties properties = new Properties();
+        if (file.isFile()) {
+            try (final InputStream in = new FileInputStream(file)) {
+                properties.load(in);
+            } catch (IOException e) {
+                LOG.error("Failed to read cache statistics from {} - {}", file, e.getMessage());
+            }
+        }
+        return properties;
+    }
+
+    private static long parseLong(Properties properties, String key) {
+        try {
+            return Long.parseLong(properties.getProperty(key, "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static String ratio(double dividend, long divisor) {
+        return divisor == 0 ? "0" : String.format(Locale.ROOT, "%.3f", dividend / divisor);
+    }
+
+    private static void appendJson(StringBuilder json, String key, Object value) {
+        json.append("  \"").append(key).append("\": ").append(value).append(",\n");
+    }
+
+    private static String escapeJson(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,118 @@
+package net.adoptopenjdk.icedteaweb.resources.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of checking the cached files against the sizes and digests stored in the cache index.
+ */
+public final class CacheVerificationReport {
+
+    private int ok;
+    private int repaired;
+    private int skipped;
+    private long bytesRead;
+    private long durationNanos;
+    private final List<String> quarantined = new ArrayList<>();
+    private final List<String> broken = new ArrayList<>();
+
+    CacheVerificationReport() {
+    }
+
+    void addOk(long bytes) {
+        ok++;
+        bytesRead += bytes;
+    }
+
+    void addRepaired(long bytes) {
+        repaired++;
+        bytesRead += bytes;
+    }
+
+    void addSkipped() {
+        skipped++;
+    }
+
+    void addQuarantined(long bytes, String problem) {
+        quarantined.add(problem);
+        bytesRead += bytes;
+    }
+
+    void addBroken(long bytes, String problem) {
+        broken.add(problem);
+        bytesRead += bytes;
+    }
+
+    void setDurationNanos(long durationNanos) {
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * @return number of entries whose file matches the index
+     */
+    public int getOk() {
+        return ok;
+    }
+
+    /**
+     * @return number of entries for which missing size or digest information was added to the index
+     */
+    public int getRepaired() {
+        return repaired;
+    }
+
+    /**
+     * @return number of entries which were not checked as their download was not completed or they changed meanwhile
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return number of entries which were moved into the quarantine directory and removed from the index
+     */
+    public int getQuarantined() {
+        return quarantined.size();
+    }
+
+    /**
+     * @return a description of each quarantined entry
+     */
+    public List<String> getProblems() {
+        return Collections.unmodifiableList(quarantined);
+    }
+
+    /**
+     * @return number of entries which failed the check but were kept as other instances of javaws were running
+     */
+    public int getBroken() {
+        return broken.size();
+    }
+
+    /**
+     * @return a description of each broken entry which was kept
+     */
+    public List<String> getBrokenProblems() {
+        return Collections.unmodifiableList(broken);
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(durationNanos);
+    }
+
+    /**
+     * @return the number of megabytes read per second
+     */
+    public double getThroughput() {
+        if (durationNanos <= 0) {
+            return 0;
+        }
+        return (bytesRead / (double) (1 << 20)) / (durationNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -45,11 +45,12 @@ import net.adoptopenjdk.icedteaweb.jnlp.version.VersionString;
 import net.adoptopenjdk.icedteaweb.logging.Logger;
 import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
 import net.adoptopenjdk.icedteaweb.os.OsUtil;
+import net.adoptopenjdk.icedteaweb.resources.CachedDaemonThreadPoolProvider;
 import net.sourceforge.jnlp.config.ConfigurationConstants;
 import net.sourceforge.jnlp.config.InfrastructureFileDescriptor;
 import net.sourceforge.jnlp.config.PathsAndFiles;
 import net.sourceforge.jnlp.runtime.JNLPRuntime;
-import net.sourceforge.jnlp.util.PropertiesFile;
+import net.sourceforge.jnlp.util.DigestUtils;
 import net.sourceforge.jnlp.util.WindowsShortcutManager;
 
 import java.io.File;
@@ -58,24 +59,36 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import java.util.zip.ZipFile;
 
 import static java.util.Comparator.comparing;
 import static net.adoptopenjdk.icedteaweb.CollectionUtils.isNullOrEmpty;
-import static net.adoptopenjdk.icedteaweb.i18n.Translator.R;
 
 /**
  * This class helps maintain the ordering of most recently use cache items across
@@ -86,6 +99,50 @@ class LeastRecentlyUsedCache {
 
     private static final Logger LOG = LoggerFactory.getLogger(LeastRecentlyUsedCache.class);
 
+    /**
+     * File in the root of the cache directory whose modification time records the last sweep.
+     */
+    static final String SWEEP_MARKER_FILE_NAME = ".last_sweep";
+    private static final long SWEEP_INTERVAL = TimeUnit.HOURS.toMillis(24);
+
+    /**
+     * Directory in the root of the cache directory receiving the entries which failed verification.
+     */
+    static final String QUARANTINE_DIR_NAME = ".quarantine";
+
+    /**
+     * Suffix of the file a resource is downloaded into before it replaces the cache file.
+     */
+    static final String PARTIAL_SUFFIX = ".part";
+
+    /**
+     * Directory in the root of the cache directory with the native libraries extracted from jars.
+     * It contains a directory per jar named after the digest of the jar.
+     */
+    static final String NATIVE_LIBRARIES_DIR_NAME = ".natives";
+
+    /**
+     * Directory in the root of the cache directory with the indexes of the packages in the jars of applications.
+     */
+    static final String CLASS_INDEXES_DIR_NAME = ".classindex";
+
+    /**
+     * Directory in the root of the cache directory with the results of the signature verification of jars.
+     * It contains a file per jar named after the digest of the jar.
+     */
+    static final String VERIFICATION_RESULTS_DIR_NAME = ".verification";
+
+    /**
+     * Native libraries and verification results of jars which are not in the cache and class indexes are kept
+     * for this time after their last use.
+     */
+    private static final long UNUSED_DATA_RETENTION = TimeUnit.DAYS.toMillis(30);
+
+    /**
+     * Partial files younger than this may belong to a running download and are not removed.
+     */
+    private static final long PARTIAL_FILE_GRACE_PERIOD = TimeUnit.HOURS.toMillis(1);
+
     static LeastRecentlyUsedCache getInstance() {
         return CacheHolder.INSTANCE;
     }
@@ -93,12 +150,18 @@ class LeastRecentlyUsedCache {
     private final LeastRecentlyUsedCacheIndexHolder cacheIndex;
     private final InfrastructureFileDescriptor rootCacheDir;
 
+    private final CacheStatistics statistics = new CacheStatistics();
+    private final AtomicBoolean sweepRunning = new AtomicBoolean();
+    private final AtomicBoolean removeUnusedFilesPending = new AtomicBoolean();
+
+    private volatile Long maxSizeInBytes;
+
     /**
      * @param recentlyUsed file to be used as recently_used file
      * @param cacheDir     dir with cache
      */
-    private LeastRecentlyUsedCache(final InfrastructureFileDescriptor recentlyUsed, final InfrastructureFileDescriptor cacheDir) {
-        this.cacheIndex = new LeastRecentlyUsedCacheIndexHolder(recentlyUsed);
+    LeastRecentlyUsedCache(final InfrastructureFileDescriptor recentlyUsed, final InfrastructureFileDescriptor cacheDir) {
+        this.cacheIndex = new LeastRecentlyUsedCacheIndexHolder(recentlyUsed, statistics);
         this.rootCacheDir = cacheDir;
     }
 
@@ -106,28 +169,37 @@ class LeastRecentlyUsedCache {
         final LeastRecentlyUsedCacheEntry entry = cacheIndex.getSynchronized(idx ->
                 getOrCreateCacheEntry(idx, resourceHref, version)
         );
+        if (entry.hasDownloadInfo()) {
+            statistics.recordHit(entry.getSize());
+        }
         return getCacheFile(entry);
     }
 
     private LeastRecentlyUsedCacheEntry getOrCreateCacheEntry(LeastRecentlyUsedCacheIndex idx, URL resourceHref, VersionId version) {
         return idx.findAndMarkAsAccessed(resourceHref, version)
-                .orElseGet(() -> createNewInfoFileAndIndexEntry(idx, resourceHref, version));
+                .orElseGet(() -> createNewIndexEntry(idx, resourceHref, version));
     }
 
     File replaceExistingCacheFile(URL resourceHref, VersionId version) {
         final LeastRecentlyUsedCacheEntry entry = cacheIndex.getSynchronized(idx -> {
             // Old entry will still exist. (but removed at cleanup)
             idx.markEntryForDeletion(resourceHref, version);
-            return createNewInfoFileAndIndexEntry(idx, resourceHref, version);
+            return createNewIndexEntry(idx, resourceHref, version);
         });
         return getCacheFile(entry);
     }
 
-    private LeastRecentlyUsedCacheEntry createNewInfoFileAndIndexEntry(LeastRecentlyUsedCacheIndex idx, URL resourceHref, VersionId version) {
+    private LeastRecentlyUsedCacheEntry createNewIndexEntry(LeastRecentlyUsedCacheIndex idx, URL resourceHref, VersionId version) {
         final File dir = makeNewCacheDir();
         final String entryId = entryIdFromCacheDir(dir);
-        createInfoFile(dir);
-        return idx.createEntry(resourceHref, version, entryId);
+        final LeastRecentlyUsedCacheEntry entry = idx.createEntry(resourceHref, version, entryId);
+
+        final String jnlpPath = JNLPRuntime.getJnlpPath(); //get jnlp from args passed
+        if (StringUtils.isBlank(jnlpPath)) {
+            LOG.info("Not-setting jnlp-path for missing main/jnlp argument");
+            return entry;
+        }
+        return idx.updateJnlpPath(entry, jnlpPath);
     }
 
     private File makeNewCacheDir() {
@@ -147,53 +219,38 @@ class LeastRecentlyUsedCache {
         throw new RuntimeException("Out of directories :-)");
     }
 
-    private void createInfoFile(File dir) {
-        try {
-            final File infoFile = new File(dir, CacheEntry.INFO_SUFFIX);
-            FileUtils.createRestrictedFile(infoFile); // Create the info file for marking later.
-
-            final String jnlpPath = JNLPRuntime.getJnlpPath(); //get jnlp from args passed
-            if (StringUtils.isBlank(jnlpPath)) {
-                LOG.info("Not-setting jnlp-path for missing main/jnlp argument");
-            } else {
-                final PropertiesFile propertiesFile = new PropertiesFile(infoFile, R("CAutoGen"));
-                propertiesFile.setProperty(CacheEntry.KEY_JNLP_PATH, jnlpPath);
-                propertiesFile.store();
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to create info file in dir " + dir, e);
-        }
-    }
-
     File addToCache(DownloadInfo info, InputStream inputStream) throws IOException {
-        final List<IOException> ex = new ArrayList<>();
-
         final LeastRecentlyUsedCacheEntry entry = cacheIndex.getSynchronized(idx ->
                 getOrCreateCacheEntry(idx, info.getResourceHref(), info.getVersion())
         );
 
-        final CacheEntry infoFile = getInfoFile(entry);
-        final File cacheFile = infoFile.getCacheFile();
-        try {
-            LOG.debug("Downloading file: {} into: {}", info.getResourceHref(), cacheFile.getCanonicalPath());
-            try (final OutputStream out = new FileOutputStream(cacheFile)) {
-                IOUtils.copy(inputStream, out);
-            }
-            infoFile.storeInfo(info.getDownloadedAt(), info.getLastModified(), cacheFile.length());
-        } catch (IOException e) {
-            ex.add(e);
+        final File cacheFile = getCacheFile(entry);
+        final File partialFile = new File(cacheFile.getPath() + PARTIAL_SUFFIX);
+        LOG.debug("Downloading file: {} into: {}", info.getResourceHref(), cacheFile.getCanonicalPath());
+        final MessageDigest digest = DigestUtils.newSha256();
+        try (final OutputStream out = new FileOutputStream(partialFile)) {
+            IOUtils.copy(new DigestInputStream(inputStream, digest), out);
+        } catch (IOException | RuntimeException e) {
+            deleteAll(partialFile);
+            throw e;
         }
+        // an interrupted download leaves the partial file behind which is removed by the sweep
+        Files.move(partialFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
 
-        if (!ex.isEmpty()) {
-            throw ex.get(0);
-        }
+        final long size = cacheFile.length();
+        final String hexDigest = DigestUtils.toHex(digest.digest());
+        statistics.recordMiss(size);
+        cacheIndex.runSynchronized(idx -> {
+            final LeastRecentlyUsedCacheEntry updated = idx.updateDownloadInfo(entry, size, info.getLastModified(), info.getDownloadedAt(), hexDigest);
+            evictToFit(idx, updated);
+        });
 
         return cacheFile;
     }
 
     Optional<CacheEntry> getResourceInfo(URL resourceHref, VersionId version) {
-        return cacheIndex.getSynchronized(idx -> idx.find(resourceHref, version))
-                .map(this::getInfoFile);
+        return cacheIndex.getSynchronized(idx -> idx.find(resourceHref, version)
+                .map(entry -> getInfoFile(idx, entry)));
     }
 
     /**
@@ -222,9 +279,9 @@ class LeastRecentlyUsedCache {
      * @throws IllegalArgumentException if the resourceHref is not cacheable
      */
     boolean isUpToDate(URL resourceHref, VersionId version, long lastModified) {
-        final Boolean isUpToDate = cacheIndex.getSynchronized(idx -> idx.findAndMarkAsAccessed(resourceHref, version))
-                .map(e -> getInfoFile(e).isCurrent(lastModified))
-                .orElse(false);
+        final Boolean isUpToDate = cacheIndex.getSynchronized(idx -> idx.findAndMarkAsAccessed(resourceHref, version)
+                .map(e -> getInfoFile(idx, e).isCurrent(lastModified))
+                .orElse(false));
         LOG.info("isUpToDate: {} - (v: {}) = {}", resourceHref, version, isUpToDate);
         return isUpToDate;
     }
@@ -238,7 +295,7 @@ class LeastRecentlyUsedCache {
             all.sort(versionComparator);
 
             for (final LeastRecentlyUsedCacheEntry entry : all) {
-                if (getInfoFile(entry).isCached()) {
+                if (getInfoFile(idx, entry).isCached()) {
                     return Optional.of(entry);
                 }
             }
@@ -253,7 +310,7 @@ class LeastRecentlyUsedCache {
             final Set<LeastRecentlyUsedCacheEntry> allSet = idx.findAll(resourceHref);
 
             return allSet.stream()
-                    .filter(entry -> getInfoFile(entry).isCached())
+                    .filter(entry -> getInfoFile(idx, entry).isCached())
                     .sorted(versionComparator)
                     .collect(Collectors.toList());
         });
@@ -264,21 +321,21 @@ class LeastRecentlyUsedCache {
             return Collections.emptyList();
         }
 
-        final List<LeastRecentlyUsedCacheEntry> entries = cacheIndex.getSynchronized(LeastRecentlyUsedCacheIndex::getAllUnDeletedEntries);
+        final List<CacheFile> files = cacheIndex.getSynchronized(idx -> idx.getAllUnDeletedEntries().stream()
+                .map(entry -> new CacheFile(getInfoFile(idx, entry), entry))
+                .collect(Collectors.toList()));
 
         final Map<String, CacheId> result = new LinkedHashMap<>();
-        entries.forEach(entry -> {
-            final CacheFile fileEntry = createPaneObjectArray(entry);
+        files.forEach(fileEntry -> {
             if (includeJnlpPath) {
-                final CacheEntry infoFile = getInfoFile(entry);
-                final String jnlpPath = infoFile.getJnlpPath();
+                final String jnlpPath = fileEntry.getJnlpPath();
                 if (jnlpPath != null && jnlpPath.matches(filter)) {
                     final CacheId cacheId = result.computeIfAbsent(jnlpPath, CacheId::jnlpPathId);
                     cacheId.getFiles().add(fileEntry);
                 }
             }
             if (includeDomain) {
-                final String domain = entry.getDomain();
+                final String domain = fileEntry.getDomain();
                 if (domain != null && domain.matches(filter)) {
                     final CacheId cacheId = result.computeIfAbsent(domain, CacheId::domainId);
                     cacheId.getFiles().add(fileEntry);
@@ -289,9 +346,384 @@ class LeastRecentlyUsedCache {
         return new ArrayList<>(result.values());
     }
 
-    private CacheFile createPaneObjectArray(LeastRecentlyUsedCacheEntry entry) {
-        final CacheEntry infoFile = getInfoFile(entry);
-        return new CacheFile(infoFile, entry);
+    /**
+     * Measures the files derived from a cached file (e.g. extracted nested jars) and stores their size in the index
+     * so they count against the size limit of the cache.
+     * <p>
+     * Derived artifacts are stored next to the cache file and their name starts with the name of the cache file
+     * followed by a dot. They are removed together with the entry. The native libraries extracted from the
+     * cached file are counted as well, they are removed by the sweep once the entry is gone.
+     *
+     * @param cacheFile the cached file
+     */
+    void updateDerivedArtifacts(File cacheFile) {
+        final Optional<String> entryId = entryIdOf(cacheFile);
+        if (!entryId.isPresent()) {
+            return; // not in this cache
+        }
+        final Optional<String> digest = cacheIndex.getSynchronized(idx -> idx.findById(entryId.get())
+                .map(LeastRecentlyUsedCacheEntry::getDigest));
+        final long derivedSize = measureDerivedArtifacts(cacheFile) + measureNativeLibraries(digest.orElse(null));
+        cacheIndex.runSynchronized(idx -> idx.findById(entryId.get())
+                .filter(entry -> entry.getDerivedSize() != derivedSize)
+                .ifPresent(entry -> evictToFit(idx, idx.updateDerivedSize(entry, derivedSize))));
+    }
+
+    /**
+     * Returns the SHA-256 digest of a file. For files in this cache the digest stored in the index is used,
+     * other files are read.
+     *
+     * @param file the file
+     * @return the hex encoded digest
+     */
+    String getDigest(File file) throws IOException {
+        final Optional<String> entryId = entryIdOf(file);
+        if (entryId.isPresent()) {
+            final Optional<String> digest = cacheIndex.getSynchronized(idx -> idx.findById(entryId.get())
+                    .filter(entry -> getCacheFile(entry).getAbsoluteFile().equals(file.getAbsoluteFile()))
+                    .map(LeastRecentlyUsedCacheEntry::getDigest));
+            if (digest.isPresent()) {
+                return digest.get();
+            }
+        }
+        return DigestUtils.sha256Hex(file);
+    }
+
+    /**
+     * @return the digests of all entries in the cache
+     */
+    Set<String> getDigests() {
+        return cacheIndex.getSynchronized(idx -> idx.getAllUnDeletedEntries().stream()
+                .map(LeastRecentlyUsedCacheEntry::getDigest)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+    }
+
+    /**
+     * @return the directory in which native libraries extracted from jars are kept
+     */
+    File getNativeLibrariesDir() {
+        return new File(rootCacheDir.getFile(), NATIVE_LIBRARIES_DIR_NAME);
+    }
+
+    /**
+     * @return the directory in which the class indexes of applications are kept
+     */
+    File getClassIndexesDir() {
+        return new File(rootCacheDir.getFile(), CLASS_INDEXES_DIR_NAME);
+    }
+
+    /**
+     * @return the directory in which the results of the signature verification of jars are kept
+     */
+    File getVerificationResultsDir() {
+        return new File(rootCacheDir.getFile(), VERIFICATION_RESULTS_DIR_NAME);
+    }
+
+    /**
+     * @return the id of the entry the file belongs to or {@code empty} if the file is not in this cache
+     */
+    private Optional<String> entryIdOf(File cacheFile) {
+        final File entryDir = cacheFile.getParentFile();
+        final File levelOneDir = entryDir == null ? null : entryDir.getParentFile();
+        if (levelOneDir == null || !new File(rootCacheDir.getFullPath()).getAbsoluteFile().equals(levelOneDir.getAbsoluteFile().getParentFile())) {
+            return Optional.empty();
+        }
+        return Optional.of(entryIdFromCacheDir(entryDir));
+    }
+
+    private static long measureDerivedArtifacts(File cacheFile) {
+        final File[] files = cacheFile.getParentFile().listFiles(file -> isDerivedArtifact(cacheFile, file));
+        long size = 0;
+        if (files != null) {
+            for (File file : files) {
+                size += sizeOf(file);
+            }
+        }
+        return size;
+    }
+
+    private long measureNativeLibraries(String digest) {
+        if (digest == null) {
+            return 0;
+        }
+        final File directory = new File(getNativeLibrariesDir(), digest);
+        return directory.isDirectory() ? sizeOf(directory) : 0;
+    }
+
+    private static boolean isDerivedArtifact(File cacheFile, File file) {
+        final String name = file.getName();
+        return name.startsWith(cacheFile.getName() + ".") && !name.endsWith(PARTIAL_SUFFIX);
+    }
+
+    private static boolean isPartialFile(File cacheFile, File file) {
+        return file.getName().equals(cacheFile.getName() + PARTIAL_SUFFIX);
+    }
+
+    private static long sizeOf(File file) {
+        final File[] children = file.listFiles();
+        if (children == null) {
+            return file.length();
+        }
+        long size = 0;
+        for (File child : children) {
+            size += sizeOf(child);
+        }
+        return size;
+    }
+
+    /**
+     * Returns the cached files whose location or jnlp path contains the filter (ignoring case).
+     * Filtering and sorting only consult the index, the info of an entry is resolved when it is first accessed.
+     *
+     * @param filter    text to search for, {@code null} or blank to return all files
+     * @param sortKey   the order of the returned files
+     * @param ascending whether to sort in ascending order
+     * @return the matching files
+     */
+    List<CacheFile> getCacheFiles(String filter, CacheFile.SortKey sortKey, boolean ascending) {
+        final String search = StringUtils.isBlank(filter) ? null : filter.trim().toLowerCase();
+        final Comparator<LeastRecentlyUsedCacheEntry> comparator = ascending ? sortKey.getComparator() : sortKey.getComparator().reversed();
+        final List<LeastRecentlyUsedCacheEntry> entries = cacheIndex.getSynchronized(idx -> idx.getAllUnDeletedEntries().stream()
+                .filter(entry -> search == null || matchesSearch(entry, search))
+                .sorted(comparator)
+                .collect(Collectors.toList()));
+        return entries.stream()
+                .map(entry -> new CacheFile(entry, () -> resolveInfoFile(entry)))
+                .collect(Collectors.toList());
+    }
+
+    private boolean matchesSearch(LeastRecentlyUsedCacheEntry entry, String search) {
+        final String jnlpPath = entry.getJnlpPath();
+        return entry.getResourceHref().toString().toLowerCase().contains(search)
+                || (jnlpPath != null && jnlpPath.toLowerCase().contains(search));
+    }
+
+    private CacheEntry resolveInfoFile(LeastRecentlyUsedCacheEntry entry) {
+        if (entry.hasDownloadInfo()) {
+            return new CacheEntry(entry, getCacheFile(entry));
+        }
+        return cacheIndex.getSynchronized(idx -> getInfoFile(idx, entry));
+    }
+
+    /**
+     * Writes all cached resources whose domain or jnlp path matches the filter into a bundle.
+     *
+     * @param bundle the file to write the bundle to
+     * @param filter regex to filter the cache IDs
+     * @return the number of exported resources
+     */
+    int exportCache(File bundle, String filter) throws IOException {
+        final List<CacheEntry> selected = cacheIndex.getSynchronized(idx -> idx.getAllUnDeletedEntries().stream()
+                .map(entry -> getInfoFile(idx, entry))
+                .filter(infoFile -> matchesCacheId(infoFile, filter))
+                .filter(CacheEntry::isCached)
+                .collect(Collectors.toList()));
+        CacheBundle.write(bundle, selected);
+        return selected.size();
+    }
+
+    private boolean matchesCacheId(CacheEntry infoFile, String filter) {
+        final String domain = infoFile.getResourceHref().getHost();
+        final String jnlpPath = infoFile.getJnlpPath();
+        return (domain != null && domain.matches(filter)) || (jnlpPath != null && jnlpPath.matches(filter));
+    }
+
+    /**
+     * Merges the resources of a bundle into the cache.
+     * All resources are extracted and verified before the cache is changed. The files are then moved into
+     * new cache directories and the index is only updated once all files are in place, in a single step.
+     * If any step fails, the directories and entries created so far are removed again.
+     * Resources for which the cache already holds the same or a newer copy are skipped.
+     *
+     * @param bundle the bundle to import
+     * @return the number of imported resources
+     */
+    int importCache(File bundle) throws IOException {
+        final File stagingDir = new File(rootCacheDir.getFile(), ".import-" + System.nanoTime());
+        FileUtils.createParentDir(stagingDir);
+        FileUtils.createRestrictedDirectory(stagingDir);
+        try {
+            final List<CacheBundle.Item> items = CacheBundle.extract(bundle, stagingDir);
+            return cacheIndex.getSynchronized(idx -> {
+                final Map<CacheBundle.Item, File> dirs = new LinkedHashMap<>();
+                try {
+                    for (CacheBundle.Item item : items) {
+                        final boolean upToDate = idx.find(item.resourceHref, item.version)
+                                .map(entry -> getInfoFile(idx, entry))
+                                .map(infoFile -> infoFile.isCurrent(item.lastModified))
+                                .orElse(false);
+                        if (upToDate) {
+                            LOG.debug("Skipping import of {} (v: {}) as the cache is up to date", item.resourceHref, item.version);
+                            continue;
+                        }
+
+                        final File dir = makeNewCacheDir();
+                        dirs.put(item, dir);
+                        final File cacheFile = new File(dir, getCacheFileName(item.resourceHref));
+                        if (!item.file.renameTo(cacheFile)) {
+                            throw new RuntimeException("Failed to move " + item.file + " to " + cacheFile);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    deleteAll(dirs.values());
+                    throw e;
+                }
+
+                final List<LeastRecentlyUsedCacheEntry> replaced = new ArrayList<>();
+                final List<LeastRecentlyUsedCacheEntry> created = new ArrayList<>();
+                try {
+                    for (Map.Entry<CacheBundle.Item, File> imported : dirs.entrySet()) {
+                        final CacheBundle.Item item = imported.getKey();
+                        idx.find(item.resourceHref, item.version).ifPresent(replaced::add);
+                        LeastRecentlyUsedCacheEntry entry = idx.createEntry(item.resourceHref, item.version, entryIdFromCacheDir(imported.getValue()));
+                        created.add(entry);
+                        if (item.jnlpPath != null) {
+                            entry = idx.updateJnlpPath(entry, item.jnlpPath);
+                        }
+                        idx.updateDownloadInfo(entry, item.size, item.lastModified, item.downloadedAt, item.digest);
+                    }
+                } catch (RuntimeException e) {
+                    created.forEach(idx::removeEntry);
+                    deleteAll(dirs.values());
+                    throw e;
+                }
+                replaced.forEach(idx::markEntryForDeletion);
+                evictToFit(idx, null);
+                return dirs.size();
+            });
+        } finally {
+            deleteAll(stagingDir);
+        }
+    }
+
+    /**
+     * Checks the cached files against the sizes and digests stored in the index.
+     * <p>
+     * The files are read in parallel, the index is only locked to take a snapshot and to apply the results.
+     * Entries lacking a size or digest are repaired by storing the values of the file.
+     * Entries whose file is missing, has a different size or digest, or is a jar which cannot be opened,
+     * are moved into the quarantine directory and removed from the index.
+     * Entries which were downloaded again while being checked are skipped.
+     * <p>
+     * If other instances of javaws are running, which may be replacing the files just now, the cache is neither
+     * swept nor are entries quarantined. Such entries are only reported as broken.
+     *
+     * @param parallelism number of threads reading files
+     * @return the result of the verification
+     */
+    CacheVerificationReport verifyCache(int parallelism) {
+        final long start = System.nanoTime();
+        final boolean removeFiles = !cannotClearCache();
+        if (removeFiles) {
+            sweepCache();
+        }
+
+        final List<LeastRecentlyUsedCacheEntry> entries = cacheIndex.getSynchronized(LeastRecentlyUsedCacheIndex::getAllUnDeletedEntries);
+        final List<Callable<EntryVerification>> checks = entries.stream()
+                .map(entry -> (Callable<EntryVerification>) () -> verifyEntry(entry))
+                .collect(Collectors.toList());
+
+        final List<EntryVerification> results = new ArrayList<>();
+        final ExecutorService executor = CachedDaemonThreadPoolProvider.createThreadPool(Math.max(1, parallelism));
+        try {
+            for (Future<EntryVerification> future : executor.invokeAll(checks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while verifying the cache", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to verify the cache", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final CacheVerificationReport report = new CacheVerificationReport();
+        final File quarantineDir = new File(rootCacheDir.getFile(), QUARANTINE_DIR_NAME);
+        cacheIndex.runSynchronized(idx -> {
+            for (EntryVerification result : results) {
+                final Optional<LeastRecentlyUsedCacheEntry> current = idx.getAllUnDeletedEntries().stream()
+                        .filter(result.entry::equals)
+                        .findFirst();
+                if (!result.checked || !current.isPresent() || current.get().getDownloadedAt() != result.entry.getDownloadedAt()) {
+                    report.addSkipped();
+                } else if (result.problem != null && !removeFiles) {
+                    LOG.warn("Not quarantining {} (v: {}) as other instances of javaws are running - {}", result.entry.getResourceHref(), result.entry.getVersion(), result.problem);
+                    report.addBroken(result.size, result.entry.getResourceHref() + " - " + result.problem);
+                } else if (result.problem != null) {
+                    LOG.warn("Quarantining {} (v: {}) - {}", result.entry.getResourceHref(), result.entry.getVersion(), result.problem);
+                    quarantine(cacheDirFromEntryId(result.entry.getId()), new File(quarantineDir, result.entry.getId()));
+                    idx.removeEntry(result.entry);
+                    report.addQuarantined(result.size, result.entry.getResourceHref() + " - " + result.problem);
+                } else if (result.digest != null) {
+                    idx.updateDownloadInfo(result.entry, result.size, result.entry.getLastModified(), result.entry.getDownloadedAt(), result.digest);
+                    report.addRepaired(result.size);
+                } else {
+                    report.addOk(result.size);
+                }
+            }
+        });
+        report.setDurationNanos(System.nanoTime() - start);
+        return report;
+    }
+
+    /**
+     * Reads the cached file of the entry. Does not access the index.
+     */
+    private EntryVerification verifyEntry(LeastRecentlyUsedCacheEntry entry) {
+        if (!entry.hasDownloadInfo()) {
+            // download not yet completed or info still in an old info file
+            return EntryVerification.skipped(entry);
+        }
+
+        final File cacheFile = getCacheFile(entry);
+        if (!cacheFile.isFile()) {
+            return EntryVerification.broken(entry, 0, "file is missing");
+        }
+        final long size = cacheFile.length();
+        if (entry.getSize() > 0 && entry.getSize() != size) {
+            return EntryVerification.broken(entry, 0, "size is " + size + " instead of " + entry.getSize());
+        }
+
+        final String hexDigest;
+        try {
+            hexDigest = DigestUtils.sha256Hex(cacheFile);
+        } catch (IOException e) {
+            return EntryVerification.broken(entry, 0, "file cannot be read: " + e.getMessage());
+        }
+
+        if (entry.getDigest() != null) {
+            if (!entry.getDigest().equals(hexDigest)) {
+                return EntryVerification.broken(entry, size, "digest does not match");
+            }
+            return entry.getSize() > 0 ? EntryVerification.ok(entry, size) : EntryVerification.repaired(entry, size, hexDigest);
+        }
+
+        // without a digest a truncated jar can only be detected by opening it
+        if (cacheFile.getName().toLowerCase().endsWith(".jar")) {
+            try (final ZipFile ignored = new ZipFile(cacheFile)) {
+                LOG.debug("Opened {} to verify it", cacheFile);
+            } catch (IOException e) {
+                return EntryVerification.broken(entry, size, "jar cannot be opened: " + e.getMessage());
+            }
+        }
+        return EntryVerification.repaired(entry, size, hexDigest);
+    }
+
+    private void quarantine(File entryDir, File target) {
+        if (!entryDir.exists()) {
+            return;
+        }
+        try {
+            FileUtils.createParentDir(target);
+            if (!target.exists() && entryDir.renameTo(target)) {
+                return;
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to create quarantine directory {} - {}", target.getParentFile(), e.getMessage());
+        }
+        deleteAll(entryDir);
     }
 
     void deleteFromCache(URL resourceHref, VersionId version) {
@@ -310,7 +742,7 @@ class LeastRecentlyUsedCache {
         cacheIndex.runSynchronized(idx -> {
             final List<LeastRecentlyUsedCacheEntry> allEntries = idx.getAllUnDeletedEntries();
             allEntries.stream()
-                    .filter(entry -> cacheId.equals(entry.getDomain()) || cacheId.equals(getInfoFile(entry).getJnlpPath()))
+                    .filter(entry -> cacheId.equals(entry.getDomain()) || cacheId.equals(getInfoFile(idx, entry).getJnlpPath()))
                     .forEach(entry -> deleteFromCache(idx, entry));
         });
         if (OsUtil.isWindows()) {
@@ -384,90 +816,360 @@ class LeastRecentlyUsedCache {
 
     /**
      * This will remove all old cache items.
+     * <p>
+     * Only the index is consulted, the file system is not scanned.
+     * Entries which are marked for deletion are removed and the size limit is enforced.
+     * Directories not referenced by the index are removed by {@link #sweepCache()}.
+     * If a sweep happened in this process, additional files in the entry directories are removed as well.
      */
     void cleanCache() {
         if (cannotClearCache()) {
             return;
         }
 
-        final File[] levelOneDirs = rootCacheDir.getFile().listFiles(File::isDirectory);
-        if (isNullOrEmpty(levelOneDirs)) {
-            cacheIndex.runSynchronized(LeastRecentlyUsedCacheIndex::clear);
-        } else {
-            final Set<String> entryIds = collectAllEntryIdsFromFileSystem(levelOneDirs);
-            cacheIndex.runSynchronized(idx -> {
-
-                final long maxSize = getMaxSizeInBytes();
-                long curSize = 0;
-
-                final List<LeastRecentlyUsedCacheEntry> toDelete = new ArrayList<>();
-                for (LeastRecentlyUsedCacheEntry entry : idx.getAllEntries()) {
-                    entryIds.remove(entry.getId());
-
-                    final CacheEntry infoFile = getInfoFile(entry);
-                    final File cacheFile = infoFile.getCacheFile();
-                    final File directory = cacheFile.getParentFile();
-
-                    if (!infoFile.exists()) {
-                        toDelete.add(entry);
-                        deleteAll(directory);
-                        continue;
-                    }
+        final boolean removeUnusedFiles = removeUnusedFilesPending.getAndSet(false);
+        cacheIndex.runSynchronized(idx -> {
+            updateUnknownSizes(idx);
+            evictToFit(idx, null);
+
+            final List<LeastRecentlyUsedCacheEntry> toDelete = new ArrayList<>();
+            for (LeastRecentlyUsedCacheEntry entry : idx.getAllEntries()) {
+                if (entry.isMarkedForDeletion()) {
+                    toDelete.add(entry);
+                    deleteAll(cacheDirFromEntryId(entry.getId()));
+                } else if (removeUnusedFiles) {
+                    removeUnusedFiles(getInfoFile(idx, entry));
+                }
+            }
+            toDelete.forEach(idx::removeEntry);
+        });
+    }
 
-                    final long size = cacheFile.length();
-                    if (entry.isMarkedForDeletion() || !cacheFile.isFile() || (maxSize >= 0 && curSize + size > maxSize)) {
-                        toDelete.add(entry);
-                        deleteAll(directory);
-                        continue;
-                    }
+    /**
+     * Removes all files in the directory of the entry except the cache file and its derived artifacts.
+     * Info files of older versions are kept until their content is migrated into the index,
+     * partial files are kept as long as they may belong to a running download.
+     */
+    private void removeUnusedFiles(CacheEntry infoFile) {
+        final File cacheFile = infoFile.getCacheFile();
+        final File[] cacheDirFiles = cacheFile.getParentFile().listFiles();
+        if (!isNullOrEmpty(cacheDirFiles)) {
+            for (File file : cacheDirFiles) {
+                final boolean keepInfoFile = file.getName().equals(CacheEntry.INFO_SUFFIX) && infoFile.getDownloadedAt() == 0;
+                final boolean keepPartialFile = isPartialFile(cacheFile, file) && !isPartialFileExpired(file);
+                if (!file.equals(cacheFile) && !keepInfoFile && !keepPartialFile && !isDerivedArtifact(cacheFile, file)) {
+                    deleteAll(file);
+                }
+            }
+        }
+    }
 
-                    final File[] cacheDirFiles = directory.listFiles();
-                    if (!isNullOrEmpty(cacheDirFiles)) {
-                        for (File file : cacheDirFiles) {
-                            if (!file.equals(cacheFile) && !file.getName().equals(CacheEntry.INFO_SUFFIX)) {
-                                deleteAll(file);
-                            }
-                        }
+    /**
+     * Indexes written by older versions do not contain the size of the entries.
+     * Read the size once from the file system and store it in the index.
+     */
+    private void updateUnknownSizes(LeastRecentlyUsedCacheIndex idx) {
+        for (LeastRecentlyUsedCacheEntry entry : idx.getAllUnDeletedEntries()) {
+            if (entry.getSize() == 0) {
+                final long size = getCacheFile(entry).length();
+                if (size > 0) {
+                    idx.updateSize(entry, size);
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the least recently used entries for deletion until the total size of the cache is within the limit.
+     *
+     * @param idx  the index
+     * @param keep an entry which must not be evicted, may be {@code null}
+     */
+    private void evictToFit(LeastRecentlyUsedCacheIndex idx, LeastRecentlyUsedCacheEntry keep) {
+        final long maxSize = getMaxSizeInBytes();
+        if (maxSize < 0 || idx.getTotalSize() <= maxSize) {
+            return;
+        }
+
+        // entries are sorted from most recently to least recently used
+        final List<LeastRecentlyUsedCacheEntry> candidates = idx.getAllUnDeletedEntries();
+        for (int i = candidates.size() - 1; i >= 0 && idx.getTotalSize() > maxSize; i--) {
+            final LeastRecentlyUsedCacheEntry entry = candidates.get(i);
+            if (!entry.equals(keep)) {
+                LOG.debug("Evicting {} (v: {}) with {} bytes from the cache", entry.getResourceHref(), entry.getVersion(), entry.getDiskSize());
+                idx.markEntryForDeletion(entry);
+                statistics.increment(CacheStatistics.Counter.EVICTED_ENTRIES);
+                statistics.add(CacheStatistics.Counter.EVICTED_BYTES, entry.getDiskSize());
+            }
+        }
+    }
+
+    /**
+     * Starts {@link #sweepCache()} on a background thread if the last sweep is older than the sweep interval.
+     * If other instances of javaws are running, which may use the files, nothing is removed and only the sizes
+     * of the derived artifacts are updated. As this instance counts as running once it marked itself so,
+     * this has to be called before.
+     */
+    void sweepCacheInBackground() {
+        if (isSweepDue() && sweepRunning.compareAndSet(false, true)) {
+            final boolean removeFiles = okToClearCache();
+            CachedDaemonThreadPoolProvider.getThreadPool().execute(() -> {
+                try {
+                    if (removeFiles) {
+                        sweepCache();
+                    } else {
+                        LOG.info("Not removing unused files from the cache as other instances of javaws are running");
+                        sweepDerivedArtifacts(false);
                     }
+                } catch (Exception e) {
+                    LOG.error("Failed to sweep the cache", e);
+                } finally {
+                    sweepRunning.set(false);
+                }
+            });
+        }
+    }
 
-                    curSize += size;
+    /**
+     * Walks the cache directory and removes all directories which are not referenced by the index.
+     * Entries in the index whose directory no longer exists are removed from the index.
+     * Within the remaining directories expired partial files and orphaned derived artifacts are removed.
+     * <p>
+     * The directories are listed without holding the lock on the index, so entries may be created by this or
+     * other instances of javaws in the meantime. A new entry gets its directory while holding the lock, so
+     * the directory of an entry missing from the listing is checked again under the lock before the entry
+     * is removed. Directories listed but not in the index cannot be reused by new entries while they exist.
+     * Empty level one directories are only removed under the lock, as new entries may be created in them.
+     */
+    void sweepCache() {
+        sweepNativeLibraries();
+        sweepClassIndexes();
+        sweepVerificationResults();
+
+        final File cacheRoot = rootCacheDir.getFile();
+        // hidden directories are used for quarantine and staging and contain no entries
+        final File[] levelOneDirs = cacheRoot.listFiles(dir -> dir.isDirectory() && !dir.getName().startsWith("."));
+        if (isNullOrEmpty(levelOneDirs)) {
+            touchSweepMarker();
+            return;
+        }
+
+        final Set<String> entryIds = collectAllEntryIdsFromFileSystem(levelOneDirs);
+        cacheIndex.runSynchronized(idx -> {
+            final List<LeastRecentlyUsedCacheEntry> missing = new ArrayList<>();
+            for (LeastRecentlyUsedCacheEntry entry : idx.getAllEntries()) {
+                // entries created after the listing are not in it but have their directory
+                if (!entryIds.remove(entry.getId()) && !cacheDirFromEntryId(entry.getId()).isDirectory()) {
+                    missing.add(entry);
                 }
+            }
+            missing.forEach(idx::removeEntry);
+        });
 
-                toDelete.forEach(idx::removeEntry);
-            });
+        // delete dirs with no entry in the least recently used index
+        final List<File> dirsWithNoEntryInTheIndex = entryIds.stream()
+                .map(this::cacheDirFromEntryId)
+                .collect(Collectors.toList());
+        deleteAll(dirsWithNoEntryInTheIndex);
+        statistics.add(CacheStatistics.Counter.REMOVED_ORPHANS, dirsWithNoEntryInTheIndex.size());
 
-            // delete dirs with no entry in the least recently used index
-            final List<File> dirsWithNoEntryInTheIndex = entryIds.stream()
-                    .map(this::cacheDirFromEntryId)
-                    .collect(Collectors.toList());
-            deleteAll(dirsWithNoEntryInTheIndex);
+        // delete empty level one dirs, new entries may create their directory in them until the lock is held
+        cacheIndex.runSynchronized(idx -> {
+            for (File dir : levelOneDirs) {
+                if (isNullOrEmpty(dir.list()) && !dir.delete()) {
+                    LOG.debug("Failed to delete empty directory {}", dir);
+                }
+            }
+        });
 
-            // delete empty level one dirs
-            final List<File> emptyDirs = Arrays.stream(levelOneDirs)
-                    .filter(dir -> isNullOrEmpty(dir.list()))
-                    .collect(Collectors.toList());
-            deleteAll(emptyDirs);
+        sweepDerivedArtifacts(true);
+
+        removeUnusedFilesPending.set(true);
+        touchSweepMarker();
+    }
+
+    /**
+     * Removes expired partial files and derived artifacts of incomplete entries
+     * and corrects the sizes of the derived artifacts, including the extracted native libraries, stored in the index.
+     *
+     * @param removeFiles whether files may be removed, otherwise only the sizes are corrected
+     */
+    private void sweepDerivedArtifacts(boolean removeFiles) {
+        final List<LeastRecentlyUsedCacheEntry> entries = cacheIndex.getSynchronized(LeastRecentlyUsedCacheIndex::getAllUnDeletedEntries);
+        final Map<String, Long> derivedSizes = new HashMap<>();
+        for (LeastRecentlyUsedCacheEntry entry : entries) {
+            final File cacheFile = getCacheFile(entry);
+            final File[] files = cacheFile.getParentFile().listFiles();
+            if (files == null) {
+                continue;
+            }
+            long derivedSize = cacheFile.isFile() ? measureNativeLibraries(entry.getDigest()) : 0;
+            for (File file : files) {
+                if (removeFiles && isPartialFile(cacheFile, file) && isPartialFileExpired(file)) {
+                    LOG.debug("Removing partial file {}", file);
+                    deleteAll(file);
+                } else if (isDerivedArtifact(cacheFile, file)) {
+                    if (cacheFile.isFile()) {
+                        derivedSize += sizeOf(file);
+                    } else if (removeFiles) {
+                        LOG.debug("Removing {} as {} does not exist", file, cacheFile);
+                        deleteAll(file);
+                    }
+                }
+            }
+            if (derivedSize != entry.getDerivedSize()) {
+                derivedSizes.put(entry.getId(), derivedSize);
+            }
+        }
+
+        if (!derivedSizes.isEmpty()) {
+            cacheIndex.runSynchronized(idx -> derivedSizes.forEach((id, size) -> idx.findById(id)
+                    .ifPresent(entry -> idx.updateDerivedSize(entry, size))));
+        }
+    }
+
+    /**
+     * Removes the native libraries of jars which are no longer in the cache and were not used for a while,
+     * as well as abandoned extractions.
+     */
+    private void sweepNativeLibraries() {
+        final File[] dirs = getNativeLibrariesDir().listFiles(File::isDirectory);
+        if (isNullOrEmpty(dirs)) {
+            return;
+        }
+        final Set<String> digests = getDigests();
+        final long now = System.currentTimeMillis();
+        for (File dir : dirs) {
+            final long age = now - dir.lastModified();
+            final boolean abandonedExtraction = dir.getName().contains(".") && age > PARTIAL_FILE_GRACE_PERIOD;
+            final boolean unused = !digests.contains(dir.getName()) && age > UNUSED_DATA_RETENTION;
+            if (abandonedExtraction || unused) {
+                LOG.debug("Removing native libraries in {}", dir);
+                deleteAll(dir);
+            }
+        }
+    }
+
+    /**
+     * Removes the class indexes of applications which were not started for a while.
+     */
+    private void sweepClassIndexes() {
+        final File[] files = getClassIndexesDir().listFiles(File::isFile);
+        if (isNullOrEmpty(files)) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (now - file.lastModified() > UNUSED_DATA_RETENTION) {
+                LOG.debug("Removing class index {}", file);
+                deleteAll(file);
+            }
+        }
+    }
+
+    /**
+     * Removes the verification results of jars which are no longer in the cache and were not used for a while.
+     */
+    private void sweepVerificationResults() {
+        final File[] files = getVerificationResultsDir().listFiles(File::isFile);
+        if (isNullOrEmpty(files)) {
+            return;
+        }
+        final Set<String> digests = getDigests();
+        final long now = System.currentTimeMillis();
+        for (File file : files) {
+            final String name = file.getName();
+            final String digest = name.contains(".") ? name.substring(0, name.indexOf('.')) : name;
+            if (!digests.contains(digest) && now - file.lastModified() > UNUSED_DATA_RETENTION) {
+                LOG.debug("Removing verification result {}", file);
+                deleteAll(file);
+            }
+        }
+    }
+
+    private static boolean isPartialFileExpired(File file) {
+        return System.currentTimeMillis() - file.lastModified() > PARTIAL_FILE_GRACE_PERIOD;
+    }
+
+    private boolean isSweepDue() {
+        final File marker = new File(rootCacheDir.getFile(), SWEEP_MARKER_FILE_NAME);
+        return System.currentTimeMillis() - marker.lastModified() > SWEEP_INTERVAL;
+    }
+
+    private void touchSweepMarker() {
+        final File marker = new File(rootCacheDir.getFile(), SWEEP_MARKER_FILE_NAME);
+        try {
+            if (!marker.exists()) {
+                FileUtils.createRestrictedFile(marker);
+            }
+            if (!marker.setLastModified(System.currentTimeMillis())) {
+                LOG.debug("Failed to update the sweep marker {}", marker);
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to create the sweep marker {} - {}", marker, e.getMessage());
         }
     }
 
+    long getEvictedEntries() {
+        return statistics.get(CacheStatistics.Counter.EVICTED_ENTRIES);
+    }
+
+    long getEvictedBytes() {
+        return statistics.get(CacheStatistics.Counter.EVICTED_BYTES);
+    }
+
+    long getRemovedOrphans() {
+        return statistics.get(CacheStatistics.Counter.REMOVED_ORPHANS);
+    }
+
+    CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Adds the statistics of this process to the aggregates stored in the cache directory.
+     */
+    void saveStatistics() {
+        cacheIndex.runSynchronized(idx -> statistics.persist(getStatisticsFile()));
+    }
+
+    /**
+     * @return the aggregated statistics of all runs as JSON document
+     */
+    String getStatisticsAsJson() {
+        return cacheIndex.getSynchronized(idx -> statistics.toJson(getStatisticsFile(), rootCacheDir.getFile(),
+                idx.getAllUnDeletedEntries().size(), idx.getTotalSize(), getMaxSizeInBytes()));
+    }
+
+    private File getStatisticsFile() {
+        return new File(rootCacheDir.getFile(), CacheStatistics.STATISTICS_FILE_NAME);
+    }
+
     private Set<String> collectAllEntryIdsFromFileSystem(File[] levelOneDirs) {
         final Set<String> entryIds = new HashSet<>();
         for (File levelOneDir : levelOneDirs) {
             final File[] levelTwoDirs = levelOneDir.listFiles(File::isDirectory);
             if (levelTwoDirs != null) {
                 for (File levelTwoDir : levelTwoDirs) {
-                    final String entryId = entryIdFromCacheDir(levelTwoDir);
-                    if (new File(levelTwoDir, CacheEntry.INFO_SUFFIX).isFile()) {
-                        entryIds.add(entryId);
-                    }
+                    entryIds.add(entryIdFromCacheDir(levelTwoDir));
                 }
             }
         }
         return entryIds;
     }
 
-    @SuppressWarnings("ConstantConditions")
+    /**
+     * The limit is read once from the configuration as it is needed on every insert.
+     */
     private long getMaxSizeInBytes() {
+        if (maxSizeInBytes == null) {
+            maxSizeInBytes = readMaxSizeInBytes();
+        }
+        return maxSizeInBytes;
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    private long readMaxSizeInBytes() {
         try {
             final String maxSizePropertyValue = JNLPRuntime.getConfiguration().getProperty(ConfigurationConstants.KEY_CACHE_MAX_SIZE);
             final long maxSizeInMegaBytes = Long.parseLong(maxSizePropertyValue);
@@ -485,10 +1187,13 @@ class LeastRecentlyUsedCache {
         return new File(String.join("/", rootCacheDir.getFullPath(), idParts[0], idParts[1], cacheFilName));
     }
 
-    private CacheEntry getInfoFile(LeastRecentlyUsedCacheEntry entry) {
+    private CacheEntry getInfoFile(LeastRecentlyUsedCacheIndex idx, LeastRecentlyUsedCacheEntry entry) {
         final File cacheFile = getCacheFile(entry);
+        if (entry.hasDownloadInfo()) {
+            return new CacheEntry(entry, cacheFile);
+        }
         final File infoFile = new File(cacheFile.getParentFile(), CacheEntry.INFO_SUFFIX);
-        return new CacheEntry(entry, cacheFile, infoFile);
+        return new CacheEntry(CacheEntry.migrateInfoFile(idx, entry, infoFile), cacheFile);
     }
 
     private String entryIdFromCacheDir(File dir) {
@@ -552,6 +1257,9 @@ class LeastRecentlyUsedCache {
                 LOG.info("No instance file found");
                 return true;
             }
+        } catch (OverlappingFileLockException e) {
+            LOG.info("This instance of javaws is running");
+            return false;
         } catch (IOException e) {
             LOG.error("Failed to lock MAIN_LOCK (" + PathsAndFiles.MAIN_LOCK.getFullPath() + ")", e);
             return false;
@@ -566,6 +1274,41 @@ class LeastRecentlyUsedCache {
         }
     }
 
+    /**
+     * Result of reading the file of a single entry.
+     */
+    private static class EntryVerification {
+        private final LeastRecentlyUsedCacheEntry entry;
+        private final boolean checked;
+        private final long size;
+        private final String digest;
+        private final String problem;
+
+        private EntryVerification(LeastRecentlyUsedCacheEntry entry, boolean checked, long size, String digest, String problem) {
+            this.entry = entry;
+            this.checked = checked;
+            this.size = size;
+            this.digest = digest;
+            this.problem = problem;
+        }
+
+        private static EntryVerification skipped(LeastRecentlyUsedCacheEntry entry) {
+            return new EntryVerification(entry, false, 0, null, null);
+        }
+
+        private static EntryVerification ok(LeastRecentlyUsedCacheEntry entry, long size) {
+            return new EntryVerification(entry, true, size, null, null);
+        }
+
+        private static EntryVerification repaired(LeastRecentlyUsedCacheEntry entry, long size, String digest) {
+            return new EntryVerification(entry, true, size, digest, null);
+        }
+
+        private static EntryVerification broken(LeastRecentlyUsedCacheEntry entry, long bytesRead, String problem) {
+            return new EntryVerification(entry, true, bytesRead, null, problem);
+        }
+    }
+
     private static class CacheHolder {
         private static final LeastRecentlyUsedCache INSTANCE = new LeastRecentlyUsedCache(PathsAndFiles.getRecentlyUsedFile(), PathsAndFiles.CACHE_DIR);
     }
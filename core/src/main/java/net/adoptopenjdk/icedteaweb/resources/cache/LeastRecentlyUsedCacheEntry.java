@@ -17,26 +17,87 @@ class LeastRecentlyUsedCacheEntry implements Comparable<LeastRecentlyUsedCacheEn
     private final URL resourceHref;
     private final VersionId version;
 
+    private final long size;
+    private final long lastModified;
+    private final long downloadedAt;
+    private final String jnlpPath;
+    private final String digest;
+    private final long derivedSize;
+
     LeastRecentlyUsedCacheEntry(String id, long lastAccessed, URL resourceHref, VersionId version) {
-        this.id = id;
-        this.lastAccessed = lastAccessed;
-        this.markedForDeletion = false;
-        this.resourceHref = resourceHref;
-        this.version = version;
+        this(id, lastAccessed, false, resourceHref, version, 0, 0, 0, null, null);
     }
 
-    LeastRecentlyUsedCacheEntry(String id, URL resourceHref, VersionId version) {
+    LeastRecentlyUsedCacheEntry(String id, long lastAccessed, boolean markedForDeletion, URL resourceHref, VersionId version,
+                                long size, long lastModified, long downloadedAt, String jnlpPath, String digest) {
+        this(id, lastAccessed, markedForDeletion, resourceHref, version, size, lastModified, downloadedAt, jnlpPath, digest, 0);
+    }
+
+    LeastRecentlyUsedCacheEntry(String id, long lastAccessed, boolean markedForDeletion, URL resourceHref, VersionId version,
+                                long size, long lastModified, long downloadedAt, String jnlpPath, String digest, long derivedSize) {
         this.id = id;
-        this.lastAccessed = 0;
-        this.markedForDeletion = true;
+        this.lastAccessed = markedForDeletion ? 0 : lastAccessed;
+        this.markedForDeletion = markedForDeletion;
         this.resourceHref = resourceHref;
         this.version = version;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.downloadedAt = downloadedAt;
+        this.jnlpPath = jnlpPath;
+        this.digest = digest;
+        this.derivedSize = derivedSize;
+    }
+
+    /**
+     * @return a copy of this entry with the passed access time
+     */
+    LeastRecentlyUsedCacheEntry accessedAt(long time) {
+        return new LeastRecentlyUsedCacheEntry(id, time, markedForDeletion, resourceHref, version, size, lastModified, downloadedAt, jnlpPath, digest, derivedSize);
+    }
+
+    /**
+     * @return a copy of this entry which is marked for deletion
+     */
+    LeastRecentlyUsedCacheEntry markedForDeletion() {
+        return new LeastRecentlyUsedCacheEntry(id, 0, true, resourceHref, version, size, lastModified, downloadedAt, jnlpPath, digest, derivedSize);
+    }
+
+    /**
+     * @return a copy of this entry with the passed size
+     */
+    LeastRecentlyUsedCacheEntry withSize(long size) {
+        return new LeastRecentlyUsedCacheEntry(id, lastAccessed, markedForDeletion, resourceHref, version, size, lastModified, downloadedAt, jnlpPath, digest, derivedSize);
+    }
+
+    /**
+     * @return a copy of this entry with the passed jnlp path
+     */
+    LeastRecentlyUsedCacheEntry withJnlpPath(String jnlpPath) {
+        return new LeastRecentlyUsedCacheEntry(id, lastAccessed, markedForDeletion, resourceHref, version, size, lastModified, downloadedAt, jnlpPath, digest, derivedSize);
+    }
+
+    /**
+     * @return a copy of this entry with the information about a completed download
+     */
+    LeastRecentlyUsedCacheEntry withDownloadInfo(long size, long lastModified, long downloadedAt, String digest) {
+        return new LeastRecentlyUsedCacheEntry(id, lastAccessed, markedForDeletion, resourceHref, version, size, lastModified, downloadedAt, jnlpPath, digest, derivedSize);
+    }
+
+    /**
+     * @return a copy of this entry with the passed size of the derived artifacts
+     */
+    LeastRecentlyUsedCacheEntry withDerivedSize(long derivedSize) {
+        return new LeastRecentlyUsedCacheEntry(id, lastAccessed, markedForDeletion, resourceHref, version, size, lastModified, downloadedAt, jnlpPath, digest, derivedSize);
     }
 
     String getId() {
         return id;
     }
 
+    long getLastAccessed() {
+        return lastAccessed;
+    }
+
     URL getResourceHref() {
         return resourceHref;
     }
@@ -53,6 +114,62 @@ class LeastRecentlyUsedCacheEntry implements Comparable<LeastRecentlyUsedCacheEn
         return resourceHref.getHost();
     }
 
+    /**
+     * @return the number of bytes the cached file occupies on disk or {@code 0} if not yet known
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of bytes of the files derived from the cached file, e.g. extracted nested jars
+     */
+    long getDerivedSize() {
+        return derivedSize;
+    }
+
+    /**
+     * @return the number of bytes the entry occupies on disk including its derived artifacts
+     */
+    long getDiskSize() {
+        return size + derivedSize;
+    }
+
+    /**
+     * @return the last modification time reported by the server (in Java millis)
+     */
+    long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return the time the resource was downloaded (in Java millis) or {@code 0} if it was never downloaded
+     */
+    long getDownloadedAt() {
+        return downloadedAt;
+    }
+
+    /**
+     * @return the path of the jnlp which caused the download, may be {@code null}
+     */
+    String getJnlpPath() {
+        return jnlpPath;
+    }
+
+    /**
+     * @return the hex encoded SHA-256 digest of the cached file, may be {@code null}
+     */
+    String getDigest() {
+        return digest;
+    }
+
+    /**
+     * @return true if the information about a completed download is available
+     */
+    boolean hasDownloadInfo() {
+        return downloadedAt > 0;
+    }
+
     boolean isMarkedForDeletion() {
         return markedForDeletion;
     }
@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import static java.lang.Boolean.TRUE;
@@ -33,15 +34,31 @@ class LeastRecentlyUsedCacheIndex {
     private static final String KEY_DELETE = "delete";
     static final String KEY_HREF = "href";
     private static final String KEY_VERSION = "version";
+    static final String KEY_SIZE = "size";
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+    private static final String KEY_DOWNLOADED_AT = "downloadedAt";
+    private static final String KEY_JNLP_PATH = "jnlpPath";
+    private static final String KEY_DIGEST = "digest";
+    private static final String KEY_DERIVED_SIZE = "derivedSize";
+
+    private static final String[] ALL_KEYS = {KEY_HREF, KEY_VERSION, KEY_LAST_ACCESSED, KEY_DELETE,
+            KEY_SIZE, KEY_LAST_MODIFIED, KEY_DOWNLOADED_AT, KEY_JNLP_PATH, KEY_DIGEST, KEY_DERIVED_SIZE};
 
     private final PropertiesFile propertiesFile;
     private final List<LeastRecentlyUsedCacheEntry> entries;
 
+    /** sum of the disk sizes of all entries which are not marked for deletion */
+    private long totalSize;
+
     private boolean dirty = false;
 
     LeastRecentlyUsedCacheIndex(PropertiesFile propertiesFile, List<LeastRecentlyUsedCacheEntry> entries) {
         this.propertiesFile = propertiesFile;
         this.entries = entries;
+        this.totalSize = entries.stream()
+                .filter(e -> !e.isMarkedForDeletion())
+                .mapToLong(LeastRecentlyUsedCacheEntry::getDiskSize)
+                .sum();
     }
 
     /**
@@ -56,6 +73,18 @@ class LeastRecentlyUsedCacheIndex {
                 .findFirst();
     }
 
+    /**
+     * Finds the entry stored in the directory with the given id.
+     *
+     * @return the entry found or {@code empty}, never {@code null}.
+     */
+    Optional<LeastRecentlyUsedCacheEntry> findById(String id) {
+        return entries.stream()
+                .filter(e -> !e.isMarkedForDeletion())
+                .filter(e -> e.getId().equals(id))
+                .findFirst();
+    }
+
     /**
      * Finds a single entry and marks it as accessed.
      *
@@ -109,6 +138,13 @@ class LeastRecentlyUsedCacheIndex {
         return entries;
     }
 
+    /**
+     * @return the total number of bytes of all entries (including their derived artifacts) which are not marked for deletion
+     */
+    long getTotalSize() {
+        return totalSize;
+    }
+
     /**
      * Create a new entry.
      *
@@ -128,16 +164,99 @@ class LeastRecentlyUsedCacheIndex {
         return newEntry;
     }
 
+    /**
+     * Updates the size of the entry and the total size of the index.
+     *
+     * @return the updated entry
+     */
+    LeastRecentlyUsedCacheEntry updateSize(LeastRecentlyUsedCacheEntry entry, long size) {
+        return replace(entry, current -> current.withSize(size));
+    }
+
+    /**
+     * Updates the path of the jnlp which caused the entry to be downloaded.
+     *
+     * @return the updated entry
+     */
+    LeastRecentlyUsedCacheEntry updateJnlpPath(LeastRecentlyUsedCacheEntry entry, String jnlpPath) {
+        return replace(entry, current -> current.withJnlpPath(jnlpPath));
+    }
+
+    /**
+     * Updates the size of the files derived from the cached file and the total size of the index.
+     *
+     * @return the updated entry
+     */
+    LeastRecentlyUsedCacheEntry updateDerivedSize(LeastRecentlyUsedCacheEntry entry, long derivedSize) {
+        return replace(entry, current -> current.withDerivedSize(derivedSize));
+    }
+
+    /**
+     * Stores the information about a completed download in the entry.
+     *
+     * @return the updated entry
+     */
+    LeastRecentlyUsedCacheEntry updateDownloadInfo(LeastRecentlyUsedCacheEntry entry, long size, long lastModified, long downloadedAt, String digest) {
+        return replace(entry, current -> current.withDownloadInfo(size, lastModified, downloadedAt, digest));
+    }
+
     /**
      * Marks the entry for deletion
      */
     void markEntryForDeletion(URL resourceHref, VersionId version) {
-        find(resourceHref, version).ifPresent(entry -> {
-            entries.remove(entry);
-            entries.add(new LeastRecentlyUsedCacheEntry(entry.getId(), entry.getResourceHref(), entry.getVersion()));
+        find(resourceHref, version).ifPresent(this::markEntryForDeletion);
+    }
+
+    /**
+     * Marks the entry for deletion
+     */
+    void markEntryForDeletion(LeastRecentlyUsedCacheEntry entry) {
+        final int i = entries.indexOf(entry);
+        if (i >= 0) {
+            final LeastRecentlyUsedCacheEntry current = entries.remove(i);
+            if (!current.isMarkedForDeletion()) {
+                totalSize -= current.getDiskSize();
+            }
+            entries.add(current.markedForDeletion());
             propertiesFile.setProperty(entry.getId() + '.' + KEY_DELETE, TRUE.toString());
             dirty = true;
-        });
+        }
+    }
+
+    private LeastRecentlyUsedCacheEntry replace(LeastRecentlyUsedCacheEntry entry, UnaryOperator<LeastRecentlyUsedCacheEntry> update) {
+        final int i = entries.indexOf(entry);
+        if (i < 0) {
+            return entry;
+        }
+        final LeastRecentlyUsedCacheEntry current = entries.get(i);
+        final LeastRecentlyUsedCacheEntry updated = update.apply(current);
+        if (!current.isMarkedForDeletion()) {
+            totalSize += updated.getDiskSize() - current.getDiskSize();
+        }
+        entries.set(i, updated);
+        storeInfo(updated);
+        dirty = true;
+        return updated;
+    }
+
+    private void storeInfo(LeastRecentlyUsedCacheEntry entry) {
+        final String id = entry.getId();
+        propertiesFile.setProperty(id + '.' + KEY_SIZE, Long.toString(entry.getSize()));
+        if (entry.hasDownloadInfo()) {
+            propertiesFile.setProperty(id + '.' + KEY_LAST_MODIFIED, Long.toString(entry.getLastModified()));
+            propertiesFile.setProperty(id + '.' + KEY_DOWNLOADED_AT, Long.toString(entry.getDownloadedAt()));
+        }
+        if (entry.getJnlpPath() != null) {
+            propertiesFile.setProperty(id + '.' + KEY_JNLP_PATH, entry.getJnlpPath());
+        }
+        if (entry.getDigest() != null) {
+            propertiesFile.setProperty(id + '.' + KEY_DIGEST, entry.getDigest());
+        }
+        if (entry.getDerivedSize() > 0) {
+            propertiesFile.setProperty(id + '.' + KEY_DERIVED_SIZE, Long.toString(entry.getDerivedSize()));
+        } else {
+            propertiesFile.remove(id + '.' + KEY_DERIVED_SIZE);
+        }
     }
 
     /**
@@ -151,11 +270,14 @@ class LeastRecentlyUsedCacheIndex {
      * Removes an entry from the index.
      */
     void removeEntry(LeastRecentlyUsedCacheEntry entry) {
-        entries.remove(entry);
-        propertiesFile.remove(entry.getId() + '.' + KEY_HREF);
-        propertiesFile.remove(entry.getId() + '.' + KEY_VERSION);
-        propertiesFile.remove(entry.getId() + '.' + KEY_DELETE);
-        propertiesFile.remove(entry.getId() + '.' + KEY_LAST_ACCESSED);
+        final int i = entries.indexOf(entry);
+        if (i >= 0) {
+            final LeastRecentlyUsedCacheEntry current = entries.remove(i);
+            if (!current.isMarkedForDeletion()) {
+                totalSize -= current.getDiskSize();
+            }
+        }
+        removeProperties(propertiesFile, entry.getId());
         dirty = true;
     }
 
@@ -165,6 +287,7 @@ class LeastRecentlyUsedCacheIndex {
     void clear() {
         entries.clear();
         propertiesFile.clear();
+        totalSize = 0;
         dirty = true;
     }
 
@@ -172,10 +295,14 @@ class LeastRecentlyUsedCacheIndex {
         return dirty;
     }
 
+    void markClean() {
+        dirty = false;
+    }
+
     private void markAccessed(LeastRecentlyUsedCacheEntry entry) {
         final long now = System.currentTimeMillis();
         entries.remove(entry);
-        entries.add(0, new LeastRecentlyUsedCacheEntry(entry.getId(), now, entry.getResourceHref(), entry.getVersion()));
+        entries.add(0, entry.accessedAt(now));
         propertiesFile.setProperty(entry.getId() + '.' + KEY_LAST_ACCESSED, Long.toString(now));
         dirty = true;
     }
@@ -225,18 +352,20 @@ class LeastRecentlyUsedCacheIndex {
             try {
                 final VersionId version = versionValue != null ? VersionId.fromString(versionValue) : null;
                 final URL resourceHref = new URL(resourceHrefValue);
-                if (Boolean.parseBoolean(markedForDeletionValue)) {
-                    entries.add(new LeastRecentlyUsedCacheEntry(id, resourceHref, version));
-                } else {
-                    final long lastAccessed = Long.parseLong(lastAccessedValue);
-                    entries.add(new LeastRecentlyUsedCacheEntry(id, lastAccessed, resourceHref, version));
-                }
+                final boolean markedForDeletion = Boolean.parseBoolean(markedForDeletionValue);
+                final long lastAccessed = markedForDeletion ? 0 : Long.parseLong(lastAccessedValue);
+                // indexes written by older versions do not contain the following values
+                final long size = parseLong(values.get(KEY_SIZE));
+                final long lastModified = parseLong(values.get(KEY_LAST_MODIFIED));
+                final long downloadedAt = parseLong(values.get(KEY_DOWNLOADED_AT));
+                final String jnlpPath = values.get(KEY_JNLP_PATH);
+                final String digest = values.get(KEY_DIGEST);
+                final long derivedSize = parseLong(values.get(KEY_DERIVED_SIZE));
+                entries.add(new LeastRecentlyUsedCacheEntry(id, lastAccessed, markedForDeletion, resourceHref, version,
+                        size, lastModified, downloadedAt, jnlpPath, digest, derivedSize));
             } catch (Exception e) {
                 LOG.debug("found broken ID: {}", id);
-                props.remove(id + '.' + KEY_LAST_ACCESSED);
-                props.remove(id + '.' + KEY_DELETE);
-                props.remove(id + '.' + KEY_HREF);
-                props.remove(id + '.' + KEY_VERSION);
+                removeProperties(props, id);
                 modified = true;
             }
         }
@@ -247,6 +376,16 @@ class LeastRecentlyUsedCacheIndex {
         return new ConversionResult(modified, entries);
     }
 
+    private static long parseLong(String value) {
+        return value != null ? Long.parseLong(value) : 0;
+    }
+
+    private static void removeProperties(PropertiesFile props, String id) {
+        for (String key : ALL_KEYS) {
+            props.remove(id + '.' + key);
+        }
+    }
+
     private static String[] splitKey(String key) {
         final int i = key.indexOf('.');
         if (i > 0 && i < key.length()) {
@@ -8,7 +8,6 @@ import net.sourceforge.jnlp.util.PropertiesFile;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -25,12 +24,18 @@ class LeastRecentlyUsedCacheIndexHolder {
     private static ReentrantLock lock = new ReentrantLock();
 
     private final InfrastructureFileDescriptor recentlyUsed;
+    private final CacheStatistics statistics;
 
     private PropertiesFile cachedIndexPropertiesFile;
-    private List<LeastRecentlyUsedCacheEntry> cachedEntries;
+    private LeastRecentlyUsedCacheIndex cachedIndex;
 
     LeastRecentlyUsedCacheIndexHolder(InfrastructureFileDescriptor recentlyUsed) {
+        this(recentlyUsed, new CacheStatistics());
+    }
+
+    LeastRecentlyUsedCacheIndexHolder(InfrastructureFileDescriptor recentlyUsed, CacheStatistics statistics) {
         this.recentlyUsed = recentlyUsed;
+        this.statistics = statistics;
     }
 
     /**
@@ -49,14 +54,18 @@ class LeastRecentlyUsedCacheIndexHolder {
      * @return the result of the passed function.
      */
     <T> T getSynchronized(Function<LeastRecentlyUsedCacheIndex, T> action) {
+        final long lockStart = System.nanoTime();
         lock.lock();
         try {
             final PropertiesFile propertiesFile = lockPropertiesFile();
+            statistics.increment(CacheStatistics.Counter.LOCK_ACQUISITIONS);
+            statistics.add(CacheStatistics.Counter.LOCK_WAIT_NANOS, System.nanoTime() - lockStart);
             try {
                 final LeastRecentlyUsedCacheIndex index = load(propertiesFile);
                 final T result = action.apply(index);
                 if (index.isDirty()) {
                     store(propertiesFile);
+                    index.markClean();
                 }
                 return result;
             } finally {
@@ -85,8 +94,10 @@ class LeastRecentlyUsedCacheIndexHolder {
 
     /**
      * Loads the data from the properties file into an index.
+     * The index is only rebuilt if the properties file changed since the last load.
      */
     private LeastRecentlyUsedCacheIndex load(PropertiesFile propertiesFile) {
+        final long loadStart = System.nanoTime();
         if (propertiesFile.load()) {
             final LeastRecentlyUsedCacheIndex.ConversionResult result = LeastRecentlyUsedCacheIndex.convertPropertiesToEntries(propertiesFile);
             if (result.propertiesNeedToBeStored) {
@@ -95,9 +106,11 @@ class LeastRecentlyUsedCacheIndexHolder {
                 LOG.warn("Cache was corrupt and has been fixed. It is strongly recommended that you run ''javaws -Xclearcache'' and rerun your application as soon as possible. You can also use via itw-settings Cache -> View files -> Purge");
             }
 
-            cachedEntries = result.entries;
+            cachedIndex = new LeastRecentlyUsedCacheIndex(propertiesFile, result.entries);
+            statistics.increment(CacheStatistics.Counter.INDEX_LOADS);
+            statistics.add(CacheStatistics.Counter.INDEX_LOAD_NANOS, System.nanoTime() - loadStart);
         }
-        return new LeastRecentlyUsedCacheIndex(propertiesFile, cachedEntries);
+        return cachedIndex;
     }
 
     /**
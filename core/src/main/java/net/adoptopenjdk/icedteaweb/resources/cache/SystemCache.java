@@ -0,0 +1,150 @@
+package net.adoptopenjdk.icedteaweb.resources.cache;
+
+import net.adoptopenjdk.icedteaweb.StringUtils;
+import net.adoptopenjdk.icedteaweb.jnlp.version.VersionId;
+import net.adoptopenjdk.icedteaweb.jnlp.version.VersionString;
+import net.adoptopenjdk.icedteaweb.logging.Logger;
+import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
+import net.sourceforge.jnlp.config.ConfigurationConstants;
+import net.sourceforge.jnlp.config.PathsAndFiles;
+import net.sourceforge.jnlp.runtime.JNLPRuntime;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Read-only cache tier shared by all users of a machine.
+ * <p>
+ * The tier is enabled by setting {@link ConfigurationConstants#KEY_SYSTEM_CACHE_DIR} in the system wide
+ * deployment configuration. The directory has the layout of an unzipped cache bundle: a
+ * {@value CacheBundle#INDEX_ENTRY_NAME} file describing the resources and the resources themselves.
+ * Administrators prebuild it by running {@code javaws -Xcacheexport} on a machine with a warm cache
+ * and unzipping the bundle into the system cache directory.
+ * <p>
+ * The index is read once per JVM. Resources whose file is missing or has the wrong size are ignored.
+ */
+class SystemCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SystemCache.class);
+
+    private static final String NESTED_JARS_DIR_NAME = "system-cache";
+
+    static SystemCache getInstance() {
+        return SystemCacheHolder.INSTANCE;
+    }
+
+    private final File rootDir;
+
+    /** entries by the external form of their resource href (avoids {@link URL#hashCode()}) */
+    private final Map<String, List<CacheEntry>> entries;
+
+    SystemCache(File rootDir, List<CacheBundle.Item> items) {
+        this.rootDir = rootDir;
+        this.entries = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            final CacheBundle.Item item = items.get(i);
+            final LeastRecentlyUsedCacheEntry indexEntry = new LeastRecentlyUsedCacheEntry("system-" + i, 0, false,
+                    item.resourceHref, item.version, item.size, item.lastModified, item.downloadedAt, item.jnlpPath, item.digest);
+            final CacheEntry entry = new CacheEntry(indexEntry, item.file);
+            if (entry.isCached()) {
+                entries.computeIfAbsent(item.resourceHref.toString(), k -> new ArrayList<>()).add(entry);
+            } else {
+                LOG.warn("Ignoring {} in the system cache as {} is missing or incomplete", item.resourceHref, item.file);
+            }
+        }
+    }
+
+    /**
+     * @return the cached resource with exactly the passed version
+     */
+    Optional<CacheEntry> find(URL resourceHref, VersionId version) {
+        return candidates(resourceHref).stream()
+                .filter(entry -> entry.getEntry().matches(resourceHref, version))
+                .findFirst();
+    }
+
+    /**
+     * @return all cached versions of the resource
+     */
+    List<CacheEntry> findAll(URL resourceHref) {
+        return candidates(resourceHref).stream()
+                .filter(entry -> entry.getEntry().matches(resourceHref))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return all cached versions of the resource which match the version string
+     */
+    List<CacheEntry> findAll(URL resourceHref, VersionString version) {
+        return candidates(resourceHref).stream()
+                .filter(entry -> entry.getEntry().matches(resourceHref, version))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return whether the file is one of the resources in the system cache
+     */
+    boolean contains(File file) {
+        return rootDir != null && file.toPath().toAbsolutePath().startsWith(rootDir.toPath().toAbsolutePath());
+    }
+
+    /**
+     * @return the digest of the resource in the passed file, empty if the file is not in the system cache or has no digest
+     */
+    Optional<String> findDigest(File file) {
+        if (!contains(file)) {
+            return Optional.empty();
+        }
+        final File absoluteFile = file.getAbsoluteFile();
+        return entries.values().stream()
+                .flatMap(List::stream)
+                .filter(entry -> entry.getCacheFile().getAbsoluteFile().equals(absoluteFile))
+                .map(CacheEntry::getDigest)
+                .filter(Objects::nonNull)
+                .findFirst();
+    }
+
+    /**
+     * The system cache is read-only. Jars nested in its resources are therefore extracted into a
+     * directory of the user which mirrors the layout of the system cache.
+     *
+     * @return the directory to extract the nested jars of the passed system cache file into
+     */
+    File getNestedJarsDir(File file) {
+        final String relativePath = rootDir.toPath().toAbsolutePath().relativize(file.toPath().toAbsolutePath()).toString();
+        return new File(new File(PathsAndFiles.TMP_DIR.getFile(), NESTED_JARS_DIR_NAME), relativePath + ".nested");
+    }
+
+    private List<CacheEntry> candidates(URL resourceHref) {
+        return entries.getOrDefault(resourceHref.toString(), Collections.emptyList());
+    }
+
+    private static SystemCache load() {
+        final String dirName = JNLPRuntime.getConfiguration().getProperty(ConfigurationConstants.KEY_SYSTEM_CACHE_DIR);
+        if (StringUtils.isBlank(dirName)) {
+            return new SystemCache(null, Collections.emptyList());
+        }
+        final File dir = new File(dirName);
+        try {
+            final List<CacheBundle.Item> items = CacheBundle.readExtracted(dir);
+            LOG.info("Using system cache {} with {} resources", dir, items.size());
+            return new SystemCache(dir, items);
+        } catch (IOException e) {
+            LOG.error("Failed to read the system cache in {} - {}", dir, e.getMessage());
+            return new SystemCache(null, Collections.emptyList());
+        }
+    }
+
+    private static class SystemCacheHolder {
+        private static final SystemCache INSTANCE = load();
+    }
+}
@@ -11,6 +11,7 @@ import net.adoptopenjdk.icedteaweb.resources.CachedDaemonThreadPoolProvider;
 import net.adoptopenjdk.icedteaweb.resources.Resource;
 import net.adoptopenjdk.icedteaweb.resources.cache.Cache;
 import net.adoptopenjdk.icedteaweb.resources.cache.DownloadInfo;
+import net.sourceforge.jnlp.tools.JarStreamVerifier;
 import net.sourceforge.jnlp.util.UrlUtils;
 
 import java.io.ByteArrayInputStream;
@@ -19,6 +20,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -45,6 +47,8 @@ import static net.adoptopenjdk.icedteaweb.resources.Resource.Status.ERROR;
 abstract class BaseResourceDownloader implements ResourceDownloader {
     private static final Logger LOG = LoggerFactory.getLogger(BaseResourceDownloader.class);
 
+    private static final String JAR_EXTENSION = ".jar";
+
     protected final Resource resource;
     private final List<URL> downloadUrls;
 
@@ -129,13 +133,29 @@ abstract class BaseResourceDownloader implements ResourceDownloader {
             final InputStream unpackedContent = contentUnpacker.unpack(unpackedStream);
 
             final DownloadInfo downloadInfo = new DownloadInfo(resourceHref, version, downloadDetails.lastModified);
-            final File cacheFile = Cache.addToCache(downloadInfo, unpackedContent);
+            final File cacheFile = addToCache(downloadInfo, unpackedContent);
 
             resource.setLocalFile(cacheFile);
             return countingInputStream.numBytesRead();
         }
     }
 
+    private File addToCache(final DownloadInfo downloadInfo, final InputStream content) throws IOException {
+        if (!resource.getLocation().getPath().toLowerCase(Locale.ENGLISH).endsWith(JAR_EXTENSION)) {
+            return Cache.addToCache(downloadInfo, content);
+        }
+
+        // the signatures are checked while downloading so the jar need not be read again to verify it
+        final JarStreamVerifier verifier = new JarStreamVerifier();
+        try {
+            final File cacheFile = Cache.addToCache(downloadInfo, verifier.verifyWhileReading(content));
+            verifier.complete(cacheFile);
+            return cacheFile;
+        } finally {
+            verifier.abandon();
+        }
+    }
+
     protected abstract VersionId getVersion(URL downloadFrom, final String versionHeaderValue);
 
     protected abstract boolean isUpToDate(final URL resourceHref, final VersionId version, final long lastModified);
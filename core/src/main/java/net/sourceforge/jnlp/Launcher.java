@@ -546,6 +546,7 @@ public class Launcher {
              setContextClassLoaderForAllThreads(appletInstance.getThreadGroup(), appletInstance.getClassLoader());
 
             loader.setApplication(appletInstance);
+            JNLPRuntime.registerApplication(appletInstance);
 
             // Initialize applet now that ServiceManager has access to its
             // appletInstance.
@@ -576,6 +577,7 @@ public class Launcher {
 
             ApplicationInstance app = new ApplicationInstance(file, group, loader);
             loader.setApplication(app);
+            JNLPRuntime.registerApplication(app);
 
             return app;
         } catch (Exception ex) {
@@ -1,27 +1,45 @@
 package net.sourceforge.jnlp.cache;
 
-import net.adoptopenjdk.icedteaweb.JavaSystemProperties;
 import net.adoptopenjdk.icedteaweb.io.FileUtils;
 import net.adoptopenjdk.icedteaweb.io.IOUtils;
 import net.adoptopenjdk.icedteaweb.logging.Logger;
 import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
 import net.adoptopenjdk.icedteaweb.resources.ResourceTracker;
+import net.adoptopenjdk.icedteaweb.resources.cache.Cache;
+import net.sourceforge.jnlp.util.DigestUtils;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Enumeration;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 /**
  * Handles loading and access of native code loading through a JNLP application or applet.
- * Stores native code in a temporary folder.
- * Be sure to call {@link #cleanupTemporaryFolder()}  when finished with the object.
+ * <p>
+ * The native libraries of a jar are extracted once into a directory named after the digest of the jar
+ * and reused by later runs as long as the jar does not change. The directory is prepared under a temporary
+ * name and renamed when complete, so concurrent processes never see partially extracted libraries.
+ * As the jar was verified but the extracted libraries are not, the digest of each library is recorded on
+ * extraction and checked before the libraries are reused; libraries which do not match are extracted again.
+ * The extracted libraries count against the size of the cache and are removed by the sweep of the cache
+ * once the jar is no longer cached.
+ * <p>
+ * The libraries are indexed by file name when a jar or directory is added, so looking up a library
+ * does not touch the file system.
  */
 public class NativeLibraryStorage {
 
@@ -30,45 +48,43 @@ public class NativeLibraryStorage {
     private static final Random RANDOM = new Random();
     static final String[] NATIVE_LIBRARY_EXTENSIONS = {".so", ".dylib", ".jnilib", ".framework", ".dll"};
 
-    private final ResourceTracker tracker;
-    private final List<File> nativeSearchDirectories = new ArrayList<>();
-
     /**
-     * Temporary directory to store native jar entries, added to our search path
+     * File in each extraction directory listing the extracted libraries with their size and SHA-256 digest.
      */
-    private File jarEntryDirectory = null;
+    static final String INDEX_FILE_NAME = "natives.index";
+
+    private final ResourceTracker tracker;
+    private final File storeDirectory;
+    private final List<File> nativeSearchDirectories = new CopyOnWriteArrayList<>();
+
+    /** the libraries in the search directories by file name, the first directory added wins */
+    private final Map<String, File> libraries = new ConcurrentHashMap<>();
 
     public NativeLibraryStorage(final ResourceTracker tracker) {
-        this.tracker = tracker;
+        this(tracker, Cache.getNativeLibrariesDir());
     }
 
-    /**
-     * Clean up our temporary folder if we created one.
-     */
-    public void cleanupTemporaryFolder() {
-        if (jarEntryDirectory != null) {
-            LOG.info("Cleaning up native directory {}", jarEntryDirectory.getAbsolutePath());
-            try {
-                FileUtils.recursiveDelete(jarEntryDirectory, jarEntryDirectory);
-                nativeSearchDirectories.remove(jarEntryDirectory);
-                jarEntryDirectory = null;
-            } catch (IOException e) {
-                /*
-                 * failed to delete a file in tmpdir, no big deal (as well the VM
-                 * might be shutting down at this point so no much we can do)
-                 */
-            }
-        }
+    NativeLibraryStorage(final ResourceTracker tracker, final File storeDirectory) {
+        this.tracker = tracker;
+        this.storeDirectory = storeDirectory;
     }
 
     /**
      * Adds the {@link File} to the search path of this {@link NativeLibraryStorage}
-     * when trying to find a native library
+     * when trying to find a native library. The content of the directory is indexed once.
      *
      * @param directory directory to be added
      */
     public void addSearchDirectory(final File directory) {
         nativeSearchDirectories.add(directory);
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().equals(INDEX_FILE_NAME)) {
+                    libraries.putIfAbsent(file.getName(), file);
+                }
+            }
+        }
     }
 
     public List<File> getSearchDirectories() {
@@ -83,13 +99,7 @@ public class NativeLibraryStorage {
      * @return path to library if found, null otherwise.
      */
     public File findLibrary(final String fileName) {
-        for (final File dir : getSearchDirectories()) {
-            final File target = new File(dir, fileName);
-            if (target.exists()) {
-                return target;
-            }
-        }
-        return null;
+        return libraries.get(fileName);
     }
 
     /**
@@ -107,66 +117,140 @@ public class NativeLibraryStorage {
         }
 
         try {
-            try (JarFile jarFile = new JarFile(localFile, false)) {
-                final Enumeration<JarEntry> entries = jarFile.entries();
+            final File directory = getExtractedLibraries(localFile);
+            if (containsLibraries(directory)) {
+                addSearchDirectory(directory);
+            }
+        } catch (IOException ex) {
+            LOG.error("Exception while adding '" + localFile + "' to native search storage", ex);
+        }
+    }
 
-                while (entries.hasMoreElements()) {
-                    final JarEntry e = entries.nextElement();
+    private static boolean containsLibraries(File directory) {
+        final String[] names = directory.list();
+        return names != null && names.length > 1; // besides the index
+    }
 
-                    if (e.isDirectory()) {
-                        continue;
-                    }
+    /**
+     * Returns the directory with the native libraries of the jar, extracting them if they are not yet available.
+     */
+    File getExtractedLibraries(final File jar) throws IOException {
+        final String digest = Cache.getDigest(jar);
+        final File directory = new File(storeDirectory, digest);
+        if (isComplete(directory)) {
+            LOG.debug("Reusing native libraries of {} in {}", jar, directory);
+            if (!directory.setLastModified(System.currentTimeMillis())) {
+                LOG.debug("Failed to update the modification time of {}", directory);
+            }
+            return directory;
+        }
 
-                    final String name = new File(e.getName()).getName();
-                    boolean isLibrary = false;
+        if (!storeDirectory.isDirectory() && !storeDirectory.mkdirs()) {
+            throw new IOException("Native library directory '" + storeDirectory + "' cannot be created");
+        }
+        final File stagingDirectory = new File(storeDirectory, digest + ".tmp-" + Integer.toHexString(RANDOM.nextInt()));
+        FileUtils.createRestrictedDirectory(stagingDirectory);
+        try {
+            extract(jar, stagingDirectory);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(stagingDirectory);
+            throw e;
+        }
 
-                    for (final String suffix : NATIVE_LIBRARY_EXTENSIONS) {
-                        if (name.endsWith(suffix)) {
-                            isLibrary = true;
-                            break;
-                        }
-                    }
+        if (directory.exists() && !isComplete(directory)) {
+            deleteQuietly(directory);
+        }
+        if (stagingDirectory.renameTo(directory)) {
+            Cache.updateDerivedArtifacts(jar);
+            return directory;
+        }
+        if (isComplete(directory)) {
+            // another process was faster
+            deleteQuietly(stagingDirectory);
+            return directory;
+        }
+        // the incomplete directory could not be replaced, e.g. as a library is in use
+        LOG.debug("Using native libraries of {} from {}", jar, stagingDirectory);
+        return stagingDirectory;
+    }
 
-                    if (isLibrary) {
-                        final File outFile = new File(getNativeStoreDirectory(), name);
-                        if (!outFile.isFile()) {
-                            FileUtils.createRestrictedFile(outFile);
-                        }
-                        try (FileOutputStream out = new FileOutputStream(outFile)) {
-                            IOUtils.copy(jarFile.getInputStream(e), out, 4096);
-                        }
+    private static void extract(final File jar, final File directory) throws IOException {
+        final Properties index = new Properties();
+        try (JarFile jarFile = new JarFile(jar, false)) {
+            for (JarEntry e : Collections.list(jarFile.entries())) {
+                if (e.isDirectory()) {
+                    continue;
+                }
+
+                final String name = new File(e.getName()).getName();
+                if (isLibrary(name)) {
+                    final File outFile = new File(directory, name);
+                    if (!outFile.isFile()) {
+                        FileUtils.createRestrictedFile(outFile);
+                    }
+                    final MessageDigest digest = DigestUtils.newSha256();
+                    try (InputStream in = jarFile.getInputStream(e); OutputStream out = new DigestOutputStream(new FileOutputStream(outFile), digest)) {
+                        IOUtils.copy(in, out, 4096);
                     }
+                    index.setProperty(name, outFile.length() + ":" + DigestUtils.toHex(digest.digest()));
                 }
             }
-        } catch (IOException ex) {
-            LOG.error("Exception while adding '" + localFile + "' to temporary search storage", ex);
+        }
+
+        // the index is written last and marks the extraction as complete
+        try (OutputStream out = new FileOutputStream(new File(directory, INDEX_FILE_NAME))) {
+            index.store(out, "native libraries of " + jar.getName());
         }
     }
 
-    File getNativeStoreDirectory() {
-        if (jarEntryDirectory == null) {
-            jarEntryDirectory = createNativeStoreDirectory();
-            addSearchDirectory(jarEntryDirectory);
+    private static boolean isLibrary(final String name) {
+        for (final String suffix : NATIVE_LIBRARY_EXTENSIONS) {
+            if (name.endsWith(suffix)) {
+                return true;
+            }
         }
-        return jarEntryDirectory;
+        return false;
     }
 
     /**
-     * Create a random base directory to store native code files in.
+     * @return true if all libraries listed in the index of the directory exist with the expected size and digest
      */
-    private static File createNativeStoreDirectory() {
-        final String javaTempDir = JavaSystemProperties.getJavaTempDir();
-        final File parent = new File(javaTempDir);
-        if (!parent.isDirectory() && !parent.mkdirs()) {
-            throw new IllegalStateException("Java temp dir '" + javaTempDir + "' is not a directory and cannot be created");
+    private static boolean isComplete(final File directory) {
+        final File indexFile = new File(directory, INDEX_FILE_NAME);
+        if (!indexFile.isFile()) {
+            return false;
         }
+        final Properties index = new Properties();
+        try (InputStream in = new FileInputStream(indexFile)) {
+            index.load(in);
+        } catch (IOException e) {
+            LOG.debug("Failed to read {} - {}", indexFile, e.getMessage());
+            return false;
+        }
+        for (String name : index.stringPropertyNames()) {
+            final File library = new File(directory, name);
+            final String[] sizeAndDigest = index.getProperty(name).split(":");
+            if (sizeAndDigest.length != 2 || !library.isFile() || !Long.toString(library.length()).equals(sizeAndDigest[0])) {
+                return false;
+            }
+            try {
+                if (!DigestUtils.sha256Hex(library).equals(sizeAndDigest[1])) {
+                    LOG.warn("Native library {} was modified after it was extracted", library);
+                    return false;
+                }
+            } catch (IOException e) {
+                LOG.debug("Failed to read {} - {}", library, e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
 
-        final File nativeDir = new File(parent, "netx-native-" + RANDOM.nextInt(0xFFFF));
+    private static void deleteQuietly(final File directory) {
         try {
-            FileUtils.createRestrictedDirectory(nativeDir);
-            return nativeDir;
+            FileUtils.recursiveDelete(directory, directory);
         } catch (IOException e) {
-            throw new RuntimeException("Exception while creating native storage directory '" + nativeDir + "'", e);
+            LOG.debug("Failed to delete {} - {}", directory, e.getMessage());
         }
     }
 }
@@ -28,6 +28,7 @@ import net.adoptopenjdk.icedteaweb.logging.Logger;
 import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
 import net.adoptopenjdk.icedteaweb.resources.UpdatePolicy;
 import net.adoptopenjdk.icedteaweb.resources.cache.Cache;
+import net.adoptopenjdk.icedteaweb.resources.cache.CacheVerificationReport;
 import net.adoptopenjdk.icedteaweb.ui.swing.SwingUtils;
 import net.sourceforge.jnlp.LaunchException;
 import net.sourceforge.jnlp.Launcher;
@@ -45,6 +46,7 @@ import sun.awt.SunToolkit;
 import javax.jnlp.BasicService;
 import javax.swing.UIManager;
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
@@ -255,6 +257,55 @@ public final class Boot implements PrivilegedAction<Integer> {
             return 0;
         }
 
+        if (optionParser.hasOption(CommandLineOptions.CACHESTATS)) {
+            OutputController.getLogger().printOutLn(Cache.getStatisticsAsJson());
+            return 0;
+        }
+
+        if (optionParser.hasOption(CommandLineOptions.CACHEVERIFY)) {
+            final List<String> optionArgs = optionParser.getMainArgs();
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            if (optionArgs.size() > 0) {
+                try {
+                    parallelism = Integer.parseInt(optionArgs.get(0));
+                } catch (NumberFormatException e) {
+                    LOG.warn("Invalid number of threads '{}', using {}", optionArgs.get(0), parallelism);
+                }
+            }
+            final CacheVerificationReport report = Cache.verifyCache(parallelism);
+            report.getProblems().forEach(problem -> OutputController.getLogger().printOutLn(R("BXcacheQuarantined", problem)));
+            report.getBrokenProblems().forEach(problem -> OutputController.getLogger().printOutLn(R("BXcacheBroken", problem)));
+            OutputController.getLogger().printOutLn(R("BXcacheVerified", report.getOk(), report.getRepaired(), report.getQuarantined(),
+                    report.getBroken(), report.getSkipped(), report.getBytesRead(), report.getDurationMillis(), String.format("%.1f", report.getThroughput())));
+            return report.getQuarantined() == 0 && report.getBroken() == 0 ? 0 : 1;
+        }
+
+        if (optionParser.hasOption(CommandLineOptions.CACHEEXPORT)) {
+            final File bundle = new File(optionParser.getParam(CommandLineOptions.CACHEEXPORT));
+            final List<String> optionArgs = optionParser.getMainArgs();
+            final String filter = optionArgs.size() > 0 ? optionArgs.get(0) : ".*";
+            try {
+                final int count = Cache.exportCache(bundle, filter);
+                OutputController.getLogger().printOutLn(R("BXcacheExported", count, bundle));
+                return 0;
+            } catch (IOException e) {
+                LOG.error(R("BXcacheBundleFailed", bundle, e.getMessage()), e);
+                return 1;
+            }
+        }
+
+        if (optionParser.hasOption(CommandLineOptions.CACHEIMPORT)) {
+            final File bundle = new File(optionParser.getParam(CommandLineOptions.CACHEIMPORT));
+            try {
+                final int count = Cache.importCache(bundle);
+                OutputController.getLogger().printOutLn(R("BXcacheImported", count, bundle));
+                return 0;
+            } catch (IOException e) {
+                LOG.error(R("BXcacheBundleFailed", bundle, e.getMessage()), e);
+                return 1;
+            }
+        }
+
         if (optionParser.hasOption(CommandLineOptions.CLEARCACHE)) {
             List<String> optionArgs = optionParser.getMainArgs();
             if (optionArgs.size() > 0) {
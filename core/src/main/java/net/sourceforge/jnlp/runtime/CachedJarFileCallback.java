@@ -106,6 +106,7 @@ public final class CachedJarFileCallback implements URLJarFileCallBack {
 
         if (UrlUtils.isLocalFile(localUrl)) {
             // if it is known to us, just return the cached file
+            // not taken from the JarFilePool, as its manifest is changed below and the JDK keeps it open
             JarFile returnFile = new JarFile(UrlUtils.decodeUrlQuietly(localUrl).getPath());
             
             try {
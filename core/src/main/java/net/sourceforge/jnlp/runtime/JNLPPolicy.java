@@ -40,7 +40,12 @@ import java.security.Permissions;
 import java.security.Policy;
 import java.security.ProtectionDomain;
 import java.security.URIParameter;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static net.sourceforge.jnlp.util.UrlUtils.FILE_PROTOCOL;
 
@@ -50,6 +55,9 @@ import static net.sourceforge.jnlp.util.UrlUtils.FILE_PROTOCOL;
  * and system CodeSources (no separate policy file needed).  This
  * class may also grant permissions to applications at runtime if
  * approved by the user.
+ * <p>
+ * The effective permissions of a code source are computed once per application and reused until the policy
+ * is refreshed or the permissions of the classloader of the application change.
  *
  * @author <a href="mailto:jmaxwell@users.sourceforge.net">Jon A. Maxwell (JAM)</a> - initial author
  * @version $Revision: 1.7 $
@@ -85,6 +93,26 @@ public class JNLPPolicy extends Policy {
      */
     private Policy userJnlpPolicy = null;
 
+    /**
+     * the maximum number of code sources whose effective permissions are cached per application
+     */
+    private static final int MAX_CACHED_CODE_SOURCES = 1024;
+
+    /**
+     * the effective permissions by the classloader of the application, the classloaders are weakly referenced
+     */
+    private final Map<JNLPClassLoader, CachedPermissions> permissionsByClassLoader = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * the effective permissions of code sources when there is no application
+     */
+    private final CachedPermissions permissionsWithoutApplication = new CachedPermissions();
+
+    /**
+     * incremented on each refresh to invalidate the cached permissions
+     */
+    private final AtomicLong policyGeneration = new AtomicLong();
+
     protected JNLPPolicy() {
         shellSource = JNLPPolicy.class.getProtectionDomain().getCodeSource();
         systemSource = Policy.class.getProtectionDomain().getCodeSource();
@@ -102,6 +130,54 @@ public class JNLPPolicy extends Policy {
      * for the source.
      */
     public PermissionCollection getPermissions(CodeSource source) {
+        final PermissionCollection result = new Permissions();
+        for (Permission permission : Collections.list(getEffectivePermissions(source, JNLPRuntime.getApplication()).elements())) {
+            result.add(permission);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the cached read-only permissions of the source in an application, computing them if the policy or
+     * the permissions of the classloader of the application changed since they were cached.
+     */
+    private PermissionCollection getEffectivePermissions(final CodeSource source, final ApplicationInstance app) {
+        final JNLPClassLoader cl = app != null && app.getClassLoader() instanceof JNLPClassLoader ? (JNLPClassLoader) app.getClassLoader() : null;
+        if (source == null) {
+            return computePermissions(null, app, cl);
+        }
+
+        // read the generations first, so permissions changing meanwhile are computed again by the next check
+        final long generation = policyGeneration.get();
+        final long classLoaderGeneration = cl == null ? 0 : cl.getPermissionsGeneration();
+        final CachedPermissions cache = cl == null ? permissionsWithoutApplication : permissionsByClassLoader.computeIfAbsent(cl, loader -> new CachedPermissions());
+        final PermissionCollection cached = cache.get(source, generation, classLoaderGeneration);
+        if (cached != null) {
+            return cached;
+        }
+
+        final PermissionCollection permissions = computePermissions(source, app, cl);
+        permissions.setReadOnly();
+        cache.put(source, generation, classLoaderGeneration, permissions);
+        return permissions;
+    }
+
+    /**
+     * Returns the application whose classloader defined the classes of the domain, without walking the stack.
+     * Falls back to the current application for classes of other classloaders, e.g. of extensions.
+     */
+    private static ApplicationInstance getApplication(final ProtectionDomain domain) {
+        final ClassLoader loader = domain.getClassLoader();
+        if (loader instanceof JNLPClassLoader) {
+            final ApplicationInstance app = ((JNLPClassLoader) loader).getApplication();
+            if (app != null) {
+                return app;
+            }
+        }
+        return JNLPRuntime.getApplication();
+    }
+
+    private PermissionCollection computePermissions(final CodeSource source, final ApplicationInstance app, final JNLPClassLoader cl) {
         if (source.equals(systemSource) || source.equals(shellSource))
             return getAllPermissions();
 
@@ -111,14 +187,12 @@ public class JNLPPolicy extends Policy {
 
         // if we check the SecurityDesc here then keep in mind that
         // code can add properties at runtime to the ResourcesDesc!
-        if (JNLPRuntime.getApplication() != null) {
-            if (JNLPRuntime.getApplication().getClassLoader() instanceof JNLPClassLoader) {
-                JNLPClassLoader cl = (JNLPClassLoader) JNLPRuntime.getApplication().getClassLoader();
-
+        if (app != null) {
+            if (cl != null) {
                 PermissionCollection clPermissions = cl.getPermissions(source);
 
                 Enumeration<Permission> e;
-                CodeSource appletCS = new CodeSource(JNLPRuntime.getApplication().getJNLPFile().getSourceLocation(), (java.security.cert.Certificate[]) null);
+                CodeSource appletCS = new CodeSource(app.getJNLPFile().getSourceLocation(), (java.security.cert.Certificate[]) null);
 
                 // systempolicy permissions need to be accounted for as well
                 e = systemPolicy.getPermissions(appletCS).elements();
@@ -141,7 +215,7 @@ public class JNLPPolicy extends Policy {
                         clPermissions.add(e.nextElement());
                     }
 
-                    CodeSource appletCodebaseSource = new CodeSource(JNLPRuntime.getApplication().getJNLPFile().getCodeBase(), (java.security.cert.Certificate[]) null);
+                    CodeSource appletCodebaseSource = new CodeSource(app.getJNLPFile().getCodeBase(), (java.security.cert.Certificate[]) null);
                     e = userJnlpPolicy.getPermissions(appletCodebaseSource).elements();
                     while (e.hasMoreElements()) {
                         clPermissions.add(e.nextElement());
@@ -163,6 +237,8 @@ public class JNLPPolicy extends Policy {
         if (userJnlpPolicy != null) {
             userJnlpPolicy.refresh();
         }
+        policyGeneration.incrementAndGet();
+        permissionsByClassLoader.clear();
     }
 
     /**
@@ -248,7 +324,37 @@ public class JNLPPolicy extends Policy {
 
     public boolean implies(ProtectionDomain domain, Permission permission) {
         //Include the permissions that may be added during runtime.
-        PermissionCollection pc = getPermissions(domain.getCodeSource());
-        return super.implies(domain, permission) || pc.implies(permission);
+        return super.implies(domain, permission) || getEffectivePermissions(domain.getCodeSource(), getApplication(domain)).implies(permission);
+    }
+
+    /**
+     * The effective permissions of the code sources of one application. Only the most recently used code sources
+     * are kept, and all are dropped once the policy or the permissions of the classloader change.
+     */
+    private static class CachedPermissions {
+        private final Map<CodeSource, PermissionCollection> permissions = new LinkedHashMap<CodeSource, PermissionCollection>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CodeSource, PermissionCollection> eldest) {
+                return size() > MAX_CACHED_CODE_SOURCES;
+            }
+        };
+        private long generation = -1;
+        private long classLoaderGeneration = -1;
+
+        private synchronized PermissionCollection get(final CodeSource source, final long currentGeneration, final long currentClassLoaderGeneration) {
+            if (generation != currentGeneration || classLoaderGeneration != currentClassLoaderGeneration) {
+                permissions.clear();
+                generation = currentGeneration;
+                classLoaderGeneration = currentClassLoaderGeneration;
+            }
+            return permissions.get(source);
+        }
+
+        private synchronized void put(final CodeSource source, final long computedGeneration, final long computedClassLoaderGeneration, final PermissionCollection computed) {
+            // permissions computed before a change are not kept
+            if (generation == computedGeneration && classLoaderGeneration == computedClassLoaderGeneration) {
+                permissions.put(source, computed);
+            }
+        }
     }
 }
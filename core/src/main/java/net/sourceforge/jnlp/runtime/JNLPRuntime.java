@@ -623,6 +623,24 @@ public class JNLPRuntime {
         return security.getApplication();
     }
 
+    /**
+     * Registers an application with the security manager, so the threads
+     * started in the thread group of the application are mapped to it
+     * without walking their stack.
+     *
+     * @param app the application
+     * @throws SecurityException if the caller is not trusted
+     */
+    public static void registerApplication(ApplicationInstance app) {
+        final SecurityManager sm = System.getSecurityManager();
+        if (sm != null) {
+            sm.checkPermission(new AllPermission());
+        }
+        if (security != null) {
+            security.registerApplication(app);
+        }
+    }
+
     /**
      * @return whether debug statements for the JNLP client code
      * should be printed.
@@ -804,6 +822,10 @@ public class JNLPRuntime {
      */
     public synchronized static void markNetxRunning() {
         if (fileLock != null) return;
+
+        // the sweep checks for other instances, which this one is counted as once it is marked running
+        Cache.sweepCacheInBackground();
+
         try {
             String message = "This file is used to check if netx is running";
 
@@ -840,6 +862,7 @@ public class JNLPRuntime {
             public void run() {
                 markNetxStopped();
                 Cache.cleanCache();
+                Cache.saveStatistics();
             }
         });
     }
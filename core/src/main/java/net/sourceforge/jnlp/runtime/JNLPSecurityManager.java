@@ -27,9 +27,13 @@ import net.sourceforge.jnlp.util.WeakList;
 import sun.awt.AppContext;
 
 import java.awt.Window;
+import java.lang.ref.WeakReference;
 import java.net.SocketPermission;
 import java.security.AccessControlException;
 import java.security.Permission;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Security manager for JNLP environment. This security manager
@@ -42,6 +46,11 @@ import java.security.Permission;
  * enabled then the first application to call System.exit will
  * halt the JVM.
  * </p>
+ * <p>
+ * The application of a thread is found by its context classloader or by the
+ * thread group the application was started in. The stack of the thread is
+ * only searched if neither is known.
+ * </p>
  *
  * @author <a href="mailto:jmaxwell@users.sourceforge.net">Jon A. Maxwell (JAM)</a> - initial author
  * @version $Revision: 1.17 $
@@ -95,6 +104,10 @@ class JNLPSecurityManager extends SecurityManager {
     private WeakList<ApplicationInstance> weakApplications =
             new WeakList<ApplicationInstance>();
 
+    /** applications by the thread group they were started in, see {@link #registerApplication(ApplicationInstance)} */
+    private final Map<ThreadGroup, WeakReference<ApplicationInstance>> applicationsByThreadGroup =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
     /** Sets whether or not exit is allowed (in the context of the plugin, this is always false) */
     private boolean exitAllowed = true;
 
@@ -168,7 +181,22 @@ class JNLPSecurityManager extends SecurityManager {
      * determined.
      */
     protected ApplicationInstance getApplication() {
-        return getApplication(Thread.currentThread(), getClassContext(), 0);
+        final ApplicationInstance app = getApplicationOfThread(Thread.currentThread());
+        if (app != null) {
+            return app;
+        }
+        return getApplicationFromStack(getClassContext(), 0);
+    }
+
+    /**
+     * Remembers the thread group of an application. All threads created in
+     * the group, including the event dispatch thread of the application, are
+     * then mapped to the application without walking their stack.
+     *
+     * @param app the application
+     */
+    void registerApplication(ApplicationInstance app) {
+        applicationsByThreadGroup.put(app.getThreadGroup(), new WeakReference<>(app));
     }
 
     /**
@@ -195,6 +223,18 @@ class JNLPSecurityManager extends SecurityManager {
      * Return the current Application, or null.
      */
     protected ApplicationInstance getApplication(Thread thread, Class<?> stack[], int maxDepth) {
+        final ApplicationInstance app = getApplicationOfThread(thread);
+        if (app != null) {
+            return app;
+        }
+        return getApplicationFromStack(stack, maxDepth);
+    }
+
+    /**
+     * Returns the application of the context classloader or of the thread
+     * group of the thread, or null.
+     */
+    private ApplicationInstance getApplicationOfThread(Thread thread) {
         ClassLoader cl;
         JNLPClassLoader jnlpCl;
 
@@ -207,6 +247,26 @@ class JNLPSecurityManager extends SecurityManager {
             cl = cl.getParent();
         }
 
+        if (!applicationsByThreadGroup.isEmpty()) {
+            for (ThreadGroup group = thread.getThreadGroup(); group != null; group = group.getParent()) {
+                final WeakReference<ApplicationInstance> reference = applicationsByThreadGroup.get(group);
+                final ApplicationInstance app = reference == null ? null : reference.get();
+                if (app != null) {
+                    return app;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the application of the first class on the stack loaded by a
+     * JNLP classloader, or null.
+     */
+    private ApplicationInstance getApplicationFromStack(Class<?> stack[], int maxDepth) {
+        ClassLoader cl;
+        JNLPClassLoader jnlpCl;
+
         if (maxDepth <= 0) {
             maxDepth = stack.length;
         }
@@ -39,11 +39,13 @@ public class CodeBaseClassLoader extends URLClassLoader {
     CodeBaseClassLoader(URL[] urls, JNLPClassLoader cl) {
         super(urls, cl);
         parentJNLPClassLoader = cl;
+        cl.searchPathChanged();
     }
 
     @Override
     public void addURL(URL url) {
         super.addURL(url);
+        parentJNLPClassLoader.searchPathChanged();
     }
 
     /*
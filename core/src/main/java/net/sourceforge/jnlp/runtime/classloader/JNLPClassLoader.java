@@ -30,6 +30,7 @@ import net.adoptopenjdk.icedteaweb.logging.Logger;
 import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
 import net.adoptopenjdk.icedteaweb.manifest.ManifestAttributesChecker;
 import net.adoptopenjdk.icedteaweb.manifest.ManifestAttributesReader;
+import net.adoptopenjdk.icedteaweb.resources.CachedDaemonThreadPoolProvider;
 import net.adoptopenjdk.icedteaweb.resources.IllegalResourceDescriptorException;
 import net.adoptopenjdk.icedteaweb.resources.ResourceTracker;
 import net.adoptopenjdk.icedteaweb.resources.UpdatePolicy;
@@ -52,6 +53,7 @@ import net.sourceforge.jnlp.security.AppVerifier;
 import net.sourceforge.jnlp.security.JNLPAppVerifier;
 import net.sourceforge.jnlp.tools.JarCertVerifier;
 import net.sourceforge.jnlp.util.JarFile;
+import net.sourceforge.jnlp.util.JarFilePool;
 import net.sourceforge.jnlp.util.UrlUtils;
 
 import java.io.File;
@@ -60,6 +62,7 @@ import java.io.FileOutputStream;
 import java.io.FilePermission;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.SocketPermission;
 import java.net.URL;
@@ -69,6 +72,7 @@ import java.security.AccessControlException;
 import java.security.AccessController;
 import java.security.AllPermission;
 import java.security.CodeSource;
+import java.security.NoSuchAlgorithmException;
 import java.security.Permission;
 import java.security.PermissionCollection;
 import java.security.Permissions;
@@ -82,17 +86,24 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static net.adoptopenjdk.icedteaweb.i18n.Translator.R;
@@ -114,6 +125,11 @@ public class JNLPClassLoader extends URLClassLoader {
 
     private static final Logger LOG = LoggerFactory.getLogger(JNLPClassLoader.class);
 
+    static {
+        // classes are loaded with a lock per class name instead of a lock on the classloader
+        ClassLoader.registerAsParallelCapable();
+    }
+
     // todo: initializePermissions should get the permissions from
     // extension classes too so that main file classes can load
     // resources in an extension.
@@ -123,6 +139,11 @@ public class JNLPClassLoader extends URLClassLoader {
     private static final String TEMPLATE = "JNLP-INF/APPLICATION_TEMPLATE.JNLP";
     private static final String APPLICATION = "JNLP-INF/APPLICATION.JNLP";
 
+    /**
+     * Jar index listing the packages of other jars
+     */
+    private static final String INDEX_LIST = "META-INF/INDEX.LIST";
+
     /**
      * Actions to specify how cache is to be managed *
      */
@@ -155,6 +176,11 @@ public class JNLPClassLoader extends URLClassLoader {
      */
     private final NativeLibraryStorage nativeLibraryStorage;
 
+    /**
+     * Index of the packages in the lazy jars, persisted across runs of the application.
+     */
+    private final PackageIndex packageIndex;
+
     /**
      * security context
      */
@@ -208,14 +234,20 @@ public class JNLPClassLoader extends URLClassLoader {
     /**
      * Permissions granted by the user during runtime.
      */
-    private final ArrayList<Permission> runtimePermissions = new ArrayList<>();
+    private final List<Permission> runtimePermissions = new CopyOnWriteArrayList<>();
 
     /**
-     * all jars not yet part of classloader or active Synchronized since this
+     * all jars not yet part of classloader or active. Concurrent since this
      * field may become shared data between multiple classloading threads. See
      * loadClass(String) and CodebaseClassLoader.findClassNonRecursive(String).
      */
-    private final List<JARDesc> available = Collections.synchronizedList(new ArrayList<>());
+    private final List<JARDesc> available = new CopyOnWriteArrayList<>();
+
+    /**
+     * Lock held while choosing and activating the next jars from {@link #available},
+     * so concurrent class loading threads do not activate the same jars twice.
+     */
+    private final Object activationLock = new Object();
 
     /**
      * the jar cert verifier tool to verify our jars
@@ -225,28 +257,20 @@ public class JNLPClassLoader extends URLClassLoader {
     private SigningState signing = SigningState.NONE;
 
     /**
-     * ArrayList containing jar indexes for various jars available to this
-     * classloader Synchronized since this field may become shared data between
-     * multiple classloading threads/ See loadClass(String) and
+     * List containing jar indexes for various jars available to this
+     * classloader. Concurrent since this field may become shared data between
+     * multiple classloading threads. See loadClass(String) and
      * CodebaseClassLoader.findClassNonRecursive(String).
      */
-    private final List<JarIndexAccess> jarIndexes = Collections.synchronizedList(new ArrayList<>());
+    private final List<JarIndexAccess> jarIndexes = new CopyOnWriteArrayList<>();
 
     /**
-     * Set of classpath strings declared in the manifest.mf files Synchronized
+     * Set of classpath strings declared in the manifest.mf files. Concurrent
      * since this field may become shared data between multiple classloading
      * threads. See loadClass(String) and
      * CodebaseClassLoader.findClassNonRecursive(String).
      */
-    private final Set<String> classpaths = Collections.synchronizedSet(new HashSet<>());
-
-    /**
-     * File entries in the jar files available to this classloader Synchronized
-     * sinc this field may become shared data between multiple classloading
-     * threads. See loadClass(String) and
-     * CodebaseClassLoader.findClassNonRecursive(String).
-     */
-    private final Set<String> jarEntries = Collections.synchronizedSet(new TreeSet<>());
+    private final Set<String> classpaths = ConcurrentHashMap.newKeySet();
 
     /**
      * Map of specific original (remote) CodeSource Urls to securitydesc
@@ -256,6 +280,54 @@ public class JNLPClassLoader extends URLClassLoader {
      */
     final Map<URL, SecurityDesc> jarLocationSecurityMap = Collections.synchronizedMap(new HashMap<>());
 
+    /**
+     * Number of names of missing classes and of missing resources remembered by this classloader.
+     */
+    private static final int MAX_MISSING_NAMES = 4096;
+
+    /**
+     * Incremented whenever the permissions of this classloader change, see {@link #invalidatePermissions()}.
+     */
+    private final AtomicLong permissionsGeneration = new AtomicLong();
+
+    /**
+     * The permissions computed by {@link #getPermissions(CodeSource)} by code source.
+     */
+    private final Map<CodeSource, PermissionCollection> permissionsCache = new ConcurrentHashMap<>();
+
+    /**
+     * The context computed by {@link #getAccessControlContextForClassLoading()} and the generation it was computed in.
+     */
+    private volatile ClassLoadingContext classLoadingContext;
+
+    /**
+     * Size of the buffer used to extract nested jars.
+     */
+    private static final int NESTED_JAR_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Threads reading jars, see {@link #scanJars(List)}. Shared by all classloaders so the number of
+     * threads stays bounded when several classloaders activate jars at the same time.
+     */
+    private static final ExecutorService SCAN_EXECUTOR = CachedDaemonThreadPoolProvider.createSharedThreadPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Incremented whenever a jar or path is added to this classloader or its codebase loader,
+     * see {@link #getSearchPathGeneration()}.
+     */
+    private final AtomicLong searchPathGeneration = new AtomicLong();
+
+    /**
+     * Classes which were not found. Applications probe for many classes which do not exist, e.g. BeanInfo
+     * classes, and each miss searches all lazy jars.
+     */
+    private final NegativeLookupCache missingClasses = new NegativeLookupCache(MAX_MISSING_NAMES, this::getSearchPathGeneration);
+
+    /**
+     * Resources which were not found.
+     */
+    private final NegativeLookupCache missingResources = new NegativeLookupCache(MAX_MISSING_NAMES, this::getSearchPathGeneration);
+
     /*Set to prevent once tried-to-get resources to be tried again*/
     private final Set<URL> alreadyTried = Collections.synchronizedSet(new HashSet<>());
 
@@ -320,6 +392,8 @@ public class JNLPClassLoader extends URLClassLoader {
 
         this.nativeLibraryStorage = new NativeLibraryStorage(tracker);
 
+        this.packageIndex = createPackageIndex(file);
+
         this.mainClass = mainName;
 
         this.enableCodeBase = enableCodeBase;
@@ -340,7 +414,7 @@ public class JNLPClassLoader extends URLClassLoader {
                 mainClass = entryPoint.getMainClass();
             }
         }
-        resourcePermissions = new ArrayList<>();
+        resourcePermissions = new CopyOnWriteArrayList<>();
 
         // initialize extensions
         initializeExtensions();
@@ -349,9 +423,13 @@ public class JNLPClassLoader extends URLClassLoader {
 
         // initialize permissions
         initializeReadJarPermissions();
+    }
 
-        installShutdownHooks();
-
+    private static PackageIndex createPackageIndex(final JNLPFile file) {
+        final URL location = file.getFileLocation();
+        final PackageIndex index = new PackageIndex(location == null ? null : PackageIndex.getIndexFile(Cache.getClassIndexesDir(), location, file.getFileVersion()));
+        index.retainAll(file.getResources().getJARs(), jar -> Cache.findDigest(jar.getLocation(), jar.getVersion()));
+        return index;
     }
 
     private static boolean isCertUnderestimated() {
@@ -367,22 +445,10 @@ public class JNLPClassLoader extends URLClassLoader {
         }
     }
 
-    /**
-     * Install JVM shutdown hooks to clean up resources allocated by this
-     * ClassLoader.
-     */
-    private void installShutdownHooks() {
-        /*
-         * Delete only the native dir created by this classloader (if
-         * there is one). Other classloaders (parent, peers) will all
-         * cleanup things they created
-         */
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> nativeLibraryStorage.cleanupTemporaryFolder()));
-    }
-
     private void setSecurity() throws LaunchException {
         URL codebase = UrlUtils.guessCodeBase(file);
         this.security = securityDelegate.getClassLoaderSecurity(codebase);
+        invalidatePermissions();
     }
 
     /**
@@ -586,6 +652,7 @@ public class JNLPClassLoader extends URLClassLoader {
                 LOG.info("Unable to add permission for {}", jar.getLocation());
             } else {
                 resourcePermissions.add(p);
+                invalidatePermissions();
                 LOG.info("Permission added: {}", p.toString());
             }
         }
@@ -627,9 +694,8 @@ public class JNLPClassLoader extends URLClassLoader {
             return false;//File cannot be retrieved, do not claim it is an invalid jar
         }
         boolean isInvalid = false;
-        try {
-            JarFile jarFile = new JarFile(cacheFile.getAbsolutePath());
-            jarFile.close();
+        try (JarFilePool.Lease ignored = JarFilePool.getInstance().acquire(cacheFile)) {
+            // opening the jar is the check
         } catch (IOException ioe) {
             //Catch a ZipException or any other read failure
             isInvalid = true;
@@ -817,6 +883,7 @@ public class JNLPClassLoader extends URLClassLoader {
             final SecurityDesc jarSecurity = securityDelegate.getCodebaseSecurityDesc(jarDesc, codebase);
             jarLocationSecurityMap.put(jarDesc.getLocation(), jarSecurity);
         }
+        invalidatePermissions();
 
         activateJars(initialJars);
     }
@@ -877,18 +944,17 @@ public class JNLPClassLoader extends URLClassLoader {
                     continue; // JAR not found. Keep going.
                 }
 
-                final JarFile jarFile = new JarFile(localFile);
-
-                for (JarEntry entry : Collections.list(jarFile.entries())) {
-                    String jeName = entry.getName().replaceAll("/", ".");
-                    if (jeName.equals(desiredJarEntryName)) {
-                        foundMainJar = true;
-                        verifySignedJNLP(jarFile);
-                        break;
+                try (JarFilePool.Lease lease = JarFilePool.getInstance().acquire(localFile)) {
+                    final JarFile jarFile = lease.getJarFile();
+                    for (JarEntry entry : Collections.list(jarFile.entries())) {
+                        String jeName = entry.getName().replaceAll("/", ".");
+                        if (jeName.equals(desiredJarEntryName)) {
+                            foundMainJar = true;
+                            verifySignedJNLP(jarFile);
+                            break;
+                        }
                     }
                 }
-
-                jarFile.close();
             } catch (IOException e) {
                 /*
                  * After this exception is caught, it is escaped. This will skip
@@ -1051,10 +1117,50 @@ public class JNLPClassLoader extends URLClassLoader {
     }
 
     /**
-     * Returns the permissions for the CodeSource.
+     * Returns the permissions for the CodeSource. The permissions are computed once per code source
+     * and copied from the cache until the permissions of the classloader change.
      */
     @Override
     public PermissionCollection getPermissions(CodeSource cs) {
+        final PermissionCollection cached = cs == null ? null : permissionsCache.get(cs);
+        if (cached != null) {
+            return copyOf(cached);
+        }
+
+        final long generation = permissionsGeneration.get();
+        final PermissionCollection permissions = computePermissions(cs);
+        permissionsCache.put(cs, permissions);
+        if (permissionsGeneration.get() != generation) {
+            // the permissions changed while computing them
+            permissionsCache.remove(cs, permissions);
+        }
+        return copyOf(permissions);
+    }
+
+    /**
+     * @return a number which changes whenever the permissions of this classloader change
+     */
+    public long getPermissionsGeneration() {
+        return permissionsGeneration.get();
+    }
+
+    /**
+     * Drops the cached permissions. Called whenever the security descriptors or the granted permissions change.
+     */
+    private void invalidatePermissions() {
+        permissionsGeneration.incrementAndGet();
+        permissionsCache.clear();
+    }
+
+    private static PermissionCollection copyOf(final PermissionCollection permissions) {
+        final Permissions result = new Permissions();
+        for (Permission perm : Collections.list(permissions.elements())) {
+            result.add(perm);
+        }
+        return result;
+    }
+
+    private PermissionCollection computePermissions(CodeSource cs) {
         try {
             Permissions result = new Permissions();
 
@@ -1123,6 +1229,7 @@ public class JNLPClassLoader extends URLClassLoader {
 
     public void addPermission(Permission p) {
         runtimePermissions.add(p);
+        invalidatePermissions();
     }
 
     /**
@@ -1145,13 +1252,11 @@ public class JNLPClassLoader extends URLClassLoader {
         final LinkedHashSet<JARDesc> jars = new LinkedHashSet<>();
 
         // "available" field can be affected by two different threads
-        // working in loadClass(String)
+        // working in loadClass(String), iterating works on a snapshot
         if (part != null) {
-            synchronized (available) {
-                for (JARDesc jar : available) {
-                    if (part.equals(jar.getPart())) {
-                        jars.add(jar);
-                    }
+            for (JARDesc jar : available) {
+                if (part.equals(jar.getPart())) {
+                    jars.add(jar);
                 }
             }
         }
@@ -1175,117 +1280,264 @@ public class JNLPClassLoader extends URLClassLoader {
         // transfer the Jars
         waitForJars(jars);
 
+        // read the jars concurrently, then add them in order so the search order stays the same
+        boolean indexModified = false;
+        for (ScannedJar scanned : scanJars(jars)) {
+            indexModified |= addScannedJar(scanned);
+        }
+
+        if (indexModified) {
+            packageIndex.store();
+        }
+        return null;
+    }
+
+    /**
+     * Reads the jars, using several threads if there is more than one jar.
+     *
+     * @param jars the downloaded jars
+     * @return the result of reading each jar, in the order of the jars
+     */
+    private List<ScannedJar> scanJars(final List<JARDesc> jars) {
+        if (jars.size() <= 1) {
+            return jars.stream().map(this::scanJar).collect(Collectors.toList());
+        }
+
+        final List<Callable<ScannedJar>> tasks = new ArrayList<>();
         for (JARDesc jar : jars) {
-            available.remove(jar);
+            // the threads of the pool may have been created by the application
+            tasks.add(() -> AccessController.doPrivileged((PrivilegedAction<ScannedJar>) () -> scanJar(jar), acc));
+        }
 
-            // add jar
-            File localFile = tracker.getCacheFile(jar.getLocation());
-            try {
-                URL location = jar.getLocation(); // non-cacheable, use source location
-                if (localFile != null) {
-                    location = localFile.toURI().toURL(); // cached file
-                    // This is really not the best way.. but we need some way for
-                    // PluginAppletViewer::getCachedImageRef() to check if the image
-                    // is available locally, and it cannot use getResources() because
-                    // that prefetches the resource, which confuses MediaTracker.waitForAll()
-                    // which does a wait(), waiting for notification (presumably
-                    // thrown after a resource is fetched). This bug manifests itself
-                    // particularly when using The FileManager applet from Webmin.
-                    try (JarFile jarFile = new JarFile(localFile)) {
-                        for (JarEntry je : Collections.list(jarFile.entries())) {
-
-                            // another jar in my jar? it is more likely than you think
-                            if (je.getName().endsWith(".jar")) {
-                                // We need to extract that jar so that it can be loaded
-                                // (inline loading with "jar:..!/..." path will not work
-                                // with standard classloader methods)
-
-                                String name = je.getName();
-                                if (name.contains("..")) {
-                                    name = CacheUtil.hex(name, name);
-                                }
-                                String extractedJarLocation = localFile + ".nested/" + name;
-                                File parentDir = new File(extractedJarLocation).getParentFile();
-                                if (!parentDir.isDirectory() && !parentDir.mkdirs()) {
-                                    throw new RuntimeException("Unable to extract nested jar.");
-                                }
-                                FileOutputStream extractedJar = new FileOutputStream(extractedJarLocation);
-                                InputStream is = jarFile.getInputStream(je);
-
-                                byte[] bytes = new byte[1024];
-                                int read = is.read(bytes);
-                                int fileSize = read;
-                                while (read > 0) {
-                                    extractedJar.write(bytes, 0, read);
-                                    read = is.read(bytes);
-                                    fileSize += read;
-                                }
+        try {
+            final List<ScannedJar> result = new ArrayList<>();
+            for (Future<ScannedJar> future : SCAN_EXECUTOR.invokeAll(tasks)) {
+                result.add(future.get());
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.debug("Interrupted while reading jars, continuing in the current thread");
+            return jars.stream().map(this::scanJar).collect(Collectors.toList());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to read jars", e.getCause());
+        }
+    }
 
-                                is.close();
-                                extractedJar.close();
+    /**
+     * Reads the entries of a jar, extracts the jars nested in it and reads its index in a single pass.
+     * Does not change the state of the classloader, so several jars can be read at the same time.
+     */
+    private ScannedJar scanJar(final JARDesc jar) {
+        final ScannedJar scanned = new ScannedJar(jar, tracker.getCacheFile(jar.getLocation()));
+        if (scanned.localFile == null) {
+            return scanned;
+        }
 
-                                // 0 byte file? skip
-                                if (fileSize <= 0) {
-                                    continue;
-                                }
+        try {
+            try (JarFilePool.Lease lease = JarFilePool.getInstance().acquire(scanned.localFile)) {
+                final JarFile jarFile = lease.getJarFile();
+                final byte[] buffer = new byte[NESTED_JAR_BUFFER_SIZE];
+                for (JarEntry je : Collections.list(jarFile.entries())) {
+                    // another jar in my jar? it is more likely than you think
+                    if (je.getName().endsWith(".jar")) {
+                        final File extractedJar = extractNestedJar(scanned.localFile, jarFile, je, buffer);
+                        if (extractedJar != null) {
+                            scanned.nestedJars.put(je.getName(), extractedJar);
+                            if (jar.isLazy()) {
+                                scanNestedJar(scanned, extractedJar);
+                            }
+                        }
+                    }
+                    scanned.entryNames.add(je.getName());
+                }
+                scanned.index = JarIndexAccess.getJarIndex(jarFile);
+                scanned.refersToOtherJars |= refersToOtherJars(jarFile);
+            }
+            if (jar.isLazy()) {
+                scanned.digest = Cache.getDigest(scanned.localFile);
+            }
+        } catch (Exception ex) {
+            scanned.failure = ex;
+        }
+        return scanned;
+    }
 
-                                tracker.addResource(new File(extractedJarLocation).toURI().toURL(), (VersionString) null);
+    /**
+     * Adds the entries of a jar nested in a lazy jar to the entries of the lazy jar, as they are found once the lazy jar
+     * is activated. A nested jar which cannot be read may contain anything.
+     */
+    private static void scanNestedJar(final ScannedJar scanned, final File extractedJar) {
+        try (JarFile nestedJar = new JarFile(extractedJar)) {
+            for (JarEntry je : Collections.list(nestedJar.entries())) {
+                scanned.entryNames.add(je.getName());
+            }
+            scanned.refersToOtherJars |= refersToOtherJars(nestedJar);
+        } catch (IOException e) {
+            LOG.debug("Failed to read the nested jar {} - {}", extractedJar, e.getMessage());
+            scanned.refersToOtherJars = true;
+        }
+    }
 
-                                URL codebase = file.getCodeBase();
-                                if (codebase == null) {
-                                    //FIXME: codebase should be the codebase of the Main Jar not
-                                    //the location. Although, it still works in the current state.
-                                    codebase = file.getResources().getMainJAR().getLocation();
-                                }
+    /**
+     * @return true if the jar makes other jars available by the class path in its manifest or by its jar index
+     */
+    private static boolean refersToOtherJars(final JarFile jarFile) throws IOException {
+        final Manifest manifest = jarFile.getManifest();
+        final String classPath = manifest == null ? null : manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+        return (classPath != null && !classPath.trim().isEmpty()) || jarFile.getEntry(INDEX_LIST) != null;
+    }
 
-                                final SecurityDesc jarSecurity = securityDelegate.getJarPermissions(codebase);
+    /**
+     * We need to extract nested jars so that they can be loaded
+     * (inline loading with "jar:..!/..." path will not work
+     * with standard classloader methods)
+     *
+     * @return the extracted jar or {@code null} if the nested jar is empty
+     */
+    private static File extractNestedJar(final File localFile, final JarFile jarFile, final JarEntry je, final byte[] buffer) throws IOException, NoSuchAlgorithmException {
+        String name = je.getName();
+        if (name.contains("..")) {
+            name = CacheUtil.hex(name, name);
+        }
+        final File extractedJar = new File(Cache.getNestedJarsDir(localFile) + "/" + name);
+        final File parentDir = extractedJar.getParentFile();
+        if (!parentDir.isDirectory() && !parentDir.mkdirs()) {
+            throw new RuntimeException("Unable to extract nested jar.");
+        }
 
-                                try {
-                                    URL fileURL = new URL("file://" + extractedJarLocation);
-                                    // there is no remote URL for this, so lets fake one
-                                    URL fakeRemote = new URL(jar.getLocation().toString() + "!" + je.getName());
-                                    CachedJarFileCallback.getInstance().addMapping(fakeRemote, fileURL);
-                                    addURL(fakeRemote);
+        long fileSize = 0;
+        try (InputStream is = jarFile.getInputStream(je); OutputStream out = new FileOutputStream(extractedJar)) {
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+                fileSize += read;
+            }
+        }
 
-                                    jarLocationSecurityMap.put(fakeRemote, jarSecurity);
+        // 0 byte file? skip
+        return fileSize > 0 ? extractedJar : null;
+    }
 
-                                } catch (MalformedURLException mfue) {
-                                    LOG.error("Unable to add extracted nested jar to classpath", mfue);
-                                }
-                            }
+    /**
+     * Adds a read jar to the classloader.
+     *
+     * @return true if the jar was recorded in the package index
+     */
+    private boolean addScannedJar(final ScannedJar scanned) {
+        final JARDesc jar = scanned.jar;
+        final File localFile = scanned.localFile;
+        available.remove(jar);
 
-                            jarEntries.add(je.getName());
-                        }
+        boolean recorded = false;
+        try {
+            if (scanned.failure != null) {
+                throw scanned.failure;
+            }
+
+            URL location = jar.getLocation(); // non-cacheable, use source location
+            if (localFile != null) {
+                location = localFile.toURI().toURL(); // cached file
+                // This is really not the best way.. but we need some way for
+                // PluginAppletViewer::getCachedImageRef() to check if the image
+                // is available locally, and it cannot use getResources() because
+                // that prefetches the resource, which confuses MediaTracker.waitForAll()
+                // which does a wait(), waiting for notification (presumably
+                // thrown after a resource is fetched). This bug manifests itself
+                // particularly when using The FileManager applet from Webmin.
+                for (Map.Entry<String, File> nestedJar : scanned.nestedJars.entrySet()) {
+                    final File extractedJar = nestedJar.getValue();
+                    tracker.addResource(extractedJar.toURI().toURL(), (VersionString) null);
+
+                    URL codebase = file.getCodeBase();
+                    if (codebase == null) {
+                        //FIXME: codebase should be the codebase of the Main Jar not
+                        //the location. Although, it still works in the current state.
+                        codebase = file.getResources().getMainJAR().getLocation();
                     }
-                }
 
-                addURL(jar.getLocation());
+                    final SecurityDesc jarSecurity = securityDelegate.getJarPermissions(codebase);
 
-                // there is currently no mechanism to cache files per
-                // instance.. so only index cached files
-                if (localFile != null) {
-                    CachedJarFileCallback.getInstance().addMapping(jar.getLocation(), localFile.toURI().toURL());
+                    try {
+                        URL fileURL = new URL("file://" + extractedJar.getPath());
+                        // there is no remote URL for this, so lets fake one
+                        URL fakeRemote = new URL(jar.getLocation().toString() + "!" + nestedJar.getKey());
+                        CachedJarFileCallback.getInstance().addMapping(fakeRemote, fileURL);
+                        addURL(fakeRemote);
 
-                    try (JarFile jarFile = new JarFile(localFile.getAbsolutePath())) {
-                        JarIndexAccess index = JarIndexAccess.getJarIndex(jarFile);
-                        if (index != null) {
-                            jarIndexes.add(index);
-                        }
+                        jarLocationSecurityMap.put(fakeRemote, jarSecurity);
+                        invalidatePermissions();
+
+                    } catch (MalformedURLException mfue) {
+                        LOG.error("Unable to add extracted nested jar to classpath", mfue);
                     }
-                } else {
-                    CachedJarFileCallback.getInstance().addMapping(jar.getLocation(), jar.getLocation());
                 }
+                if (Cache.getNestedJarsDir(localFile).isDirectory()) {
+                    // the extracted jars count against the size limit of the cache
+                    Cache.updateDerivedArtifacts(localFile);
+                }
+                if (scanned.digest != null) {
+                    packageIndex.record(jar, scanned.digest, scanned.entryNames, scanned.refersToOtherJars);
+                    recorded = true;
+                }
+            }
+
+            addURL(jar.getLocation());
+
+            // there is currently no mechanism to cache files per
+            // instance.. so only index cached files
+            if (localFile != null) {
+                CachedJarFileCallback.getInstance().addMapping(jar.getLocation(), localFile.toURI().toURL());
 
-                LOG.debug("Activate jar: {}", location);
-            } catch (Exception ex) {
-                LOG.error("Error while activating jars", ex);
+                if (scanned.index != null) {
+                    jarIndexes.add(scanned.index);
+                }
+            } else {
+                CachedJarFileCallback.getInstance().addMapping(jar.getLocation(), jar.getLocation());
             }
 
-            // some programs place a native library in any jar
-            nativeLibraryStorage.addSearchJar(jar.getLocation());
+            LOG.debug("Activate jar: {}", location);
+        } catch (Exception ex) {
+            LOG.error("Error while activating jars", ex);
         }
 
-        return null;
+        // some programs place a native library in any jar
+        nativeLibraryStorage.addSearchJar(jar.getLocation());
+        return recorded;
+    }
+
+    /**
+     * Adds the jar to the search path and invalidates the names of missing classes and resources.
+     */
+    @Override
+    protected void addURL(final URL url) {
+        super.addURL(url);
+        searchPathChanged();
+    }
+
+    /**
+     * Invalidates the names of missing classes and resources of this classloader and the classloaders searching it.
+     */
+    void searchPathChanged() {
+        searchPathGeneration.incrementAndGet();
+    }
+
+    /**
+     * Returns the generation of the search path of this classloader. It changes whenever a jar or path is added
+     * to this classloader, its codebase loader or one of its extension classloaders, but not when jars are added
+     * to unrelated classloaders.
+     *
+     * @return the sum of the generations of this classloader and its extension classloaders
+     */
+    private long getSearchPathGeneration() {
+        long generation = searchPathGeneration.get();
+        final JNLPClassLoader[] extensionLoaders = loaders;
+        if (extensionLoaders != null) {
+            for (int i = 1; i < extensionLoaders.length; i++) {
+                generation += extensionLoaders[i].getSearchPathGeneration();
+            }
+        }
+        return generation;
     }
 
     /**
@@ -1378,6 +1630,39 @@ public class JNLPClassLoader extends URLClassLoader {
         }
     }
 
+    /**
+     * An access control context for class loading and the generation of the permissions it was computed for.
+     */
+    private static class ClassLoadingContext {
+        private final long generation;
+        private final AccessControlContext context;
+
+        private ClassLoadingContext(final long generation, final AccessControlContext context) {
+            this.generation = generation;
+            this.context = context;
+        }
+    }
+
+    /**
+     * The content of a jar read by {@link #scanJar(JARDesc)}.
+     */
+    private static class ScannedJar {
+        private final JARDesc jar;
+        private final File localFile;
+        private final List<String> entryNames = new ArrayList<>();
+        /** the jars extracted from the jar by their entry name */
+        private final Map<String, File> nestedJars = new LinkedHashMap<>();
+        private JarIndexAccess index;
+        private boolean refersToOtherJars;
+        private String digest;
+        private Exception failure;
+
+        private ScannedJar(final JARDesc jar, final File localFile) {
+            this.jar = jar;
+            this.localFile = localFile;
+        }
+    }
+
     @FunctionalInterface
     public interface ExceptionalSupplier<T, E extends Exception> {
 
@@ -1405,31 +1690,76 @@ public class JNLPClassLoader extends URLClassLoader {
      * classloader instance when not needed is not in general a good idea
      * because it can and will lead to deadlock when multithreaded classloading
      * is in effect. The solution is to keep the fields thread safe on their
-     * own. This is accomplished by wrapping them in Collections.synchronized*
-     * to provide atomic add/remove operations, and synchronizing on them when
-     * iterating or performing multiple mutations. See bug report RH976833. On
-     * some systems this bug will manifest itself as deadlock on every webpage
-     * with more than one Java applet, potentially also causing the browser
-     * process to hang. More information in the mailing list archives:
+     * own. This is accomplished by using concurrent collections. See bug
+     * report RH976833. On some systems this bug will manifest itself as
+     * deadlock on every webpage with more than one Java applet, potentially
+     * also causing the browser process to hang. More information in the
+     * mailing list archives:
      * http://mail.openjdk.java.net/pipermail/distro-pkg-dev/2013-September/024536.html
      * <p>
-     * Affected fields: available, classpaths, jarIndexes, jarEntries,
+     * The classloader is registered as parallel capable, so only the lock of
+     * the class name is taken. Jars are activated while holding the
+     * activation lock of the classloader they belong to.
+     * <p>
+     * Affected fields: available, classpaths, jarIndexes,
      * jarLocationSecurityMap
      */
     @Override
     public Class<?> loadClass(final String name) throws ClassNotFoundException {
-        final List<ExceptionalSupplier<Class<?>, ClassNotFoundException>> list = new ArrayList<>();
-        list.add(() -> findLoadedClassAll(name));
-        list.add(() -> loadClassFromParentClassloader(name));
-        list.add(() -> loadClassExt(name));
-        list.add(() -> loadClassFromInternalManifestClasspath(name));
-        list.add(() -> loadFromJarIndexes(name));
+        synchronized (getClassLoadingLock(name)) {
+            final Class<?> loaded = findLoadedClassAll(name);
+            if (loaded != null) {
+                return loaded;
+            }
+            if (missingClasses.contains(name)) {
+                throw new ClassNotFoundException(name);
+            }
+            final long generation = missingClasses.currentGeneration();
 
-        return list.stream()
-                .map(ExceptionalSupplier::getResultOfCallOrNull)
-                .filter(Objects::nonNull)
-                .findFirst()
-                .orElseThrow(() -> new ClassNotFoundException(name));
+            boolean failed = false;
+            try {
+                return loadClassFromParentClassloader(name);
+            } catch (Exception e) {
+                failed |= isFailure(e);
+            }
+            try {
+                return loadClassExt(name);
+            } catch (Exception e) {
+                failed |= isFailure(e);
+            }
+            try {
+                return loadClassFromInternalManifestClasspath(name);
+            } catch (Exception e) {
+                failed |= isFailure(e);
+            }
+            try {
+                return loadFromJarIndexes(name);
+            } catch (Exception e) {
+                failed |= isFailure(e);
+            }
+
+            // a failure, e.g. an I/O error or a jar which could not be activated, may not happen on the next try
+            if (!failed) {
+                missingClasses.add(name, generation);
+            }
+            throw new ClassNotFoundException(name);
+        }
+    }
+
+    /**
+     * @param e the exception of a search for a class
+     * @return false if the class just does not exist, true if the search failed
+     */
+    private static boolean isFailure(final Exception e) {
+        if (!(e instanceof ClassNotFoundException)) {
+            return true;
+        }
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException || cause instanceof RuntimeException) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private Class<?> loadClassFromParentClassloader(final String name) throws ClassNotFoundException {
@@ -1444,19 +1774,15 @@ public class JNLPClassLoader extends URLClassLoader {
     private Class<?> loadClassFromInternalManifestClasspath(final String name) throws ClassNotFoundException {
         // Look in 'Class-Path' as specified in the manifest file
 
-        // This field synchronized before iterating over it since it may
-        // be shared data between threads
-        synchronized (classpaths) {
-            for (String classpath : classpaths) {
-                JARDesc desc;
-                try {
-                    URL jarUrl = new URL(file.getCodeBase(), classpath);
-                    desc = new JARDesc(jarUrl, null, null, false, true, false, true);
-                } catch (MalformedURLException mfe) {
-                    throw new ClassNotFoundException(name, mfe);
-                }
-                addNewJar(desc);
+        for (String classpath : classpaths) {
+            JARDesc desc;
+            try {
+                URL jarUrl = new URL(file.getCodeBase(), classpath);
+                desc = new JARDesc(jarUrl, null, null, false, true, false, true);
+            } catch (MalformedURLException mfe) {
+                throw new ClassNotFoundException(name, mfe);
             }
+            addNewJar(desc);
         }
 
         return loadClassExt(name);
@@ -1466,27 +1792,23 @@ public class JNLPClassLoader extends URLClassLoader {
         // As a last resort, look in any available indexes
         // Currently this loads jars directly from the site. We cannot cache it because this
         // call is initiated from within the applet, which does not have disk read/write permissions
-        // This field synchronized before iterating over it since it may
-        // be shared data between threads
-        synchronized (jarIndexes) {
-            for (JarIndexAccess index : jarIndexes) {
-                // Non-generic code in sun.misc.JarIndex
-                LinkedList<String> jarList = index.get(name.replace('.', '/'));
-
-                if (jarList != null) {
-                    for (String jarName : jarList) {
-                        try {
-                            final JARDesc desc = new JARDesc(new URL(file.getCodeBase(), jarName),
-                                    null, null, false, true, false, true);
-                            addNewJar(desc);
-                        } catch (MalformedURLException mfe) {
-                            LOG.debug("encountered invalid URL for {} - {}", file.getCodeBase(), jarName);
-                        }
+        for (JarIndexAccess index : jarIndexes) {
+            // Non-generic code in sun.misc.JarIndex
+            LinkedList<String> jarList = index.get(name.replace('.', '/'));
+
+            if (jarList != null) {
+                for (String jarName : jarList) {
+                    try {
+                        final JARDesc desc = new JARDesc(new URL(file.getCodeBase(), jarName),
+                                null, null, false, true, false, true);
+                        addNewJar(desc);
+                    } catch (MalformedURLException mfe) {
+                        LOG.debug("encountered invalid URL for {} - {}", file.getCodeBase(), jarName);
                     }
-
-                    // If it still fails, let it error out
-                    return loadClassExt(name);
                 }
+
+                // If it still fails, let it error out
+                return loadClassExt(name);
             }
         }
         throw new ClassNotFoundException(name);
@@ -1525,6 +1847,7 @@ public class JNLPClassLoader extends URLClassLoader {
             Permission p = getReadPermission(desc);
             if (p != null) {
                 resourcePermissions.add(p);
+                invalidatePermissions();
             }
             return null;
         });
@@ -1548,6 +1871,7 @@ public class JNLPClassLoader extends URLClassLoader {
                 final SecurityDesc security = securityDelegate.getJarPermissions(file.getCodeBase());
 
                 jarLocationSecurityMap.put(remoteURL, security);
+                invalidatePermissions();
 
                 return null;
             });
@@ -1572,9 +1896,16 @@ public class JNLPClassLoader extends URLClassLoader {
         for (JNLPClassLoader loader : loaders) {
             try {
                 if (loader == this) {
-                    final String fName = name;
-                    return AccessController.doPrivileged(
-                            (PrivilegedExceptionAction<Class<?>>) () -> JNLPClassLoader.super.findClass(fName), getAccessControlContextForClassLoading());
+                    // the class may already be defined by a thread loading it through another classloader of the application
+                    synchronized (getClassLoadingLock(name)) {
+                        final Class<?> loaded = findLoadedClass(name);
+                        if (loaded != null) {
+                            return loaded;
+                        }
+                        final String fName = name;
+                        return AccessController.doPrivileged(
+                                (PrivilegedExceptionAction<Class<?>>) () -> JNLPClassLoader.super.findClass(fName), getAccessControlContextForClassLoading());
+                    }
                 } else {
                     return loader.findClass(name);
                 }
@@ -1609,12 +1940,21 @@ public class JNLPClassLoader extends URLClassLoader {
         } catch (ClassNotFoundException ignored) {
         }
 
+        // add the jars known to contain the package of the class
+        final String resourceName = name.replace('.', '/') + ".class";
+        while (addIndexedResource(resourceName)) {
+            try {
+                return findClass(name);
+            } catch (ClassNotFoundException ignored) {
+            }
+        }
+
         // add resources until found
         while (true) {
             JNLPClassLoader addedTo;
 
             try {
-                addedTo = addNextResource();
+                addedTo = addNextResource(resourceName);
             } catch (LaunchException e) {
 
                 /*
@@ -1626,7 +1966,8 @@ public class JNLPClassLoader extends URLClassLoader {
             }
 
             if (addedTo == null) {
-                throw new ClassNotFoundException(name);
+                // another thread may have activated the jar with the class meanwhile
+                return findClass(name);
             }
 
             try {
@@ -1669,17 +2010,31 @@ public class JNLPClassLoader extends URLClassLoader {
      */
     @Override
     public Enumeration<URL> findResources(String name) throws IOException {
+        if (missingResources.contains(name)) {
+            return Collections.emptyEnumeration();
+        }
+        final long generation = missingResources.currentGeneration();
+
         Enumeration<URL> lresources = findResourcesBySearching(name);
 
+        // if not found, load the jars known to contain the package; repeat search
+        while (!lresources.hasMoreElements() && addIndexedResource(name)) {
+            lresources = findResourcesBySearching(name);
+        }
+
         try {
-            // if not found, load all lazy resources; repeat search
-            while (!lresources.hasMoreElements() && addNextResource() != null) {
+            // if not found, load the lazy resources which may contain it; repeat search
+            while (!lresources.hasMoreElements() && addNextResource(name) != null) {
                 lresources = findResourcesBySearching(name);
             }
         } catch (LaunchException le) {
             LOG.error("Failed to load resources", le);
+            return lresources;
         }
 
+        if (!lresources.hasMoreElements()) {
+            missingResources.add(name, generation);
+        }
         return lresources;
     }
 
@@ -1757,28 +2112,86 @@ public class JNLPClassLoader extends URLClassLoader {
      *                         jar, fails to be verified or does not match
      */
     private JNLPClassLoader addNextResource() throws LaunchException {
-        if (available.isEmpty()) {
-            for (int i = 1; i < loaders.length; i++) {
-                JNLPClassLoader result = loaders[i].addNextResource();
+        return addNextResource(null);
+    }
+
+    /**
+     * Adds the next unused resource which may contain the given class file or resource, skipping the jars
+     * known from the package index not to contain it. That resource and all those in the same part will be
+     * downloaded and added to the classloader before returning.
+     *
+     * @param resourceName the name of the class file or resource, {@code null} to add any resource
+     * @return the classloader that resources were added to, or null
+     * @throws LaunchException Thrown if the signed JNLP file, within the main
+     *                         jar, fails to be verified or does not match
+     */
+    private JNLPClassLoader addNextResource(final String resourceName) throws LaunchException {
+        synchronized (activationLock) {
+            for (JARDesc jar : available) {
+                if (resourceName == null || packageIndex.mayContain(jar.getLocation().toString(), resourceName)) {
+                    final List<JARDesc> jars = getJarsToLoad(jar);
+
+                    checkForMain(jars);
+                    activateJars(jars);
 
-                if (result != null) {
-                    return result;
+                    return this;
                 }
             }
-            return null;
         }
 
-        final List<JARDesc> jars = getNextJarsToLoad();
-
-        checkForMain(jars);
-        activateJars(jars);
+        for (int i = 1; i < loaders.length; i++) {
+            JNLPClassLoader result = loaders[i].addNextResource(resourceName);
 
-        return this;
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
     }
 
-    private List<JARDesc> getNextJarsToLoad() {
-        final JARDesc nextJar = available.get(0);
+    /**
+     * Adds the next unused jar which contained the package of the resource in a previous run of the application,
+     * together with the jars in the same part.
+     *
+     * @param resourceName the name of the resource
+     * @return true if a jar was added to this classloader or one of its extension classloaders
+     */
+    private boolean addIndexedResource(final String resourceName) {
+        for (JNLPClassLoader loader : loaders) {
+            if (loader != this && loader.addIndexedResource(resourceName)) {
+                return true;
+            }
+        }
+
+        final Set<String> locations = new HashSet<>(packageIndex.getJarLocations(resourceName));
+        if (locations.isEmpty()) {
+            return false;
+        }
+
+        synchronized (activationLock) {
+            JARDesc nextJar = null;
+            for (JARDesc jar : available) {
+                if (locations.contains(jar.getLocation().toString())) {
+                    nextJar = jar;
+                    break;
+                }
+            }
+            if (nextJar == null) {
+                return false;
+            }
+
+            final List<JARDesc> jars = getJarsToLoad(nextJar);
+            try {
+                checkForMain(jars);
+            } catch (LaunchException e) {
+                throw new IllegalStateException(e);
+            }
+            activateJars(jars);
+            return true;
+        }
+    }
 
+    private List<JARDesc> getJarsToLoad(final JARDesc nextJar) {
         final LinkedHashSet<JARDesc> result = new LinkedHashSet<>();
         result.add(nextJar);
         result.addAll(getAllAvailableJarsInPart(nextJar.getPart()));
@@ -1887,6 +2300,7 @@ public class JNLPClassLoader extends URLClassLoader {
                 jarLocationSecurityMap.put(key, extLoader.jarLocationSecurityMap.get(key));
             }
         }
+        invalidatePermissions();
     }
 
     /**
@@ -1912,6 +2326,7 @@ public class JNLPClassLoader extends URLClassLoader {
         } else {
             codeBaseLoader.addURL(u);
         }
+        invalidatePermissions();
     }
 
 
@@ -2073,6 +2488,17 @@ public class JNLPClassLoader extends URLClassLoader {
             // continue below
         }
 
+        final long generation = permissionsGeneration.get();
+        final ClassLoadingContext cached = classLoadingContext;
+        if (cached != null && cached.generation == generation) {
+            return cached.context;
+        }
+        final AccessControlContext result = createAccessControlContextForClassLoading();
+        classLoadingContext = new ClassLoadingContext(generation, result);
+        return result;
+    }
+
+    private AccessControlContext createAccessControlContextForClassLoading() {
         // Since this is for class-loading, technically any class from one jar
         // should be able to access a class from another, therefore making the
         // original context code source irrelevant
@@ -2116,8 +2542,9 @@ public class JNLPClassLoader extends URLClassLoader {
     public String getMainClassNameFromManifest(JARDesc mainJarDesc) throws IOException {
         final File f = tracker.getCacheFile(mainJarDesc.getLocation());
         if (f != null) {
-            final JarFile mainJar = new JarFile(f);
-            return mainJar.getManifest().getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+            try (JarFilePool.Lease mainJar = JarFilePool.getInstance().acquire(f)) {
+                return mainJar.getJarFile().getManifest().getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+            }
         }
         return null;
     }
@@ -0,0 +1,74 @@
+package net.sourceforge.jnlp.runtime.classloader;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of the names of classes or resources which could not be found by a classloader.
+ * <p>
+ * A name can only be found later if a jar or path is added to the classloader or to one of the classloaders
+ * it searches. Each addition starts a new generation of the search path of the classloader, which invalidates
+ * the names of its cache. A search records its miss with the generation in which it started, so a miss is not
+ * recorded if a jar was added while searching.
+ */
+final class NegativeLookupCache {
+
+    private final Map<String, Boolean> missingNames;
+
+    private final LongSupplier searchPathGeneration;
+
+    private long generation;
+
+    /**
+     * @param maxSize              the maximum number of names kept, the least recently used names are dropped first
+     * @param searchPathGeneration the generation of the search path of the classloader, changes whenever a jar or path is added
+     */
+    NegativeLookupCache(final int maxSize, final LongSupplier searchPathGeneration) {
+        this.missingNames = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.searchPathGeneration = searchPathGeneration;
+        this.generation = searchPathGeneration.getAsLong();
+    }
+
+    /**
+     * @return the generation to pass to {@link #add(String, long)} when the search misses
+     */
+    long currentGeneration() {
+        return searchPathGeneration.getAsLong();
+    }
+
+    /**
+     * @param name the name of the class or resource
+     * @return true if the name was not found and no jar was added since
+     */
+    synchronized boolean contains(final String name) {
+        update();
+        return missingNames.get(name) != null;
+    }
+
+    /**
+     * Records a name which was not found.
+     *
+     * @param name             the name of the class or resource
+     * @param searchGeneration the generation when the search started
+     */
+    synchronized void add(final String name, final long searchGeneration) {
+        update();
+        if (searchGeneration == generation) {
+            missingNames.put(name, Boolean.TRUE);
+        }
+    }
+
+    private void update() {
+        final long current = searchPathGeneration.getAsLong();
+        if (current != generation) {
+            missingNames.clear();
+            generation = current;
+        }
+    }
+}
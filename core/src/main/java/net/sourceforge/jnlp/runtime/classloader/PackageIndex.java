@@ -0,0 +1,328 @@
+package net.sourceforge.jnlp.runtime.classloader;
+
+import net.adoptopenjdk.icedteaweb.jnlp.element.resource.JARDesc;
+import net.adoptopenjdk.icedteaweb.jnlp.version.VersionId;
+import net.adoptopenjdk.icedteaweb.jnlp.version.VersionString;
+import net.adoptopenjdk.icedteaweb.logging.Logger;
+import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
+import net.sourceforge.jnlp.cache.CacheUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Index from the packages and resources of an application to the lazy jars containing them.
+ * <p>
+ * A jar is recorded when it is activated, together with its version and digest. Later runs of the application
+ * can then activate the jar containing a class or resource instead of activating the lazy jars one by one,
+ * and skip the recorded jars which cannot contain it.
+ * A recorded jar is dropped as soon as its version in the JNLP file or its content in the cache changes.
+ * <p>
+ * Classes are indexed by their package, which is the directory of their entry. Other resources are indexed by name.
+ * The entries of the jars nested in a jar are indexed as entries of the jar, as they are found once the jar is activated.
+ * A jar which refers to other jars by its manifest class path or its jar index may make any class or resource available.
+ */
+final class PackageIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PackageIndex.class);
+
+    private static final String JAR_PREFIX = "jar.";
+    private static final String VERSION_SUFFIX = ".version";
+    private static final String DIGEST_SUFFIX = ".digest";
+    private static final String REFERS_TO_OTHER_JARS_SUFFIX = ".refersToOtherJars";
+    private static final String PACKAGE_PREFIX = "package.";
+    private static final String RESOURCE_PREFIX = "resource.";
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final File indexFile;
+
+    private final Map<String, RecordedJar> jars = new LinkedHashMap<>();
+    private final Map<String, Set<String>> packages = new HashMap<>();
+    private final Map<String, Set<String>> resources = new HashMap<>();
+
+    private boolean modified = false;
+
+    /**
+     * @param indexFile the file the index is persisted in, {@code null} if the index is not persisted
+     */
+    PackageIndex(final File indexFile) {
+        this.indexFile = indexFile;
+        if (indexFile != null && indexFile.isFile()) {
+            load();
+        }
+    }
+
+    /**
+     * Returns the locations of the recorded jars containing the package of a class or containing a resource.
+     *
+     * @param resourceName the name of the resource, e.g. {@code com/example/Main.class}
+     * @return the locations of the jars, empty if the package or resource is not indexed
+     */
+    synchronized List<String> getJarLocations(final String resourceName) {
+        final Set<String> locations = isClass(resourceName) ? packages.get(packageOf(resourceName)) : resources.get(resourceName);
+        return locations == null ? Collections.emptyList() : new ArrayList<>(locations);
+    }
+
+    /**
+     * @param jarLocation  the location of a jar
+     * @param resourceName the name of a class file or resource
+     * @return false if the jar is recorded, does not refer to other jars and does not contain the package of the class or the resource
+     */
+    synchronized boolean mayContain(final String jarLocation, final String resourceName) {
+        final RecordedJar recorded = jars.get(jarLocation);
+        if (recorded == null || recorded.refersToOtherJars) {
+            return true;
+        }
+        return isClass(resourceName) ? recorded.packages.contains(packageOf(resourceName)) : recorded.resources.contains(resourceName);
+    }
+
+    /**
+     * Removes the recorded jars which are no longer part of the application, whose version has changed
+     * or whose recorded content is no longer in the cache.
+     *
+     * Only the recorded jars are looked up in the cache.
+     *
+     * @param currentJars  the jars in the JNLP file
+     * @param cachedDigest the digest of the cached content of a jar, empty if the jar is not cached
+     */
+    synchronized void retainAll(final JARDesc[] currentJars, final Function<JARDesc, Optional<String>> cachedDigest) {
+        final Map<String, JARDesc> current = new HashMap<>();
+        for (JARDesc jar : currentJars) {
+            current.put(jar.getLocation().toString(), jar);
+        }
+        for (RecordedJar recorded : new ArrayList<>(jars.values())) {
+            final JARDesc jar = current.get(recorded.location);
+            if (jar == null
+                    || !Objects.equals(versionOf(jar), recorded.version)
+                    || !cachedDigest.apply(jar).filter(recorded.digest::equals).isPresent()) {
+                LOG.debug("Removing {} from the package index", recorded.location);
+                remove(recorded.location);
+            }
+        }
+    }
+
+    /**
+     * Records the packages and resources of an activated jar. Nothing changes if the jar was already recorded with the same digest.
+     *
+     * @param jar               the activated jar
+     * @param digest            the digest of the content of the jar
+     * @param entryNames        the names of the entries in the jar and in the jars nested in it
+     * @param refersToOtherJars true if the jar or a jar nested in it refers to other jars, which may contain anything
+     */
+    synchronized void record(final JARDesc jar, final String digest, final Collection<String> entryNames, final boolean refersToOtherJars) {
+        final String location = jar.getLocation().toString();
+        final RecordedJar recorded = jars.get(location);
+        if (recorded != null && recorded.digest.equals(digest)) {
+            return;
+        }
+        remove(location);
+
+        final Set<String> jarPackages = new HashSet<>();
+        final Set<String> jarResources = new HashSet<>();
+        for (String name : entryNames) {
+            if (isClass(name)) {
+                jarPackages.add(packageOf(name));
+            } else if (!name.endsWith("/")) {
+                jarResources.add(name);
+            }
+        }
+        add(new RecordedJar(location, versionOf(jar), digest, refersToOtherJars, jarPackages, jarResources));
+        modified = true;
+    }
+
+    /**
+     * Writes the index if it was modified. The index is replaced atomically so concurrent runs never read a partial index.
+     */
+    synchronized void store() {
+        if (indexFile == null || !modified) {
+            return;
+        }
+
+        final Properties properties = new Properties();
+        final Map<String, Integer> numbers = new HashMap<>();
+        for (RecordedJar recorded : jars.values()) {
+            final int number = numbers.size();
+            numbers.put(recorded.location, number);
+            properties.setProperty(JAR_PREFIX + number, recorded.location);
+            properties.setProperty(JAR_PREFIX + number + DIGEST_SUFFIX, recorded.digest);
+            if (recorded.version != null) {
+                properties.setProperty(JAR_PREFIX + number + VERSION_SUFFIX, recorded.version);
+            }
+            if (recorded.refersToOtherJars) {
+                properties.setProperty(JAR_PREFIX + number + REFERS_TO_OTHER_JARS_SUFFIX, Boolean.TRUE.toString());
+            }
+        }
+        packages.forEach((name, locations) -> properties.setProperty(PACKAGE_PREFIX + name, toNumbers(locations, numbers)));
+        resources.forEach((name, locations) -> properties.setProperty(RESOURCE_PREFIX + name, toNumbers(locations, numbers)));
+
+        try {
+            final File directory = indexFile.getParentFile();
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Directory '" + directory + "' cannot be created");
+            }
+            final File tempFile = File.createTempFile(indexFile.getName(), ".tmp", directory);
+            try (OutputStream out = new FileOutputStream(tempFile)) {
+                properties.store(out, "packages and resources of the lazy jars");
+            }
+            Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            modified = false;
+        } catch (IOException e) {
+            LOG.debug("Failed to store the package index {} - {}", indexFile, e.getMessage());
+        }
+    }
+
+    private void load() {
+        final Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(indexFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            LOG.debug("Failed to read the package index {} - {}", indexFile, e.getMessage());
+            return;
+        }
+
+        final Map<String, Set<String>> jarPackages = new HashMap<>();
+        final Map<String, Set<String>> jarResources = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(PACKAGE_PREFIX)) {
+                fromNumbers(properties.getProperty(key), key.substring(PACKAGE_PREFIX.length()), jarPackages);
+            } else if (key.startsWith(RESOURCE_PREFIX)) {
+                fromNumbers(properties.getProperty(key), key.substring(RESOURCE_PREFIX.length()), jarResources);
+            }
+        }
+        for (int number = 0; properties.containsKey(JAR_PREFIX + number); number++) {
+            final String location = properties.getProperty(JAR_PREFIX + number);
+            final String version = properties.getProperty(JAR_PREFIX + number + VERSION_SUFFIX);
+            final String digest = properties.getProperty(JAR_PREFIX + number + DIGEST_SUFFIX);
+            final boolean refersToOtherJars = Boolean.parseBoolean(properties.getProperty(JAR_PREFIX + number + REFERS_TO_OTHER_JARS_SUFFIX));
+            if (digest != null) {
+                final String key = Integer.toString(number);
+                add(new RecordedJar(location, version, digest, refersToOtherJars,
+                        jarPackages.getOrDefault(key, Collections.emptySet()), jarResources.getOrDefault(key, Collections.emptySet())));
+            }
+        }
+
+        // the sweep of the cache removes indexes which were not used for a while
+        if (!indexFile.setLastModified(System.currentTimeMillis())) {
+            LOG.debug("Failed to update the modification time of {}", indexFile);
+        }
+    }
+
+    private static String toNumbers(final Set<String> locations, final Map<String, Integer> numbers) {
+        final StringBuilder value = new StringBuilder();
+        for (String location : locations) {
+            value.append(value.length() == 0 ? "" : " ").append(numbers.get(location));
+        }
+        return value.toString();
+    }
+
+    private static void fromNumbers(final String value, final String name, final Map<String, Set<String>> namesByNumber) {
+        for (String number : value.split(" ")) {
+            namesByNumber.computeIfAbsent(number, n -> new HashSet<>()).add(name);
+        }
+    }
+
+    private void add(final RecordedJar recorded) {
+        jars.put(recorded.location, recorded);
+        addLocation(packages, recorded.packages, recorded.location);
+        addLocation(resources, recorded.resources, recorded.location);
+    }
+
+    private void remove(final String location) {
+        final RecordedJar recorded = jars.remove(location);
+        if (recorded == null) {
+            return;
+        }
+        removeLocation(packages, recorded.packages, location);
+        removeLocation(resources, recorded.resources, location);
+        modified = true;
+    }
+
+    private static void addLocation(final Map<String, Set<String>> index, final Set<String> names, final String location) {
+        for (String name : names) {
+            index.computeIfAbsent(name, n -> new LinkedHashSet<>()).add(location);
+        }
+    }
+
+    private static void removeLocation(final Map<String, Set<String>> index, final Set<String> names, final String location) {
+        for (String name : names) {
+            final Set<String> locations = index.get(name);
+            if (locations != null) {
+                locations.remove(location);
+                if (locations.isEmpty()) {
+                    index.remove(name);
+                }
+            }
+        }
+    }
+
+    private static boolean isClass(final String resourceName) {
+        return resourceName.endsWith(CLASS_SUFFIX);
+    }
+
+    private static String packageOf(final String resourceName) {
+        final int index = resourceName.lastIndexOf('/');
+        return index < 0 ? "" : resourceName.substring(0, index);
+    }
+
+    private static String versionOf(final JARDesc jar) {
+        final VersionString version = jar.getVersion();
+        return version == null ? null : version.toString();
+    }
+
+    /**
+     * Returns the file of the index of an application. Each version of the application has its own index.
+     *
+     * @param directory    the directory with the indexes
+     * @param jnlpLocation the location of the JNLP file
+     * @param version      the version of the JNLP file, may be {@code null}
+     * @return the index file
+     */
+    static File getIndexFile(final File directory, final URL jnlpLocation, final VersionId version) {
+        try {
+            return new File(directory, CacheUtil.hex("index.properties", jnlpLocation + "#" + version));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class RecordedJar {
+        private final String location;
+        private final String version;
+        private final String digest;
+        private final boolean refersToOtherJars;
+        private final Set<String> packages;
+        private final Set<String> resources;
+
+        private RecordedJar(final String location, final String version, final String digest, final boolean refersToOtherJars,
+                            final Set<String> packages, final Set<String> resources) {
+            this.location = location;
+            this.version = version;
+            this.digest = digest;
+            this.refersToOtherJars = refersToOtherJars;
+            this.packages = packages;
+            this.resources = resources;
+        }
+    }
+}
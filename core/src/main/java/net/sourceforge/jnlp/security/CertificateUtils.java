@@ -40,6 +40,7 @@ package net.sourceforge.jnlp.security;
 import net.adoptopenjdk.icedteaweb.io.IOUtils;
 import net.adoptopenjdk.icedteaweb.logging.Logger;
 import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
+import net.sourceforge.jnlp.util.DigestUtils;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
@@ -53,11 +54,14 @@ import java.security.Key;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.util.Base64;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
 
@@ -171,14 +175,31 @@ public class CertificateUtils {
 
     /**
      * Checks whether an X509Certificate is already in one of the keystores
+     * <p>
+     * The shared keystores returned by {@link KeyStores} are looked up by the fingerprint of the certificate,
+     * all other keystores are searched entry by entry.
      *
      * @param c         the certificate
      * @param keyStores the KeyStores to check in
      * @return true if the certificate is present in one of the keystores, false otherwise
      */
     public static boolean inKeyStores(X509Certificate c, List<KeyStore> keyStores) {
+        String fingerprint = null;
         for (KeyStore keyStore : keyStores) {
             try {
+                final Map<String, String> index = KeyStores.getCertificateIndex(keyStore);
+                if (index != null) {
+                    if (fingerprint == null) {
+                        fingerprint = getFingerprint(c);
+                    }
+                    final String alias = index.get(fingerprint);
+                    if (alias != null && c.equals(keyStore.getCertificate(alias))) {
+                        LOG.debug("{} found in cacerts ({})", c.getSubjectX500Principal().getName(), KeyStores.getPathToKeystore(keyStore));
+                        return true;
+                    }
+                    continue;
+                }
+
                 // Check against all certs
                 Enumeration<String> aliases = keyStore.aliases();
                 while (aliases.hasMoreElements()) {
@@ -189,7 +210,7 @@ public class CertificateUtils {
                         return true;
                     } // else continue
                 }
-            } catch (KeyStoreException e) {
+            } catch (KeyStoreException | CertificateEncodingException e) {
                 LOG.error("exception while checking if certificate " + c + " is in keystore " + keyStore, e);
                 // continue
             }
@@ -197,6 +218,17 @@ public class CertificateUtils {
         return false;
     }
 
+    /**
+     * Returns the SHA-256 fingerprint of a certificate.
+     *
+     * @param cert the certificate
+     * @return the Base64 encoded fingerprint
+     * @throws CertificateEncodingException if the certificate cannot be encoded
+     */
+    static String getFingerprint(final Certificate cert) throws CertificateEncodingException {
+        return Base64.getEncoder().encodeToString(DigestUtils.newSha256().digest(cert.getEncoded()));
+    }
+
     /**
      * Writes the certificate in base64 encoded from to the print stream.
      * See http://tools.ietf.org/html/rfc4945#section-6.1 for more information
@@ -40,21 +40,36 @@ import net.adoptopenjdk.icedteaweb.i18n.Translator;
 import net.adoptopenjdk.icedteaweb.io.FileUtils;
 import net.adoptopenjdk.icedteaweb.logging.Logger;
 import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
+import net.adoptopenjdk.icedteaweb.resources.CachedDaemonThreadPoolProvider;
 import net.sourceforge.jnlp.config.InfrastructureFileDescriptor;
 import net.sourceforge.jnlp.config.PathsAndFiles;
 
 import java.io.File;
 import java.io.IOException;
+import java.security.AccessControlContext;
+import java.security.AccessController;
 import java.security.AllPermission;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.security.PrivilegedAction;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The {@code KeyStores} class allows easily accessing the various KeyStores
@@ -97,10 +112,28 @@ public final class KeyStores {
         CLIENT_CERTS,
     }
 
-    public static final Map<Integer, String> keystoresPaths = new HashMap<>();
+    public static final Map<Integer, String> keystoresPaths = new ConcurrentHashMap<>();
 
     private static final String KEYSTORE_TYPE = "JKS";
 
+    /**
+     * Counts the key stores written by this process, as the modification time of a file may not change
+     * if it is written twice within a second.
+     */
+    private static final AtomicLong STORED_KEYSTORES = new AtomicLong();
+
+    /**
+     * The key stores returned by {@link #getCertKeyStores()}, {@link #getCAKeyStores()} and
+     * {@link #getClientKeyStores()} by their location. These key stores are shared and are not changed.
+     */
+    private static final Map<String, LoadedKeyStore> LOADED_KEYSTORES = new ConcurrentHashMap<>();
+
+    /**
+     * Threads loading the KeyStores, see {@link #loadKeyStores()}.
+     */
+    private static final ExecutorService EXECUTOR = CachedDaemonThreadPoolProvider.createSharedThreadPool(
+            Math.min(Level.values().length * Type.values().length, Runtime.getRuntime().availableProcessors()));
+
     /**
      * Returns a KeyStore corresponding to the appropriate level level (user or
      * system) and type.
@@ -118,7 +151,9 @@ public final class KeyStores {
         final String location = getKeyStoreLocation(level, type).getFullPath();
         KeyStore ks = null;
         try {
+            final long start = System.nanoTime();
             ks = createKeyStoreFromFile(new File(location), level == Level.USER);
+            LOG.debug("Loaded keystore {} {} with {} entries in {} ms", level, type, ks.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
             //hashcode is used instead of instance so when no references are left
             //to keystore, then this will not be blocker for garbage collection
             keystoresPaths.put(ks.hashCode(), location);
@@ -136,6 +171,79 @@ public final class KeyStores {
         return s;
     }
 
+    /**
+     * Returns the shared KeyStore of a level and type. The KeyStore is loaded again only if its file changed
+     * since it was loaded. The shared KeyStores are only read, {@link #getKeyStore(Level, Type)} returns a
+     * KeyStore which can be changed.
+     *
+     * @param level whether the KeyStore desired is a user-level or system-level KeyStore
+     * @param type  the type of KeyStore desired
+     * @return the KeyStore or {@code null} if it cannot be loaded
+     */
+    private static KeyStore getSharedKeyStore(Level level, Type type) {
+        final SecurityManager sm = System.getSecurityManager();
+        if (sm != null) {
+            sm.checkPermission(new AllPermission());
+        }
+
+        final String location = getKeyStoreLocation(level, type).getFullPath();
+        final String stamp = getStamp(new File(location));
+        final LoadedKeyStore loaded = LOADED_KEYSTORES.get(location);
+        if (loaded != null && loaded.stamp.equals(stamp)) {
+            return loaded.keyStore;
+        }
+
+        // the file is stamped before it is read, so a change while reading is noticed by the next call
+        final KeyStore ks = getKeyStore(level, type).getKs();
+        if (ks != null) {
+            LOADED_KEYSTORES.put(location, new LoadedKeyStore(ks, stamp));
+        }
+        return ks;
+    }
+
+    /**
+     * Returns the aliases of the certificates of a shared KeyStore by the fingerprints of the certificates.
+     * The index is built when it is first needed and dropped together with the KeyStore when its file changes.
+     *
+     * @param keyStore the KeyStore
+     * @return the index, or {@code null} if the KeyStore is not shared, as other KeyStores can change at any time
+     */
+    static Map<String, String> getCertificateIndex(final KeyStore keyStore) throws KeyStoreException, CertificateEncodingException {
+        for (LoadedKeyStore loaded : LOADED_KEYSTORES.values()) {
+            if (loaded.keyStore == keyStore) {
+                return loaded.getCertificateIndex();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Loads all shared KeyStores which are not loaded yet or changed since, in parallel.
+     * Later calls of {@link #getCertKeyStores()}, {@link #getCAKeyStores()} and {@link #getClientKeyStores()}
+     * return the loaded KeyStores.
+     */
+    public static void loadKeyStores() {
+        final long start = System.nanoTime();
+        final AccessControlContext context = AccessController.getContext();
+        final List<Callable<KeyStore>> tasks = new ArrayList<>();
+        for (Level level : Level.values()) {
+            for (Type type : Type.values()) {
+                tasks.add(() -> AccessController.doPrivileged((PrivilegedAction<KeyStore>) () -> getSharedKeyStore(level, type), context));
+            }
+        }
+
+        try {
+            for (Future<KeyStore> future : EXECUTOR.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.error("Exception while loading the keystores", e.getCause());
+        }
+        LOG.debug("Loaded the keystores in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
     /**
      * Returns an array of KeyStore that contain certificates that are trusted.
      * The KeyStores contain certificates from different sources.
@@ -146,22 +254,22 @@ public final class KeyStores {
         final List<KeyStore> result = new ArrayList<>(10);
         /* System-level JSSE certificates */
         KeyStore ks;
-        ks = getKeyStore(Level.SYSTEM, Type.JSSE_CERTS).getKs();
+        ks = getSharedKeyStore(Level.SYSTEM, Type.JSSE_CERTS);
         if (ks != null) {
             result.add(ks);
         }
         /* System-level certificates */
-        ks = getKeyStore(Level.SYSTEM, Type.CERTS).getKs();
+        ks = getSharedKeyStore(Level.SYSTEM, Type.CERTS);
         if (ks != null) {
             result.add(ks);
         }
         /* User-level JSSE certificates */
-        ks = getKeyStore(Level.USER, Type.JSSE_CERTS).getKs();
+        ks = getSharedKeyStore(Level.USER, Type.JSSE_CERTS);
         if (ks != null) {
             result.add(ks);
         }
         /* User-level certificates */
-        ks = getKeyStore(Level.USER, Type.CERTS).getKs();
+        ks = getSharedKeyStore(Level.USER, Type.CERTS);
         if (ks != null) {
             result.add(ks);
         }
@@ -178,22 +286,22 @@ public final class KeyStores {
         List<KeyStore> result = new ArrayList<>(10);
         /* System-level JSSE CA certificates */
         KeyStore ks;
-        ks = getKeyStore(Level.SYSTEM, Type.JSSE_CA_CERTS).getKs();
+        ks = getSharedKeyStore(Level.SYSTEM, Type.JSSE_CA_CERTS);
         if (ks != null) {
             result.add(ks);
         }
         /* System-level CA certificates */
-        ks = getKeyStore(Level.SYSTEM, Type.CA_CERTS).getKs();
+        ks = getSharedKeyStore(Level.SYSTEM, Type.CA_CERTS);
         if (ks != null) {
             result.add(ks);
         }
         /* User-level JSSE CA certificates */
-        ks = getKeyStore(Level.USER, Type.JSSE_CA_CERTS).getKs();
+        ks = getSharedKeyStore(Level.USER, Type.JSSE_CA_CERTS);
         if (ks != null) {
             result.add(ks);
         }
         /* User-level CA certificates */
-        ks = getKeyStore(Level.USER, Type.CA_CERTS).getKs();
+        ks = getSharedKeyStore(Level.USER, Type.CA_CERTS);
         if (ks != null) {
             result.add(ks);
         }
@@ -211,12 +319,12 @@ public final class KeyStores {
         List<KeyStore> result = new ArrayList<>();
 
         KeyStore ks;
-        ks = getKeyStore(Level.SYSTEM, Type.CLIENT_CERTS).getKs();
+        ks = getSharedKeyStore(Level.SYSTEM, Type.CLIENT_CERTS);
         if (ks != null) {
             result.add(ks);
         }
 
-        ks = getKeyStore(Level.USER, Type.CLIENT_CERTS).getKs();
+        ks = getSharedKeyStore(Level.USER, Type.CLIENT_CERTS);
         if (ks != null) {
             result.add(ks);
         }
@@ -268,6 +376,33 @@ public final class KeyStores {
 
     }
 
+    /**
+     * Returns a stamp of all key stores. The stamp changes whenever a key store is created, written or deleted,
+     * so it tells whether information derived from the key stores is still valid.
+     *
+     * @return the stamp of the key stores
+     */
+    public static String getKeyStoresStamp() {
+        final StringBuilder stamp = new StringBuilder();
+        for (Level level : Level.values()) {
+            for (Type type : Type.values()) {
+                stamp.append(getStamp(new File(getKeyStoreLocation(level, type).getFullPath()))).append(';');
+            }
+        }
+        return stamp.toString();
+    }
+
+    private static String getStamp(final File file) {
+        return STORED_KEYSTORES.get() + ":" + file.lastModified() + ":" + file.length();
+    }
+
+    /**
+     * Called whenever a key store was written.
+     */
+    static void keyStoreStored() {
+        STORED_KEYSTORES.incrementAndGet();
+    }
+
     /**
      * Returns a String that can be used as a translation key to create a
      * user-visible representation of this KeyStore. Creates a string by
@@ -345,4 +480,33 @@ public final class KeyStores {
         }
         return ks;
     }
+
+    private static class LoadedKeyStore {
+        private final KeyStore keyStore;
+        private final String stamp;
+        private volatile Map<String, String> certificateIndex;
+
+        private LoadedKeyStore(final KeyStore keyStore, final String stamp) {
+            this.keyStore = keyStore;
+            this.stamp = stamp;
+        }
+
+        private Map<String, String> getCertificateIndex() throws KeyStoreException, CertificateEncodingException {
+            Map<String, String> index = certificateIndex;
+            if (index == null) {
+                final Map<String, String> aliases = new HashMap<>();
+                final Enumeration<String> aliasList = keyStore.aliases();
+                while (aliasList.hasMoreElements()) {
+                    final String alias = aliasList.nextElement();
+                    final Certificate certificate = keyStore.getCertificate(alias);
+                    if (certificate != null) {
+                        aliases.putIfAbsent(CertificateUtils.getFingerprint(certificate), alias);
+                    }
+                }
+                index = Collections.unmodifiableMap(aliases);
+                certificateIndex = index;
+            }
+            return index;
+        }
+    }
 }
@@ -402,6 +402,7 @@ public class SecurityUtil {
                                 try (FileOutputStream fos = new FileOutputStream(f)) {
                                     ks.store(fos, pass);
                                 }
+                                KeyStores.keyStoreStored();
                             }
                             return null;
                         }
@@ -42,6 +42,7 @@ import net.adoptopenjdk.icedteaweb.logging.Logger;
 import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
 import net.adoptopenjdk.icedteaweb.ui.swing.dialogresults.Primitive;
 import net.adoptopenjdk.icedteaweb.ui.swing.dialogresults.YesNoSandbox;
+import net.sourceforge.jnlp.util.DigestUtils;
 import sun.security.util.HostnameChecker;
 import sun.security.validator.ValidatorException;
 
@@ -54,14 +55,21 @@ import java.lang.reflect.Method;
 import java.net.Socket;
 import java.security.AccessController;
 import java.security.KeyStore;
+import java.security.MessageDigest;
 import java.security.PrivilegedAction;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static net.adoptopenjdk.icedteaweb.CollectionUtils.isNullOrEmpty;
 
@@ -69,6 +77,10 @@ import static net.adoptopenjdk.icedteaweb.CollectionUtils.isNullOrEmpty;
  * This class implements an X509 Trust Manager. The certificates it trusts are
  * "variable", in the sense that it can dynamically, and temporarily support
  * different certificates that are not in the keystore.
+ * <p>
+ * Handshakes are checked concurrently. Only asking the user is serialized, so the user is asked once
+ * about a certificate presented by several connections at the same time. Positive decisions are cached
+ * by chain and host until the key stores change.
  */
 
 public final class VariableX509TrustManager {
@@ -80,19 +92,33 @@ public final class VariableX509TrustManager {
     public static final String SUN_JSSE = "SunJSSE";
 
 
+    /**
+     * The maximum number of trusted chains remembered, the least recently used are dropped first.
+     */
+    private static final int MAX_TRUSTED_CHAINS = 256;
+
     private static VariableX509TrustManager instance = null;
 
 
-    private final List<Certificate> temporarilyTrusted = new ArrayList<>();
+    private final Set<Certificate> temporarilyTrusted = ConcurrentHashMap.newKeySet();
 
-    private final List<Certificate> temporarilyUntrusted = new ArrayList<>();
+    private final Set<Certificate> temporarilyUntrusted = ConcurrentHashMap.newKeySet();
 
-    private final List<X509TrustManager> certTrustManagers = new ArrayList<>();
+    private volatile TrustManagers managers;
 
-    private final List<X509TrustManager> clientTrustManagers = new ArrayList<>();
+    /**
+     * The chains which were trusted for a host, with the time when the first certificate of the chain expires.
+     */
+    private final Map<String, Long> trustedChains = Collections.synchronizedMap(new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_TRUSTED_CHAINS;
+        }
+    });
 
+    private final Object askUserLock = new Object();
 
-    private final List<X509TrustManager> caTrustManagers = new ArrayList<>();
+    private final TrustPrompt prompt;
 
     public static void main(String[] args) {
         new VariableX509TrustManager();
@@ -102,37 +128,50 @@ public final class VariableX509TrustManager {
      * Constructor initializes the system, user and custom stores
      */
     public VariableX509TrustManager() {
-        try {
-            loadManagers(KeyStores.getCertKeyStores(), certTrustManagers);
-        } catch (Exception e) {
-            LOG.error("Exception while loading CertKeyStores", e);
-        }
+        this(VariableX509TrustManager::askUser);
+    }
 
-        try {
-            loadManagers(KeyStores.getCAKeyStores(), caTrustManagers);
-        } catch (Exception e) {
-            LOG.error("Exception while loading CaKeyStores", e);
+    /**
+     * @param prompt asks the user whether to trust a chain
+     */
+    VariableX509TrustManager(final TrustPrompt prompt) {
+        this.prompt = prompt;
+        managers = new TrustManagers(KeyStores.getKeyStoresStamp());
+    }
+
+    /**
+     * Returns the trust managers of the current key stores. The trust managers are loaded again if any key store
+     * changed since they were loaded, which also forgets the trusted chains.
+     */
+    private TrustManagers getManagers() {
+        final TrustManagers current = managers;
+        final String stamp = AccessController.doPrivileged((PrivilegedAction<String>) KeyStores::getKeyStoresStamp);
+        if (current.stamp.equals(stamp)) {
+            return current;
         }
 
-        try {
-            loadManagers(KeyStores.getClientKeyStores(), clientTrustManagers);
-        } catch (Exception e) {
-            LOG.error("Exception while loading ClientKeyStores", e);
+        synchronized (this) {
+            if (!managers.stamp.equals(stamp)) {
+                LOG.debug("Key stores changed, loading the trust managers again");
+                managers = AccessController.doPrivileged((PrivilegedAction<TrustManagers>) () -> new TrustManagers(stamp));
+                trustedChains.clear();
+            }
+            return managers;
         }
     }
 
-    private void loadManagers(final List<KeyStore> keyStores, final List<X509TrustManager> managers) {
+    private static void loadManagers(final List<KeyStore> keyStores, final List<X509TrustManager> managers) {
         Objects.requireNonNull(keyStores);
         Objects.requireNonNull(managers);
 
         keyStores.stream()
-                .map(this::getTrustManagerFactory)
+                .map(VariableX509TrustManager::getTrustManagerFactory)
                 .flatMap(trustManagerFactory -> Arrays.stream(trustManagerFactory.getTrustManagers()))
                 .filter(trustManager -> trustManager instanceof X509TrustManager)
                 .forEach(trustManager -> managers.add((X509TrustManager) trustManager));
     }
 
-    private TrustManagerFactory getTrustManagerFactory(final KeyStore keyStore) {
+    private static TrustManagerFactory getTrustManagerFactory(final KeyStore keyStore) {
         try {
             final TrustManagerFactory tmFactory = TrustManagerFactory.getInstance(PKIX, SUN_JSSE);
             tmFactory.init(keyStore);
@@ -155,7 +194,7 @@ public final class VariableX509TrustManager {
             throws CertificateException {
 
         final List<ValidatorException> savedException = new ArrayList<>();
-        for (X509TrustManager clientTrustManager : clientTrustManagers) {
+        for (X509TrustManager clientTrustManager : getManagers().clientTrustManagers) {
             if (isNullOrEmpty(clientTrustManager.getAcceptedIssuers())) {
                 continue;
             }
@@ -180,6 +219,9 @@ public final class VariableX509TrustManager {
      * First, existing stores are checked to see if the certificate is trusted.
      * Next, if the certificate is not explicitly trusted by the user, a host
      * name check is performed. The user is them prompted as needed.
+     * <p>
+     * A chain which was trusted for a host before is trusted again without any check,
+     * as long as the key stores did not change and its certificate did not expire.
      *
      * @param chain    The cert chain
      * @param authType The auth type algorithm
@@ -188,16 +230,34 @@ public final class VariableX509TrustManager {
      * @param engine   The SSLEngine in use (may be null)
      * @throws java.security.cert.CertificateException if certificate is wrong
      */
-    public synchronized void checkTrustServer(X509Certificate[] chain,
-                                              String authType, String hostName,
-                                              SSLSocket socket, SSLEngine engine) throws CertificateException {
+    public void checkTrustServer(X509Certificate[] chain,
+                                 String authType, String hostName,
+                                 SSLSocket socket, SSLEngine engine) throws CertificateException {
+        final TrustManagers current = getManagers();
+        final String chainKey = getChainKey(chain, authType, hostName);
+        if (isTrustedChain(chainKey)) {
+            return;
+        }
+
+        checkTrustServer(current, chain, authType, hostName, socket, engine);
+
+        // the key stores may have changed meanwhile, the decision is then forgotten together with all others
+        if (managers == current) {
+            trustedChains.put(chainKey, chain[0].getNotAfter().getTime());
+        }
+    }
+
+    private void checkTrustServer(TrustManagers current, X509Certificate[] chain,
+                                  String authType, String hostName,
+                                  SSLSocket socket, SSLEngine engine) throws CertificateException {
         CertificateException ce = null;
         boolean trusted = true;
         boolean CNMatched = false;
+        final boolean wasTemporarilyTrusted = temporarilyTrusted.contains(chain[0]);
 
         // Check trust stores
         try {
-            checkAllManagers(chain, authType, socket, engine);
+            checkAllManagers(current, chain, authType, socket, engine);
         } catch (CertificateException e) {
             trusted = false;
             ce = e;
@@ -205,7 +265,7 @@ public final class VariableX509TrustManager {
 
         // If the certificate is not explicitly trusted, we
         // check host match
-        if (!isExplicitlyTrusted(chain, authType)) {
+        if (!isExplicitlyTrusted(current, chain, authType)) {
             if (hostName != null) {
                 try {
                     HostnameChecker checker = HostnameChecker
@@ -226,14 +286,20 @@ public final class VariableX509TrustManager {
         // If it is (not explicitly trusted) AND
         // ((it is not in store) OR (there is a host mismatch))
         if (!trusted || !CNMatched) {
-            if (!isTemporarilyUntrusted(chain[0])) {
-                boolean b = askUser(chain, trusted, CNMatched, hostName);
-
-                if (b) {
-                    temporarilyTrust(chain[0]);
+            synchronized (askUserLock) {
+                if (!wasTemporarilyTrusted && temporarilyTrusted.contains(chain[0])) {
+                    // the user trusted the certificate for another connection meanwhile
                     return;
-                } else {
-                    temporarilyUntrust(chain[0]);
+                }
+                if (!isTemporarilyUntrusted(chain[0])) {
+                    boolean b = prompt.askUser(chain, trusted, CNMatched, hostName);
+
+                    if (b) {
+                        temporarilyTrust(chain[0]);
+                        return;
+                    } else {
+                        temporarilyUntrust(chain[0]);
+                    }
                 }
             }
 
@@ -260,11 +326,11 @@ public final class VariableX509TrustManager {
      * @param socket   the SSLSocket being used for the connection
      * @param engine   the SSLEngine being used for the connection
      */
-    private void checkAllManagers(X509Certificate[] chain, String authType, Socket socket, SSLEngine engine) throws CertificateException {
+    private void checkAllManagers(TrustManagers current, X509Certificate[] chain, String authType, Socket socket, SSLEngine engine) throws CertificateException {
 
         // first try CA TrustManagers
         final List<ValidatorException> savedException = new ArrayList<>();
-        for (X509TrustManager caTrustManager : caTrustManagers) {
+        for (X509TrustManager caTrustManager : current.caTrustManagers) {
             if (isNullOrEmpty(caTrustManager.getAcceptedIssuers())) {
                 continue;
             }
@@ -291,7 +357,7 @@ public final class VariableX509TrustManager {
             }
         }
 
-        for (X509TrustManager certTrustManager : certTrustManagers) {
+        for (X509TrustManager certTrustManager : current.certTrustManagers) {
             if (isNullOrEmpty(certTrustManager.getAcceptedIssuers())) {
                 continue;
             }
@@ -318,10 +384,10 @@ public final class VariableX509TrustManager {
     /**
      * Return if the user explicitly trusted this i.e. in userTrustManager or temporarilyTrusted
      */
-    private boolean isExplicitlyTrusted(X509Certificate[] chain, String authType) {
+    private boolean isExplicitlyTrusted(TrustManagers current, X509Certificate[] chain, String authType) {
         boolean explicitlyTrusted = false;
 
-        for (X509TrustManager certTrustManager : certTrustManagers) {
+        for (X509TrustManager certTrustManager : current.certTrustManagers) {
             if (isNullOrEmpty(certTrustManager.getAcceptedIssuers())) {
                 continue;
             }
@@ -345,7 +411,7 @@ public final class VariableX509TrustManager {
     protected X509Certificate[] getAcceptedIssuers() {
         List<X509Certificate> issuers = new ArrayList<>();
 
-        for (X509TrustManager caTrustManager : caTrustManagers) {
+        for (X509TrustManager caTrustManager : getManagers().caTrustManagers) {
             if (isNullOrEmpty(caTrustManager.getAcceptedIssuers())) {
                 continue;
             }
@@ -355,6 +421,22 @@ public final class VariableX509TrustManager {
         return issuers.toArray(new X509Certificate[0]);
     }
 
+    /**
+     * @return true if the chain was trusted for the host and its certificate did not expire since
+     */
+    private boolean isTrustedChain(final String chainKey) {
+        final Long notAfter = trustedChains.get(chainKey);
+        return notAfter != null && System.currentTimeMillis() < notAfter;
+    }
+
+    private static String getChainKey(final X509Certificate[] chain, final String authType, final String hostName) throws CertificateException {
+        final MessageDigest digest = DigestUtils.newSha256();
+        for (X509Certificate certificate : chain) {
+            digest.update(certificate.getEncoded());
+        }
+        return Base64.getEncoder().encodeToString(digest.digest()) + "|" + authType + "|" + hostName;
+    }
+
     /**
      * Temporarily untrust the given cert - do not ask the user to trust this
      * certificate again
@@ -391,9 +473,9 @@ public final class VariableX509TrustManager {
      * @param chain The certificate chain
      * @return user's response
      */
-    private boolean askUser(final X509Certificate[] chain,
-                            final boolean isTrusted, final boolean hostMatched,
-                            final String hostName) {
+    private static boolean askUser(final X509Certificate[] chain,
+                                   final boolean isTrusted, final boolean hostMatched,
+                                   final String hostName) {
         return AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
             @Override
             public Boolean run() {
@@ -417,10 +499,50 @@ public final class VariableX509TrustManager {
      *
      * @return The instance
      */
-    public static VariableX509TrustManager getInstance() {
+    public static synchronized VariableX509TrustManager getInstance() {
         if (instance == null)
             instance = new VariableX509TrustManager();
 
         return instance;
     }
+
+    /**
+     * Asks the user whether a chain which is not trusted by the key stores or does not match the host is trusted.
+     */
+    interface TrustPrompt {
+        boolean askUser(X509Certificate[] chain, boolean isTrusted, boolean hostMatched, String hostName);
+    }
+
+    /**
+     * The trust managers of the system, user and custom stores at one point in time.
+     */
+    private static class TrustManagers {
+        private final String stamp;
+        private final List<X509TrustManager> certTrustManagers = new ArrayList<>();
+        private final List<X509TrustManager> caTrustManagers = new ArrayList<>();
+        private final List<X509TrustManager> clientTrustManagers = new ArrayList<>();
+
+        private TrustManagers(final String stamp) {
+            this.stamp = stamp;
+            KeyStores.loadKeyStores();
+
+            try {
+                loadManagers(KeyStores.getCertKeyStores(), certTrustManagers);
+            } catch (Exception e) {
+                LOG.error("Exception while loading CertKeyStores", e);
+            }
+
+            try {
+                loadManagers(KeyStores.getCAKeyStores(), caTrustManagers);
+            } catch (Exception e) {
+                LOG.error("Exception while loading CaKeyStores", e);
+            }
+
+            try {
+                loadManagers(KeyStores.getClientKeyStores(), clientTrustManagers);
+            } catch (Exception e) {
+                LOG.error("Exception while loading ClientKeyStores", e);
+            }
+        }
+    }
 }
@@ -28,7 +28,9 @@ package net.sourceforge.jnlp.tools;
 import net.adoptopenjdk.icedteaweb.jnlp.element.resource.JARDesc;
 import net.adoptopenjdk.icedteaweb.logging.Logger;
 import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
+import net.adoptopenjdk.icedteaweb.resources.CachedDaemonThreadPoolProvider;
 import net.adoptopenjdk.icedteaweb.resources.ResourceTracker;
+import net.adoptopenjdk.icedteaweb.resources.cache.Cache;
 import net.sourceforge.jnlp.JNLPFile;
 import net.sourceforge.jnlp.LaunchException;
 import net.sourceforge.jnlp.runtime.classloader.SecurityDelegate;
@@ -37,6 +39,7 @@ import net.sourceforge.jnlp.security.CertVerifier;
 import net.sourceforge.jnlp.security.CertificateUtils;
 import net.sourceforge.jnlp.security.KeyStores;
 import net.sourceforge.jnlp.util.JarFile;
+import net.sourceforge.jnlp.util.JarFilePool;
 import sun.security.util.DerInputStream;
 import sun.security.util.DerValue;
 import sun.security.x509.NetscapeCertTypeExtension;
@@ -44,8 +47,11 @@ import sun.security.x509.NetscapeCertTypeExtension;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.AccessControlContext;
+import java.security.AccessController;
 import java.security.CodeSigner;
 import java.security.KeyStore;
+import java.security.PrivilegedAction;
 import java.security.cert.CertPath;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
@@ -58,6 +64,10 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.regex.Pattern;
 
@@ -77,6 +87,12 @@ public class JarCertVerifier implements CertVerifier {
     private static final String META_INF = "META-INF/";
     private static final Pattern SIG = Pattern.compile(".*" + META_INF + "SIG-.*");
 
+    /**
+     * Threads reading jars, see {@link #readJars(List, VerificationResultCache)}. Shared by all verifiers
+     * so the number of threads stays bounded when several applications or classloaders verify jars at the same time.
+     */
+    private static final ExecutorService EXECUTOR = CachedDaemonThreadPoolProvider.createSharedThreadPool(Runtime.getRuntime().availableProcessors());
+
     enum VerifyResult {
         UNSIGNED, SIGNED_OK, SIGNED_NOT_OK
     }
@@ -106,6 +122,11 @@ public class JarCertVerifier implements CertVerifier {
      */
     private final AppVerifier appVerifier;
 
+    /**
+     * The results of earlier verifications, {@code null} to use the cache of the user
+     */
+    private final VerificationResultCache resultCache;
+
     /**
      * Temporary cert path hack to be used to keep track of which one a UI dialog is using
      */
@@ -117,7 +138,16 @@ public class JarCertVerifier implements CertVerifier {
      * @param verifier The application verifier to be used by the new instance.
      */
     public JarCertVerifier(AppVerifier verifier) {
-        appVerifier = verifier;
+        this(verifier, null);
+    }
+
+    /**
+     * @param verifier    The application verifier to be used by the new instance.
+     * @param resultCache The results of earlier verifications, {@code null} to use the cache of the user.
+     */
+    JarCertVerifier(AppVerifier verifier, VerificationResultCache resultCache) {
+        this.appVerifier = verifier;
+        this.resultCache = resultCache;
     }
 
     /**
@@ -224,13 +254,17 @@ public class JarCertVerifier implements CertVerifier {
 
     /**
      * Verify the jars provided and update the state of this instance to match the new information.
+     * <p>
+     * The jars are read and their signatures checked concurrently, unless the result of an earlier verification
+     * of the same content is known. The results are then merged into this instance in the order of the jars,
+     * so the outcome does not depend on which jar was read first.
      *
      * @param jars    List of new jars to be verified.
      * @param tracker Resource tracker used to obtain the the jars from cache
      * @throws Exception Caused by issues with obtaining the jars' entries or interacting with the tracker.
      */
     private void verifyJars(final List<JARDesc> jars, final ResourceTracker tracker) throws Exception {
-
+        final List<String> jarPaths = new ArrayList<>();
         for (JARDesc jar : jars) {
             final File jarFile = tracker.getCacheFile(jar.getLocation());
 
@@ -241,17 +275,21 @@ public class JarCertVerifier implements CertVerifier {
             }
 
             final String jarPath = jarFile.getCanonicalFile().getAbsolutePath();
-            if (verifiedJars.contains(jarPath) || unverifiedJars.contains(jarPath)) {
+            if (verifiedJars.contains(jarPath) || unverifiedJars.contains(jarPath) || jarPaths.contains(jarPath)) {
                 continue;
             }
+            jarPaths.add(jarPath);
+        }
 
-            final VerifyResult result = verifyJar(jarPath);
+        final VerificationResultCache results = resultCache != null ? resultCache : VerificationResultCache.getInstance();
+        for (ReadJar readJar : readJars(jarPaths, results)) {
+            final VerifyResult result = verifyJar(readJar);
             if (result == VerifyResult.UNSIGNED) {
-                unverifiedJars.add(jarPath);
+                unverifiedJars.add(readJar.jarPath);
             } else if (result == VerifyResult.SIGNED_NOT_OK) {
-                verifiedJars.add(jarPath);
+                verifiedJars.add(readJar.jarPath);
             } else if (result == VerifyResult.SIGNED_OK) {
-                verifiedJars.add(jarPath);
+                verifiedJars.add(readJar.jarPath);
             }
         }
 
@@ -261,13 +299,65 @@ public class JarCertVerifier implements CertVerifier {
     }
 
     /**
-     * Checks through all the jar entries of jarName for signers, storing all the common ones in the certs hash map.
+     * Reads the jars on a bounded pool of threads. Returns when all jars are read, in the order of the paths.
+     */
+    private static List<ReadJar> readJars(final List<String> jarPaths, final VerificationResultCache results) {
+        if (jarPaths.size() <= 1) {
+            final List<ReadJar> result = new ArrayList<>();
+            for (String jarPath : jarPaths) {
+                result.add(readJar(jarPath, results));
+            }
+            return result;
+        }
+
+        // the threads of the pool may have been created by the application
+        final AccessControlContext context = AccessController.getContext();
+        final List<Callable<ReadJar>> tasks = new ArrayList<>();
+        for (String jarPath : jarPaths) {
+            tasks.add(() -> AccessController.doPrivileged((PrivilegedAction<ReadJar>) () -> readJar(jarPath, results), context));
+        }
+
+        try {
+            final List<ReadJar> result = new ArrayList<>();
+            for (Future<ReadJar> future : EXECUTOR.invokeAll(tasks)) {
+                result.add(future.get());
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while verifying jars", e);
+        } catch (ExecutionException e) {
+            // readJar catches all failures
+            throw new IllegalStateException("Failed to verify jars", e.getCause());
+        }
+    }
+
+    /**
+     * Reads all the entries of a jar to check their digests and find their signers, unless the signers
+     * are known from an earlier verification of the same content.
+     * Does not change the state of the verifier, so several jars can be read at the same time.
      *
      * @param jarPath The absolute path to the jar file.
-     * @return The return of {@link JarCertVerifier#verifyJarEntryCerts} using the entries found in the jar located at jarName.
+     * @param results The results of earlier verifications.
+     * @return the signers of the entries of the jar, or the failure to read them
      */
-    private VerifyResult verifyJar(final String jarPath) {
-        try (final JarFile jarFile = new JarFile(jarPath, true)) {
+    private static ReadJar readJar(final String jarPath, final VerificationResultCache results) {
+        final ReadJar readJar = new ReadJar(jarPath);
+        final File file = new File(jarPath);
+        String digest = null;
+        try {
+            digest = Cache.getDigest(file);
+            readJar.counts = results.load(file, digest);
+            if (readJar.counts != null) {
+                LOG.debug("Reusing the verification result of {}", jarPath);
+                return readJar;
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("No verification result for {} - {}", jarPath, e.getMessage());
+        }
+
+        try (final JarFilePool.Lease lease = JarFilePool.getInstance().acquire(file)) {
+            final JarFile jarFile = lease.getJarFile();
             final List<JarEntry> entries = new ArrayList<>();
             final byte[] buffer = new byte[8192];
 
@@ -284,10 +374,33 @@ public class JarCertVerifier implements CertVerifier {
                     }
                 }
             }
-            return verifyJarEntryCerts(jarPath, jarFile.getManifest() != null, entries);
+            readJar.counts = JarSignerCounts.count(jarFile.getManifest() != null, entries);
+        } catch (Exception e) {
+            readJar.failure = e;
+            return readJar;
+        }
+
+        if (digest != null) {
+            results.store(file, digest, readJar.counts);
+        }
+        return readJar;
+    }
+
+    /**
+     * Checks through all the jar entries of the read jar for signers, storing all the common ones in the certs hash map.
+     *
+     * @param readJar The signers of the entries of the jar.
+     * @return The return of {@link JarCertVerifier#verifyJarSigners} using the signers found in the jar.
+     */
+    private VerifyResult verifyJar(final ReadJar readJar) {
+        try {
+            if (readJar.failure != null) {
+                throw readJar.failure;
+            }
+            return verifyJarSigners(readJar.jarPath, readJar.counts);
         } catch (Exception e) {
-            LOG.error("Error in verify jar " + jarPath, e);
-            throw new RuntimeException("Error in verify jar " + jarPath, e);
+            LOG.error("Error in verify jar " + readJar.jarPath, e);
+            throw new RuntimeException("Error in verify jar " + readJar.jarPath, e);
         }
     }
 
@@ -301,31 +414,23 @@ public class JarCertVerifier implements CertVerifier {
      * @throws RuntimeException Will be thrown if there are issues with entries.
      */
     VerifyResult verifyJarEntryCerts(final String jarPath, final boolean jarHasManifest, final List<JarEntry> entries) {
+        return verifyJarSigners(jarPath, JarSignerCounts.count(jarHasManifest, entries));
+    }
+
+    /**
+     * Checks the signers of a jar, storing all the common ones in the certs hash map.
+     *
+     * @param jarPath The absolute path to the jar file.
+     * @param counts  The number of signable entries of the jar and of the entries signed by each signer.
+     * @return the result as described by {@link #verifyJarEntryCerts}.
+     */
+    private VerifyResult verifyJarSigners(final String jarPath, final JarSignerCounts counts) {
         // Contains number of entries the cert with this CertPath has signed.
-        final Map<CertPath, Integer> jarSignCount = new HashMap<>();
-        int numSignableEntriesInJar = 0;
+        final Map<CertPath, Integer> jarSignCount = counts.getSignedEntries();
+        final int numSignableEntriesInJar = counts.getSignableEntries();
 
         // Record current time just before checking the jar begins.
         final ZonedDateTime now = ZonedDateTime.now();
-        if (jarHasManifest) {
-            for (JarEntry je : entries) {
-                final boolean shouldHaveSignature = !je.isDirectory() && !isMetaInfFile(je.getName());
-                if (shouldHaveSignature) {
-                    numSignableEntriesInJar++;
-                    final CodeSigner[] signers = je.getCodeSigners();
-                    if (signers != null) {
-                        for (final CodeSigner signer : signers) {
-                            final CertPath certPath = signer.getSignerCertPath();
-                            jarSignCount.putIfAbsent(certPath, 0);
-                            jarSignCount.computeIfPresent(certPath, (cp, count) -> count + 1);
-                        }
-                    }
-                }
-            }
-        } else {
-            // set to 1 so that unsigned jars with no manifests can't sneak in
-            numSignableEntriesInJar = 1;
-        }
 
         jarSignableEntries.put(jarPath, numSignableEntriesInJar);
 
@@ -560,4 +665,14 @@ public class JarCertVerifier implements CertVerifier {
                 .mapToInt(Integer::intValue)
                 .sum();
     }
+
+    private static class ReadJar {
+        private final String jarPath;
+        private JarSignerCounts counts;
+        private Exception failure;
+
+        private ReadJar(final String jarPath) {
+            this.jarPath = jarPath;
+        }
+    }
 }
@@ -0,0 +1,73 @@
+package net.sourceforge.jnlp.tools;
+
+import java.security.CodeSigner;
+import java.security.cert.CertPath;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+
+import static net.sourceforge.jnlp.tools.JarCertVerifier.isMetaInfFile;
+
+/**
+ * The outcome of reading the entries of a jar: the number of entries which should be signed
+ * and the number of these entries signed by each signer.
+ * <p>
+ * This is everything {@link JarCertVerifier} needs to know about the entries of a jar, so it is what
+ * {@link VerificationResultCache} keeps between runs.
+ */
+final class JarSignerCounts {
+
+    private final int signableEntries;
+    private final Map<CertPath, Integer> signedEntries;
+
+    JarSignerCounts(final int signableEntries, final Map<CertPath, Integer> signedEntries) {
+        this.signableEntries = signableEntries;
+        this.signedEntries = Collections.unmodifiableMap(new LinkedHashMap<>(signedEntries));
+    }
+
+    /**
+     * Counts the signers of the entries of a jar.
+     *
+     * @param jarHasManifest Whether or not the associated jar has a manifest.
+     * @param entries        The list of entries in the associated jar, read completely so their signers are known.
+     * @return the counts
+     */
+    static JarSignerCounts count(final boolean jarHasManifest, final List<JarEntry> entries) {
+        if (!jarHasManifest) {
+            // set to 1 so that unsigned jars with no manifests can't sneak in
+            return new JarSignerCounts(1, Collections.emptyMap());
+        }
+
+        final Map<CertPath, Integer> jarSignCount = new LinkedHashMap<>();
+        int numSignableEntriesInJar = 0;
+        for (JarEntry je : entries) {
+            final boolean shouldHaveSignature = !je.isDirectory() && !isMetaInfFile(je.getName());
+            if (shouldHaveSignature) {
+                numSignableEntriesInJar++;
+                final CodeSigner[] signers = je.getCodeSigners();
+                if (signers != null) {
+                    for (final CodeSigner signer : signers) {
+                        jarSignCount.merge(signer.getSignerCertPath(), 1, Integer::sum);
+                    }
+                }
+            }
+        }
+        return new JarSignerCounts(numSignableEntriesInJar, jarSignCount);
+    }
+
+    /**
+     * @return the number of entries which should be signed, all entries besides directories and signature files
+     */
+    int getSignableEntries() {
+        return signableEntries;
+    }
+
+    /**
+     * @return the number of signable entries signed by each signer
+     */
+    Map<CertPath, Integer> getSignedEntries() {
+        return signedEntries;
+    }
+}
@@ -0,0 +1,354 @@
+package net.sourceforge.jnlp.tools;
+
+import net.adoptopenjdk.icedteaweb.logging.Logger;
+import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
+import net.adoptopenjdk.icedteaweb.resources.CachedDaemonThreadPoolProvider;
+import net.adoptopenjdk.icedteaweb.resources.cache.Cache;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+
+/**
+ * Checks the signatures of a jar while it is downloaded, so {@link JarCertVerifier} need not read the jar again
+ * once it is in the cache.
+ * <p>
+ * The downloaded bytes are handed to another thread which reads the entries with a verifying {@link JarInputStream}.
+ * When the download is complete the signers of the entries are stored in the {@link VerificationResultCache},
+ * where {@link JarCertVerifier} finds them. Whether the signers are trusted is still decided by {@link JarCertVerifier}.
+ * <p>
+ * A jar read as a stream is verified like a jar read as a file only if the signature files come before the other
+ * entries, as written by jarsigner, and if the entries of the stream are the entries of the central directory.
+ * Nothing is stored for other jars, they are read again by {@link JarCertVerifier}. The same happens if the
+ * verification cannot keep up with the download, as the download never waits for the verification, and if all
+ * threads verifying downloads are busy, as a thread stays with a download until it is complete.
+ */
+public final class JarStreamVerifier {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JarStreamVerifier.class);
+
+    private static final String META_INF = "META-INF/";
+    private static final String MANIFEST = META_INF + "MANIFEST.MF";
+    private static final String INDEX_LIST = META_INF + "INDEX.LIST";
+
+    /**
+     * The number of downloaded bytes which may wait for the verification before it is abandoned.
+     */
+    private static final long MAX_PENDING_BYTES = 4 * 1024 * 1024;
+
+    private static final byte[] END = new byte[0];
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    private static final ExecutorService EXECUTOR = CachedDaemonThreadPoolProvider.createSharedThreadPool(THREADS);
+
+    /**
+     * One permit per thread, so a verification never waits in the queue of the pool behind slow downloads.
+     */
+    private static final Semaphore IDLE_THREADS = new Semaphore(THREADS);
+
+    private final VerificationResultCache resultCache;
+
+    private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean abandoned = false;
+    private boolean ended = false;
+    private Future<StreamedJar> result;
+
+    public JarStreamVerifier() {
+        this(null);
+    }
+
+    /**
+     * @param resultCache the cache the result is stored in, {@code null} to use the cache of the user
+     */
+    JarStreamVerifier(final VerificationResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Starts the verification of the content of a stream. All bytes read from the returned stream are verified.
+     *
+     * @param content the content of the jar
+     * @return the stream to read the content from
+     */
+    public InputStream verifyWhileReading(final InputStream content) {
+        if (result != null) {
+            throw new IllegalStateException("The verification has already been started");
+        }
+        if (!IDLE_THREADS.tryAcquire()) {
+            LOG.debug("All threads verifying downloads are busy");
+            abandoned = true;
+            return content;
+        }
+        result = EXECUTOR.submit(() -> started.compareAndSet(false, true) ? readAllEntriesAndRelease() : null);
+
+        return new FilterInputStream(content) {
+            @Override
+            public int read() throws IOException {
+                final int b = in.read();
+                if (b < 0) {
+                    end();
+                } else {
+                    feed(new byte[]{(byte) b});
+                }
+                return b;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                final int n = in.read(b, off, len);
+                if (n < 0) {
+                    end();
+                } else if (n > 0) {
+                    feed(Arrays.copyOfRange(b, off, off + n));
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(final long n) throws IOException {
+                // skipped bytes cannot be verified
+                abandon();
+                return in.skip(n);
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Finishes the verification once the whole jar has been read and written to a file. The signers of the entries
+     * are stored if the verification of the stream is the same as the verification of the file.
+     *
+     * @param jar the file with the content of the jar
+     */
+    public void complete(final File jar) {
+        end();
+        if (result == null) {
+            return;
+        }
+        if (abandoned) {
+            LOG.debug("Abandoned the verification of {} while downloading", jar);
+            return;
+        }
+
+        final StreamedJar streamed;
+        try {
+            if (started.compareAndSet(false, true)) {
+                // the verification did not start yet, the whole jar is pending and is verified right here
+                result.cancel(false);
+                streamed = readAllEntriesAndRelease();
+            } else {
+                streamed = result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            LOG.debug("Could not verify {} while downloading - {}", jar, e.getCause().getMessage());
+            return;
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Could not verify {} while downloading - {}", jar, e.getMessage());
+            return;
+        }
+        if (abandoned) {
+            LOG.debug("Abandoned the verification of {} while downloading", jar);
+            return;
+        }
+
+        if (!streamed.signatureFilesFirst) {
+            LOG.debug("Could not verify {} while downloading as its signature files do not come first", jar);
+            return;
+        }
+
+        try (final JarFile jarFile = new JarFile(jar, false)) {
+            if ((jarFile.getManifest() != null) != streamed.hasManifest || !entryNames(jarFile).equals(streamed.entryNames)) {
+                LOG.debug("Could not verify {} while downloading as its entries do not match its central directory", jar);
+                return;
+            }
+            final VerificationResultCache results = resultCache != null ? resultCache : VerificationResultCache.getInstance();
+            results.store(jar, Cache.getDigest(jar), JarSignerCounts.count(streamed.hasManifest, streamed.entries));
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Could not store the verification result of {} - {}", jar, e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the verification. Does nothing if the verification is already complete.
+     */
+    public void abandon() {
+        abandoned = true;
+        chunks.clear();
+        chunks.add(END);
+    }
+
+    private void feed(final byte[] chunk) {
+        if (abandoned) {
+            return;
+        }
+        if (pendingBytes.addAndGet(chunk.length) > MAX_PENDING_BYTES) {
+            LOG.debug("The verification cannot keep up with the download");
+            abandon();
+            return;
+        }
+        chunks.add(chunk);
+    }
+
+    private void end() {
+        if (!ended) {
+            ended = true;
+            chunks.add(END);
+        }
+    }
+
+    private StreamedJar readAllEntriesAndRelease() throws IOException {
+        try {
+            return readAllEntries();
+        } finally {
+            IDLE_THREADS.release();
+        }
+    }
+
+    private StreamedJar readAllEntries() throws IOException {
+        try {
+            return readEntries();
+        } catch (IOException | RuntimeException e) {
+            // the rest of the download need not be kept for the verification
+            abandon();
+            throw e;
+        }
+    }
+
+    private StreamedJar readEntries() throws IOException {
+        final InputStream chunkStream = new ChunkInputStream();
+        final StreamedJar streamed = new StreamedJar();
+        final byte[] buffer = new byte[8192];
+
+        try (final JarInputStream jarStream = new JarInputStream(chunkStream, true)) {
+            streamed.hasManifest = jarStream.getManifest() != null;
+
+            boolean contentSeen = false;
+            JarEntry entry;
+            while ((entry = jarStream.getNextJarEntry()) != null) {
+                while (jarStream.read(buffer) >= 0) {
+                    // the signers of an entry are known once it is read completely
+                }
+                streamed.entries.add(entry);
+                streamed.entryNames.add(entry.getName());
+
+                final String name = entry.getName().toUpperCase(Locale.ENGLISH);
+                if (isSignatureFile(name)) {
+                    // a verifying stream ignores signature files after other entries
+                    streamed.signatureFilesFirst &= !contentSeen;
+                } else if (!name.startsWith(META_INF) || !(entry.isDirectory() || name.equals(INDEX_LIST))) {
+                    contentSeen = true;
+                }
+            }
+
+            // read the central directory as well, so it does not count as pending
+            while (chunkStream.read(buffer) >= 0) {
+                // nothing to do
+            }
+        }
+
+        streamed.entryNames.removeIf(JarStreamVerifier::isManifestOrMetaInf);
+        Collections.sort(streamed.entryNames);
+        return streamed;
+    }
+
+    private static List<String> entryNames(final JarFile jarFile) {
+        final List<String> names = new ArrayList<>();
+        final Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            names.add(entries.nextElement().getName());
+        }
+        names.removeIf(JarStreamVerifier::isManifestOrMetaInf);
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * A verifying stream reads the manifest and the directory in front of it before the other entries.
+     */
+    private static boolean isManifestOrMetaInf(final String name) {
+        final String upperCaseName = name.toUpperCase(Locale.ENGLISH);
+        return upperCaseName.equals(META_INF) || upperCaseName.equals(MANIFEST);
+    }
+
+    private static boolean isSignatureFile(final String upperCaseName) {
+        return upperCaseName.startsWith(META_INF) && (upperCaseName.endsWith(".SF")
+                || upperCaseName.endsWith(".DSA") || upperCaseName.endsWith(".RSA") || upperCaseName.endsWith(".EC"));
+    }
+
+    /**
+     * The downloaded bytes in the order they were read.
+     */
+    private class ChunkInputStream extends InputStream {
+        private byte[] chunk = null;
+        private int position = 0;
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (chunk == END) {
+                return -1;
+            }
+            if (chunk == null || position == chunk.length) {
+                try {
+                    chunk = chunks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while verifying a jar");
+                }
+                if (chunk == END) {
+                    return -1;
+                }
+                pendingBytes.addAndGet(-chunk.length);
+                position = 0;
+            }
+            final int n = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+
+    private static class StreamedJar {
+        private boolean hasManifest;
+        private boolean signatureFilesFirst = true;
+        private final List<JarEntry> entries = new ArrayList<>();
+        private final List<String> entryNames = new ArrayList<>();
+    }
+}
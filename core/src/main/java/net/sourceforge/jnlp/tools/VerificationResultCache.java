@@ -0,0 +1,166 @@
+package net.sourceforge.jnlp.tools;
+
+import net.adoptopenjdk.icedteaweb.JavaSystemProperties;
+import net.adoptopenjdk.icedteaweb.logging.Logger;
+import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
+import net.adoptopenjdk.icedteaweb.resources.cache.Cache;
+import net.sourceforge.jnlp.cache.CacheUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Security;
+import java.security.cert.CertPath;
+import java.security.cert.CertificateFactory;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Persistent cache of the signers of the entries of jars, so jars which did not change since an earlier run
+ * need not be read and verified again.
+ * <p>
+ * The result of a jar is stored under the digest of its content, together with the length and modification time
+ * of the file and a fingerprint of the configuration of the signature checks of the JVM. A result is only used
+ * if all of them still match. Only the outcome of the signature checks is cached, whether the signers are
+ * trusted is decided by {@link JarCertVerifier} on each run, so changes to the key stores take effect immediately.
+ */
+final class VerificationResultCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VerificationResultCache.class);
+
+    private static final String CONFIGURATION = "configuration";
+    private static final String LENGTH = "length";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String SIGNABLE_ENTRIES = "signable";
+    private static final String SIGNER_PREFIX = "signer.";
+    private static final String SIGNED_ENTRIES_SUFFIX = ".entries";
+    private static final String CERT_PATH_ENCODING = "PkiPath";
+
+    private static class InstanceHolder {
+        private static final VerificationResultCache INSTANCE = new VerificationResultCache(Cache.getVerificationResultsDir());
+    }
+
+    static VerificationResultCache getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    private final File directory;
+    private final String configuration;
+
+    VerificationResultCache(final File directory) {
+        this.directory = directory;
+        this.configuration = getConfigurationFingerprint();
+    }
+
+    /**
+     * Returns the stored result of a jar.
+     *
+     * @param jar    the jar
+     * @param digest the digest of the content of the jar
+     * @return the signers of the entries of the jar or {@code null} if no valid result is stored
+     */
+    JarSignerCounts load(final File jar, final String digest) {
+        final File resultFile = getResultFile(digest);
+        if (!resultFile.isFile()) {
+            return null;
+        }
+
+        final Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(resultFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            LOG.debug("Failed to read the verification result {} - {}", resultFile, e.getMessage());
+            return null;
+        }
+
+        if (!configuration.equals(properties.getProperty(CONFIGURATION))
+                || !Long.toString(jar.length()).equals(properties.getProperty(LENGTH))
+                || !Long.toString(jar.lastModified()).equals(properties.getProperty(LAST_MODIFIED))) {
+            return null;
+        }
+
+        try {
+            final CertificateFactory factory = CertificateFactory.getInstance("X.509");
+            final Map<CertPath, Integer> signedEntries = new LinkedHashMap<>();
+            for (int number = 0; properties.containsKey(SIGNER_PREFIX + number); number++) {
+                final byte[] encoded = Base64.getDecoder().decode(properties.getProperty(SIGNER_PREFIX + number));
+                final CertPath certPath = factory.generateCertPath(new ByteArrayInputStream(encoded), CERT_PATH_ENCODING);
+                signedEntries.put(certPath, Integer.parseInt(properties.getProperty(SIGNER_PREFIX + number + SIGNED_ENTRIES_SUFFIX)));
+            }
+            final JarSignerCounts result = new JarSignerCounts(Integer.parseInt(properties.getProperty(SIGNABLE_ENTRIES)), signedEntries);
+
+            // the sweep of the cache removes results which were not used for a while
+            if (!resultFile.setLastModified(System.currentTimeMillis())) {
+                LOG.debug("Failed to update the modification time of {}", resultFile);
+            }
+            return result;
+        } catch (GeneralSecurityException | RuntimeException e) {
+            LOG.debug("Invalid verification result {} - {}", resultFile, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores the result of a jar. The result is replaced atomically so concurrent runs never read a partial result.
+     *
+     * @param jar    the jar
+     * @param digest the digest of the content of the jar
+     * @param counts the signers of the entries of the jar
+     */
+    void store(final File jar, final String digest, final JarSignerCounts counts) {
+        final File resultFile = getResultFile(digest);
+        try {
+            final Properties properties = new Properties();
+            properties.setProperty(CONFIGURATION, configuration);
+            properties.setProperty(LENGTH, Long.toString(jar.length()));
+            properties.setProperty(LAST_MODIFIED, Long.toString(jar.lastModified()));
+            properties.setProperty(SIGNABLE_ENTRIES, Integer.toString(counts.getSignableEntries()));
+            int number = 0;
+            for (Map.Entry<CertPath, Integer> signer : counts.getSignedEntries().entrySet()) {
+                properties.setProperty(SIGNER_PREFIX + number, Base64.getEncoder().encodeToString(signer.getKey().getEncoded(CERT_PATH_ENCODING)));
+                properties.setProperty(SIGNER_PREFIX + number + SIGNED_ENTRIES_SUFFIX, Integer.toString(signer.getValue()));
+                number++;
+            }
+
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Directory '" + directory + "' cannot be created");
+            }
+            final File tempFile = File.createTempFile(resultFile.getName(), ".tmp", directory);
+            try (OutputStream out = new FileOutputStream(tempFile)) {
+                properties.store(out, "signers of " + jar.getName());
+            }
+            Files.move(tempFile.toPath(), resultFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | GeneralSecurityException e) {
+            LOG.debug("Failed to store the verification result {} - {}", resultFile, e.getMessage());
+        }
+    }
+
+    private File getResultFile(final String digest) {
+        return new File(directory, digest + ".properties");
+    }
+
+    /**
+     * The outcome of the signature checks of the JVM depends on its version and on the disabled algorithms.
+     */
+    private static String getConfigurationFingerprint() {
+        final String configuration = JavaSystemProperties.getJavaVendor()
+                + "|" + JavaSystemProperties.getJavaVersion()
+                + "|" + Security.getProperty("jdk.jar.disabledAlgorithms")
+                + "|" + Security.getProperty("jdk.certpath.disabledAlgorithms");
+        try {
+            return CacheUtil.hex("", configuration);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
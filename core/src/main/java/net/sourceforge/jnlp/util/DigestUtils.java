@@ -0,0 +1,60 @@
+package net.sourceforge.jnlp.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 digests, as stored for the files in the cache and used for fingerprints of certificates.
+ */
+public final class DigestUtils {
+
+    private static final String SHA_256 = "SHA-256";
+
+    private DigestUtils() {
+    }
+
+    /**
+     * @return a new SHA-256 digest
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance(SHA_256);
+        } catch (NoSuchAlgorithmException e) {
+            // every java implementation must support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param file the file
+     * @return the hex encoded SHA-256 digest of the content of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static String sha256Hex(File file) throws IOException {
+        final MessageDigest digest = newSha256();
+        try (final InputStream in = new DigestInputStream(new FileInputStream(file), digest)) {
+            final byte[] buffer = new byte[64 * 1024];
+            while (in.read(buffer) >= 0) {
+                // the digest is updated while reading
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @param bytes the bytes
+     * @return the bytes as lower case hex digits, two per byte
+     */
+    public static String toHex(byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,228 @@
+package net.sourceforge.jnlp.util;
+
+import net.adoptopenjdk.icedteaweb.logging.Logger;
+import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Pool of opened (and verifying) jar files shared by class loading, signature verification and manifest reading.
+ * <p>
+ * Opening a jar parses its central directory which is expensive for jars with many entries.
+ * The pool keeps the jar open as long as it is in use and a bounded number of unused jars open for later reuse.
+ * Jars are identified by their path and modification stamp so a replaced file is opened again.
+ * <p>
+ * Callers acquire a {@link Lease} which must be closed after use. Jars handed to code which does not release
+ * them (e.g. the jar URL handling of the JDK) or which changes them must not be taken from the pool.
+ * Calling {@link java.util.jar.JarFile#close()} on a pooled jar has no effect, the pool decides when to close it.
+ */
+public final class JarFilePool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JarFilePool.class);
+
+    private static final int DEFAULT_MAX_IDLE = 32;
+
+    private static final JarFilePool INSTANCE = new JarFilePool(DEFAULT_MAX_IDLE);
+
+    public static JarFilePool getInstance() {
+        return INSTANCE;
+    }
+
+    private final int maxIdle;
+
+    /** open jars by absolute path, in access order */
+    private final LinkedHashMap<String, Handle> handles = new LinkedHashMap<>(16, 0.75f, true);
+
+    JarFilePool(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Returns a lease on the opened jar. The lease must be closed once the jar is no longer used.
+     *
+     * @param file the jar to open
+     * @return the lease
+     * @throws IOException if the jar cannot be opened
+     */
+    public Lease acquire(File file) throws IOException {
+        final Handle handle = reserve(file);
+        try {
+            return new Lease(handle, handle.open());
+        } catch (IOException | RuntimeException e) {
+            discard(handle);
+            throw e;
+        }
+    }
+
+    /**
+     * Closes all jars which are currently not in use, e.g. before the cache is cleared.
+     */
+    public void closeIdle() {
+        final List<Handle> toClose = new ArrayList<>();
+        synchronized (this) {
+            final Iterator<Handle> it = handles.values().iterator();
+            while (it.hasNext()) {
+                final Handle handle = it.next();
+                if (handle.isIdle()) {
+                    it.remove();
+                    toClose.add(handle);
+                }
+            }
+        }
+        toClose.forEach(Handle::close);
+    }
+
+    synchronized int getOpenCount() {
+        return handles.size();
+    }
+
+    private synchronized Handle reserve(File file) {
+        final String path = file.getAbsolutePath();
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+
+        Handle handle = handles.get(path);
+        if (handle != null && (handle.lastModified != lastModified || handle.length != length)) {
+            LOG.debug("Jar {} has changed since it was opened", path);
+            handles.remove(path);
+            handle.stale = true;
+            if (handle.isUnused()) {
+                handle.close();
+            }
+            handle = null;
+        }
+        if (handle == null) {
+            handle = new Handle(file, lastModified, length);
+            handles.put(path, handle);
+        }
+        handle.refCount++;
+        return handle;
+    }
+
+    private void release(Handle handle) {
+        final List<Handle> toClose = new ArrayList<>();
+        synchronized (this) {
+            handle.refCount--;
+            if (handle.stale && handle.isUnused()) {
+                toClose.add(handle);
+            }
+            int idle = (int) handles.values().stream().filter(Handle::isIdle).count();
+            final Iterator<Handle> it = handles.values().iterator();
+            while (idle > maxIdle && it.hasNext()) {
+                final Handle eldest = it.next();
+                if (eldest.isIdle()) {
+                    it.remove();
+                    toClose.add(eldest);
+                    idle--;
+                }
+            }
+        }
+        toClose.forEach(Handle::close);
+    }
+
+    private synchronized void discard(Handle handle) {
+        handle.refCount--;
+        if (handles.get(handle.file.getAbsolutePath()) == handle && handle.jarFile == null) {
+            handles.remove(handle.file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * A jar in the pool. The reference count and the flags are guarded by the pool.
+     */
+    private static class Handle {
+        private final File file;
+        private final long lastModified;
+        private final long length;
+
+        private volatile PooledJarFile jarFile;
+        private int refCount;
+        private boolean stale;
+
+        private Handle(File file, long lastModified, long length) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        /**
+         * Opens the jar outside of the lock of the pool so other jars can be acquired in the meantime.
+         */
+        private synchronized PooledJarFile open() throws IOException {
+            if (jarFile == null) {
+                jarFile = new PooledJarFile(file);
+            }
+            return jarFile;
+        }
+
+        private boolean isUnused() {
+            return refCount == 0;
+        }
+
+        private boolean isIdle() {
+            return isUnused() && jarFile != null;
+        }
+
+        private void close() {
+            final PooledJarFile toClose = jarFile;
+            if (toClose != null) {
+                try {
+                    toClose.closeHandle();
+                } catch (IOException e) {
+                    LOG.debug("Failed to close jar {} - {}", file, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * A jar file whose lifecycle is controlled by the pool.
+     */
+    private static class PooledJarFile extends JarFile {
+
+        private PooledJarFile(File file) throws IOException {
+            super(file, true);
+        }
+
+        @Override
+        public void close() {
+            // closed by the pool
+        }
+
+        private void closeHandle() throws IOException {
+            super.close();
+        }
+    }
+
+    /**
+     * The use of a pooled jar. Closing the lease returns the jar to the pool.
+     */
+    public final class Lease implements Closeable {
+        private final Handle handle;
+        private final JarFile jarFile;
+        private boolean released;
+
+        private Lease(Handle handle, JarFile jarFile) {
+            this.handle = handle;
+            this.jarFile = jarFile;
+        }
+
+        public JarFile getJarFile() {
+            return jarFile;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(handle);
+            }
+        }
+    }
+}
@@ -39,9 +39,14 @@ import net.adoptopenjdk.icedteaweb.testing.ServerAccess;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
 import net.adoptopenjdk.icedteaweb.client.parts.dialogs.security.appletextendedsecurity.UnsignedAppletActionEntry;
+import net.adoptopenjdk.icedteaweb.client.parts.dialogs.security.appletextendedsecurity.UrlRegEx;
+import net.adoptopenjdk.icedteaweb.client.parts.dialogs.security.remember.AppletSecurityActions;
 import net.adoptopenjdk.icedteaweb.client.parts.dialogs.security.remember.ExecuteAppletAction;
 import net.adoptopenjdk.icedteaweb.client.parts.dialogs.security.remember.RememberableDialog;
+import net.adoptopenjdk.icedteaweb.client.parts.dialogs.security.remember.SavedRememberAction;
 import net.adoptopenjdk.icedteaweb.io.FileUtils;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -253,6 +258,103 @@ checkValues(r1,
      }
      
 
+    @Test
+    public void matchingItemsKeepOrderOfStorage() throws IOException {
+        File f = File.createTempFile("itwMatching", "testFileHosts");
+        try {
+            FileUtils.saveFileUtf8(versionLine
+                    + "c1:A{YES}; 1 \\Qhttp://a.org/\\E.* .*\n"
+                    + "c1:N{NO}; 2 .* .*\n"
+                    + "c1:n{NO}; 3 \\Qhttp://b.org/\\E.* .*\n"
+                    + "c1:y{YES}; 4 \\Qhttp://a.org/applet.html\\E .*\n"
+                    + "c1:y{YES}; 5 \\Qhttp://a.org\\E.* .*", f);
+            UnsignedAppletActionStorageImpl i1 = new UnsignedAppletActionStorageImpl(f);
+
+            List<UnsignedAppletActionEntry> ofA = i1.getMatchingItems("http://a.org/applet.html", null, null);
+            Assert.assertEquals(4, ofA.size());
+            Assert.assertEquals(1, ofA.get(0).getTimeStamp().getTime());
+            Assert.assertEquals(2, ofA.get(1).getTimeStamp().getTime());
+            Assert.assertEquals(4, ofA.get(2).getTimeStamp().getTime());
+            Assert.assertEquals(5, ofA.get(3).getTimeStamp().getTime());
+
+            List<UnsignedAppletActionEntry> ofOther = i1.getMatchingItems("http://a.org.evil/applet.html", null, null);
+            Assert.assertEquals(2, ofOther.size());
+            Assert.assertEquals(2, ofOther.get(0).getTimeStamp().getTime());
+            Assert.assertEquals(5, ofOther.get(1).getTimeStamp().getTime());
+
+            Assert.assertEquals(5, i1.getMatchingItems(null, null, null).size());
+            Assert.assertEquals(5, i1.getMatchingItems(null, "http://b.org/", null).size());
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void entriesWithAlternativesMatchAnyOfTheirHosts() throws IOException {
+        File f = File.createTempFile("itwMatching", "testFileAlternatives");
+        try {
+            FileUtils.saveFileUtf8(versionLine
+                    + "c1:N{NO}; 1 \\Qhttp://a.org/\\E.*|http://b\\.org/.* .*\n"
+                    + "c1:y{YES}; 2 \\Qhttp://b.org/\\E.* .*", f);
+            UnsignedAppletActionStorageImpl i1 = new UnsignedAppletActionStorageImpl(f);
+
+            List<UnsignedAppletActionEntry> ofB = i1.getMatchingItems("http://b.org/applet.html", null, null);
+            Assert.assertEquals(2, ofB.size());
+            Assert.assertEquals(1, ofB.get(0).getTimeStamp().getTime());
+            Assert.assertEquals(2, ofB.get(1).getTimeStamp().getTime());
+
+            Assert.assertEquals(1, i1.getMatchingItems("http://a.org/applet.html", null, null).size());
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void restrictedHost() {
+        Assert.assertEquals("a.org", UnsignedAppletActionIndex.getRestrictedHost(UrlRegEx.quote("http://a.org/x.html").getRegEx()));
+        Assert.assertEquals("a.org", UnsignedAppletActionIndex.getRestrictedHost(UrlRegEx.quoteAndStar("http://a.org:8080/").getRegEx()));
+        Assert.assertNull(UnsignedAppletActionIndex.getRestrictedHost(UrlRegEx.quoteAndStar("http://a.org").getRegEx()));
+        Assert.assertNull(UnsignedAppletActionIndex.getRestrictedHost("http://a.org/.*"));
+        Assert.assertNull(UnsignedAppletActionIndex.getRestrictedHost(".*"));
+        Assert.assertNull(UnsignedAppletActionIndex.getRestrictedHost("\\Qhttp://a.org/\\E.*|http://b\\.org/.*"));
+        Assert.assertEquals("a.org", UnsignedAppletActionIndex.getRestrictedHost("\\Qhttp://a.org/\\E.*\\|.*"));
+        Assert.assertEquals("a.org", UnsignedAppletActionIndex.getHost("http://a.org"));
+        Assert.assertEquals("a.org", UnsignedAppletActionIndex.getHost("http://a.org:8080/x.html"));
+        Assert.assertNull(UnsignedAppletActionIndex.getHost("a.org"));
+    }
+
+    @Test
+    public void changesAreReadAndWrittenOnce() throws IOException {
+        File f = File.createTempFile("itwMatching", "testFileChanges");
+        try {
+            FileUtils.saveFileUtf8(versionLine + "c1:A{YES}; 1 \\Qhttp://a.org/\\E.* .*", f);
+            UnsignedAppletActionStorageImpl i1 = new UnsignedAppletActionStorageImpl(f);
+            Assert.assertNotNull(i1.getMatchingItem("http://a.org/", null, null, c1.class));
+
+            UnsignedAppletActionEntry added = new UnsignedAppletActionEntry(
+                    AppletSecurityActions.fromAction(c1.class, new SavedRememberAction(ExecuteAppletAction.NEVER, "NO")),
+                    new Date(2), UrlRegEx.quote("http://b.org/"), UrlRegEx.quote("http://b.org/"), null);
+            i1.lock();
+            try {
+                i1.add(added);
+                Assert.assertNotNull(i1.getMatchingItem("http://b.org/", null, null, c1.class));
+                Assert.assertFalse("write is postponed while the storage is locked", FileUtils.loadFileAsUtf8String(f).contains("b.org"));
+            } finally {
+                i1.unlock();
+            }
+            Assert.assertTrue(FileUtils.loadFileAsUtf8String(f).contains("b.org"));
+
+            // the file is replaced by another process
+            File replacement = File.createTempFile("itwMatching", "testFileChanges");
+            FileUtils.saveFileUtf8(versionLine + "c1:A{YES}; 3 \\Qhttp://c.org/\\E.* .*", replacement);
+            Assert.assertTrue(replacement.renameTo(f));
+            Assert.assertNull(i1.getMatchingItem("http://a.org/", null, null, c1.class));
+            Assert.assertNotNull(i1.getMatchingItem("http://c.org/", null, null, c1.class));
+        } finally {
+            f.delete();
+        }
+    }
+
     private void checkValues(UnsignedAppletActionEntry item, Result... results) {
         for (Result result : results) {
             if (result.nul) {
@@ -1,10 +1,23 @@
 package net.adoptopenjdk.icedteaweb.manifest;
 
+import net.adoptopenjdk.icedteaweb.resources.ResourceTracker;
+import net.adoptopenjdk.icedteaweb.testing.util.FileTestUtils;
 import net.sourceforge.jnlp.util.logging.NoStdOutErrTest;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
 
 public class ManifestAttributesReaderTest extends NoStdOutErrTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void testSplitEmptyOrNullEntryPoints() throws Exception {
         Assert.assertArrayEquals(null, ManifestAttributesReader.splitEntryPoints(""));
@@ -26,4 +39,29 @@ public class ManifestAttributesReaderTest extends NoStdOutErrTest {
         Assert.assertArrayEquals(new String[]{"a.b.c", "cde"}, ManifestAttributesReader.splitEntryPoints("  a.b.c cde    "));
         Assert.assertArrayEquals(new String[]{"a.b.c", "cde"}, ManifestAttributesReader.splitEntryPoints("a.b.c         cde    "));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAttributeOfChangedJar() throws Exception {
+        final File jar = new File(temporaryFolder.getRoot(), "attributes.jar");
+        final URL location = jar.toURI().toURL();
+        final ResourceTracker tracker = new ResourceTracker() {
+            @Override
+            public File getCacheFile(final URL url) {
+                return jar;
+            }
+        };
+
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "First");
+        FileTestUtils.createJarWithContents(jar, manifest);
+        Assert.assertEquals("First", ManifestAttributesReader.getAttributeFromJar(Attributes.Name.MAIN_CLASS, location, tracker));
+        Assert.assertNull(ManifestAttributesReader.getAttributeFromJar(Attributes.Name.IMPLEMENTATION_TITLE, location, tracker));
+
+        final long lastModified = jar.lastModified();
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "SecondClass");
+        FileTestUtils.createJarWithContents(jar, manifest);
+        Assert.assertTrue(jar.setLastModified(lastModified + 2000));
+        Assert.assertEquals("SecondClass", ManifestAttributesReader.getAttributeFromJar(Attributes.Name.MAIN_CLASS, location, tracker));
+    }
+}
@@ -0,0 +1,41 @@
+package net.adoptopenjdk.icedteaweb.resources;
+
+import org.junit.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CachedDaemonThreadPoolProviderTest {
+
+    @Test
+    public void sharedThreadsDoNotBelongToTheApplicationStartingThem() throws Exception {
+        final ThreadGroup application = new ThreadGroup("application");
+        final ClassLoader applicationClassLoader = new URLClassLoader(new URL[0]);
+        final AtomicReference<ExecutorService> pool = new AtomicReference<>();
+        final AtomicReference<Future<Thread>> worker = new AtomicReference<>();
+
+        final Thread applicationThread = new Thread(application, () -> {
+            pool.set(CachedDaemonThreadPoolProvider.createSharedThreadPool(1));
+            worker.set(pool.get().submit(Thread::currentThread));
+        });
+        applicationThread.setContextClassLoader(applicationClassLoader);
+        applicationThread.start();
+        applicationThread.join();
+
+        try {
+            final Thread thread = worker.get().get();
+            assertNull(thread.getThreadGroup().getParent());
+            assertEquals(CachedDaemonThreadPoolProvider.class.getClassLoader(), thread.getContextClassLoader());
+            assertTrue(thread.isDaemon());
+        } finally {
+            pool.get().shutdown();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package net.adoptopenjdk.icedteaweb.resources.cache;
+
+import net.adoptopenjdk.icedteaweb.jnlp.version.VersionId;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CacheBundleTest {
+
+    private static final VersionId VERSION = VersionId.fromString("1.0");
+    private static final byte[] CONTENT = "some jar content".getBytes(UTF_8);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private URL url;
+    private LeastRecentlyUsedCache source;
+    private LeastRecentlyUsedCache target;
+
+    @Before
+    public void setup() throws IOException {
+        url = new URL("http://example.com/example.jar");
+        source = TestCaches.newCache(temporaryFolder.newFolder());
+        target = TestCaches.newCache(temporaryFolder.newFolder());
+    }
+
+    @Test
+    public void exportedResourcesAreImportedWithTheirMetadata() throws IOException {
+        source.addToCache(new DownloadInfo(url, VERSION, 1234L), new ByteArrayInputStream(CONTENT));
+        final File bundle = new File(temporaryFolder.getRoot(), "cache.zip");
+
+        assertEquals(1, source.exportCache(bundle, ".*"));
+        assertEquals(1, target.importCache(bundle));
+
+        final Optional<CacheEntry> imported = target.getResourceInfo(url, VERSION);
+        assertTrue(imported.isPresent());
+        assertTrue(imported.get().isCached());
+        assertEquals(1234L, imported.get().getLastModified());
+        assertEquals(CONTENT.length, imported.get().getSize());
+        assertEquals(source.getResourceInfo(url, VERSION).get().getDigest(), imported.get().getDigest());
+        assertArrayEquals(CONTENT, Files.readAllBytes(imported.get().getCacheFile().toPath()));
+    }
+
+    @Test
+    public void upToDateResourcesAreNotImportedAgain() throws IOException {
+        source.addToCache(new DownloadInfo(url, VERSION, 1234L), new ByteArrayInputStream(CONTENT));
+        final File bundle = new File(temporaryFolder.getRoot(), "cache.zip");
+        source.exportCache(bundle, ".*");
+
+        assertEquals(1, target.importCache(bundle));
+        assertEquals(0, target.importCache(bundle));
+    }
+
+    @Test
+    public void filterRestrictsExportedResources() throws IOException {
+        source.addToCache(new DownloadInfo(url, VERSION, 1234L), new ByteArrayInputStream(CONTENT));
+        final File bundle = new File(temporaryFolder.getRoot(), "cache.zip");
+
+        assertEquals(0, source.exportCache(bundle, "other\\.org"));
+        assertEquals(0, target.importCache(bundle));
+    }
+
+    @Test
+    public void corruptBundleDoesNotChangeTheCache() throws IOException {
+        final File cacheFile = source.addToCache(new DownloadInfo(url, VERSION, 1234L), new ByteArrayInputStream(CONTENT));
+        corruptContent(cacheFile);
+        final File bundle = new File(temporaryFolder.getRoot(), "cache.zip");
+        source.exportCache(bundle, ".*");
+
+        try {
+            target.importCache(bundle);
+            fail("corrupt bundle must not be imported");
+        } catch (IOException expected) {
+            // expected
+        }
+        assertFalse(target.getResourceInfo(url, VERSION).isPresent());
+    }
+
+    private static void corruptContent(File cacheFile) throws IOException {
+        // keeps the size but no longer matches the digest recorded in the index
+        try (final RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            final int value = file.read();
+            file.seek(0);
+            file.write(value ^ 0xFF);
+        }
+    }
+}
@@ -39,6 +39,7 @@ package net.adoptopenjdk.icedteaweb.resources.cache;
 
 import net.adoptopenjdk.icedteaweb.io.FileUtils;
 import net.adoptopenjdk.icedteaweb.jnlp.version.VersionId;
+import net.sourceforge.jnlp.util.PropertiesFile;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Rule;
@@ -49,6 +50,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -57,12 +59,15 @@ import static org.junit.Assert.assertTrue;
 
 public class CacheEntryTest {
 
+    private static final String ENTRY_ID = "1-1";
+
     private static URL url;
     private static VersionId version;
     private static long downloadedAt;
 
     private File cacheFile;
     private File infoFile;
+    private LeastRecentlyUsedCacheIndex index;
 
     @Rule
     public TemporaryFolder temporaryFolder = new TemporaryFolder();
@@ -80,8 +85,11 @@ public class CacheEntryTest {
         cacheFile = new File(tmpDir, "example.jar");
         infoFile = new File(tmpDir, CacheEntry.INFO_SUFFIX);
 
-        FileUtils.saveFileUtf8("", infoFile);
         FileUtils.saveFileUtf8("Some content in cache file", cacheFile);
+
+        final PropertiesFile indexFile = new PropertiesFile(temporaryFolder.newFile());
+        index = new LeastRecentlyUsedCacheIndex(indexFile, new ArrayList<>());
+        index.createEntry(url, version, ENTRY_ID);
     }
 
     @Test
@@ -100,7 +108,7 @@ public class CacheEntryTest {
         assertNotEquals(DOWNLOADED_AT, firstEntry.getDownloadedAt());
         assertNotEquals(CONTENT_LENGTH, firstEntry.getSize());
 
-        firstEntry.storeInfo(DOWNLOADED_AT, LAST_MODIFIED, CONTENT_LENGTH);
+        storeInfo(DOWNLOADED_AT, LAST_MODIFIED, CONTENT_LENGTH);
 
         final CacheEntry secondEntry = createEntry();
         assertEquals(LAST_MODIFIED, secondEntry.getLastModified());
@@ -108,54 +116,82 @@ public class CacheEntryTest {
         assertEquals(CONTENT_LENGTH, secondEntry.getSize());
     }
 
+    @Test
+    public void verifyNotCachedIfNeverDownloaded() {
+        assertFalse(createEntry().isCached());
+    }
+
     @Test
     public void verifyCachedIfFileExistsAndLengthIsSame() {
-        final CacheEntry entry = createEntry();
-        entry.storeInfo(downloadedAt, cacheFile.lastModified(), cacheFile.length());
+        storeInfo(downloadedAt, cacheFile.lastModified(), cacheFile.length());
 
-        assertTrue(entry.isCached());
+        assertTrue(createEntry().isCached());
     }
 
 
     @Test
     public void verifyNotCachedIfFileIsAbsent() {
+        storeInfo(downloadedAt, cacheFile.lastModified(), cacheFile.length());
         assertTrue(cacheFile.delete());
         assertFalse(createEntry().isCached());
     }
 
     @Test
     public void verifyNotCachedIfContentLengthsDiffer() {
-        final CacheEntry entry = createEntry();
-        entry.storeInfo(downloadedAt, cacheFile.lastModified(), cacheFile.length() + 1);
+        storeInfo(downloadedAt, cacheFile.lastModified(), cacheFile.length() + 1);
 
-        assertFalse(entry.isCached());
+        assertFalse(createEntry().isCached());
     }
 
     @Test
     public void verifyCurrentWhenCacheEntryHasSameTimeStamp() {
-        final CacheEntry entry = createEntry();
-        entry.storeInfo(downloadedAt, cacheFile.lastModified(), cacheFile.length());
+        storeInfo(downloadedAt, cacheFile.lastModified(), cacheFile.length());
 
-        assertTrue(entry.isCurrent(cacheFile.lastModified()));
+        assertTrue(createEntry().isCurrent(cacheFile.lastModified()));
     }
 
     @Test
     public void verifyCurrentWhenRemoteContentIsOlder() {
-        final CacheEntry entry = createEntry();
-        entry.storeInfo(downloadedAt, cacheFile.lastModified(), cacheFile.length());
+        storeInfo(downloadedAt, cacheFile.lastModified(), cacheFile.length());
 
-        assertTrue(entry.isCurrent(cacheFile.lastModified() - 10));
+        assertTrue(createEntry().isCurrent(cacheFile.lastModified() - 10));
     }
 
     @Test
     public void verifyNotCurrentWhenRemoteContentIsNewer() {
-        final CacheEntry entry = createEntry();
-        entry.storeInfo(downloadedAt, cacheFile.lastModified(), cacheFile.length());
+        storeInfo(downloadedAt, cacheFile.lastModified(), cacheFile.length());
+
+        assertFalse(createEntry().isCurrent(cacheFile.lastModified() + 10));
+    }
+
+    @Test
+    public void verifyInfoFileIsMigratedIntoIndex() {
+        final PropertiesFile legacy = new PropertiesFile(infoFile);
+        legacy.setProperty("content-length", Long.toString(cacheFile.length()));
+        legacy.setProperty("last-modified", "999");
+        legacy.setProperty("last-updated", "888");
+        legacy.setProperty("jnlp-path", "/tmp/app.jnlp");
+        legacy.store();
+
+        final LeastRecentlyUsedCacheEntry migrated = CacheEntry.migrateInfoFile(index, getIndexEntry(), infoFile);
+        final CacheEntry entry = new CacheEntry(migrated, cacheFile);
+
+        assertTrue(entry.isCached());
+        assertEquals(999, entry.getLastModified());
+        assertEquals(888, entry.getDownloadedAt());
+        assertEquals("/tmp/app.jnlp", entry.getJnlpPath());
+        assertEquals(cacheFile.length(), getIndexEntry().getSize());
+    }
+
+    private void storeInfo(long downloadedAt, long lastModified, long size) {
+        index.updateDownloadInfo(getIndexEntry(), size, lastModified, downloadedAt, null);
+    }
 
-        assertFalse(entry.isCurrent(cacheFile.lastModified() + 10));
+    private LeastRecentlyUsedCacheEntry getIndexEntry() {
+        return index.find(url, version).orElseThrow(IllegalStateException::new);
     }
 
     private CacheEntry createEntry() {
-        return new CacheEntry(url, version, cacheFile, infoFile);
+        return new CacheEntry(getIndexEntry(), cacheFile);
     }
 }
@@ -0,0 +1,67 @@
+package net.adoptopenjdk.icedteaweb.resources.cache;
+
+import net.adoptopenjdk.icedteaweb.jnlp.version.VersionId;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+public class CacheFileTest {
+
+    private static final VersionId VERSION = VersionId.fromString("1.0");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LeastRecentlyUsedCache cache;
+
+    @Before
+    public void setup() throws IOException {
+        final File cacheDir = temporaryFolder.newFolder();
+        cache = TestCaches.newCache(cacheDir);
+
+        add("http://one.example.com/b.jar", 30);
+        add("http://two.example.com/a.jar", 10);
+        add("http://three.example.com/c.jar", 20);
+    }
+
+    @Test
+    public void filesAreSortedByTheIndex() {
+        assertEquals(asList("a.jar", "b.jar", "c.jar"), names(cache.getCacheFiles(null, CacheFile.SortKey.NAME, true)));
+        assertEquals(asList("b.jar", "c.jar", "a.jar"), names(cache.getCacheFiles(null, CacheFile.SortKey.SIZE, false)));
+        assertEquals(asList("b.jar", "a.jar", "c.jar"), names(cache.getCacheFiles("", CacheFile.SortKey.PATH, true)));
+    }
+
+    @Test
+    public void filesAreFilteredByLocation() {
+        assertEquals(asList("c.jar"), names(cache.getCacheFiles("HREE", CacheFile.SortKey.NAME, true)));
+        assertEquals(asList("b.jar"), names(cache.getCacheFiles(" one.example ", CacheFile.SortKey.NAME, true)));
+    }
+
+    @Test
+    public void infoOfFileIsResolvedOnAccess() {
+        final CacheFile file = cache.getCacheFiles("a.jar", CacheFile.SortKey.NAME, true).get(0);
+        assertEquals(10, file.getSize());
+        assertEquals("a.jar", file.getInfoFile().getCacheFile().getName());
+    }
+
+    private void add(String url, int size) throws IOException {
+        cache.addToCache(new DownloadInfo(new URL(url), VERSION, 1234L), new ByteArrayInputStream(new byte[size]));
+    }
+
+    private static List<String> names(List<CacheFile> files) {
+        return files.stream()
+                .map(file -> file.getInfoFile().getCacheFile().getName())
+                .collect(Collectors.toList());
+    }
+}
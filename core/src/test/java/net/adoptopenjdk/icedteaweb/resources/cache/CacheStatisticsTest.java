@@ -0,0 +1,59 @@
+package net.adoptopenjdk.icedteaweb.resources.cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static net.adoptopenjdk.icedteaweb.resources.cache.CacheStatistics.Counter.BYTES_FROM_CACHE;
+import static net.adoptopenjdk.icedteaweb.resources.cache.CacheStatistics.Counter.HITS;
+import static net.adoptopenjdk.icedteaweb.resources.cache.CacheStatistics.Counter.MISSES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CacheStatisticsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void persistingAddsToAggregatesAndResetsCounters() {
+        final File file = new File(temporaryFolder.getRoot(), CacheStatistics.STATISTICS_FILE_NAME);
+
+        final CacheStatistics firstRun = new CacheStatistics();
+        firstRun.recordHit(100);
+        firstRun.recordMiss(50);
+        firstRun.persist(file);
+        assertEquals(0, firstRun.get(HITS));
+
+        final CacheStatistics secondRun = new CacheStatistics();
+        secondRun.recordHit(10);
+        secondRun.recordHit(10);
+        secondRun.persist(file);
+
+        final String json = new CacheStatistics().toJson(file, temporaryFolder.getRoot(), 3, 160, -1);
+        assertTrue(json, json.contains("\"runs\": 2,"));
+        assertTrue(json, json.contains("\"hits\": 3,"));
+        assertTrue(json, json.contains("\"misses\": 1,"));
+        assertTrue(json, json.contains("\"bytesFromCache\": 120,"));
+        assertTrue(json, json.contains("\"bytesFromNetwork\": 50,"));
+        assertTrue(json, json.contains("\"hitRatio\": 0.750,"));
+        assertTrue(json, json.contains("\"entries\": 3,"));
+    }
+
+    @Test
+    public void jsonIncludesValuesOfRunningProcess() {
+        final File file = new File(temporaryFolder.getRoot(), CacheStatistics.STATISTICS_FILE_NAME);
+        final CacheStatistics statistics = new CacheStatistics();
+        statistics.add(BYTES_FROM_CACHE, 42);
+        statistics.increment(MISSES);
+
+        final String json = statistics.toJson(file, temporaryFolder.getRoot(), 0, 0, -1);
+        assertTrue(json, json.startsWith("{\n"));
+        assertTrue(json, json.endsWith("\n}"));
+        assertTrue(json, json.contains("\"bytesFromCache\": 42,"));
+        assertTrue(json, json.contains("\"misses\": 1,"));
+        assertTrue(json, json.contains("\"runs\": 0,"));
+    }
+}
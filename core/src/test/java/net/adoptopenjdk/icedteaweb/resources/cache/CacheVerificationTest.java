@@ -0,0 +1,121 @@
+package net.adoptopenjdk.icedteaweb.resources.cache;
+
+import net.adoptopenjdk.icedteaweb.jnlp.version.VersionId;
+import net.sourceforge.jnlp.config.PathsAndFiles;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CacheVerificationTest {
+
+    private static final VersionId VERSION = VersionId.fromString("1.0");
+    private static final byte[] CONTENT = "some cached content".getBytes(UTF_8);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File cacheDir;
+    private LeastRecentlyUsedCache cache;
+
+    @Before
+    public void setup() throws IOException {
+        cacheDir = temporaryFolder.newFolder();
+        cache = TestCaches.newCache(cacheDir);
+    }
+
+    @Test
+    public void intactEntriesAreOk() throws IOException {
+        add("http://example.com/a.jar");
+        add("http://example.com/b.jar");
+
+        final CacheVerificationReport report = cache.verifyCache(2);
+
+        assertEquals(2, report.getOk());
+        assertEquals(0, report.getQuarantined());
+        assertEquals(2L * CONTENT.length, report.getBytesRead());
+    }
+
+    @Test
+    public void entryWithModifiedContentIsQuarantined() throws IOException {
+        final URL url = new URL("http://example.com/a.jar");
+        final File cacheFile = cache.addToCache(new DownloadInfo(url, VERSION, 1234L), new ByteArrayInputStream(CONTENT));
+        add("http://example.com/b.jar");
+        try (final RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            file.seek(3);
+            file.write('X');
+        }
+
+        final CacheVerificationReport report = cache.verifyCache(2);
+
+        assertEquals(1, report.getOk());
+        assertEquals(1, report.getQuarantined());
+        assertTrue(report.getProblems().get(0), report.getProblems().get(0).contains("digest"));
+        assertFalse(cache.getResourceInfo(url, VERSION).isPresent());
+        assertFalse(cacheFile.exists());
+        assertTrue(new File(cacheDir, LeastRecentlyUsedCache.QUARANTINE_DIR_NAME).isDirectory());
+    }
+
+    @Test
+    public void truncatedEntryIsQuarantinedAndNotSweptAgain() throws IOException {
+        final URL url = new URL("http://example.com/a.jar");
+        final File cacheFile = cache.addToCache(new DownloadInfo(url, VERSION, 1234L), new ByteArrayInputStream(CONTENT));
+        try (final OutputStream out = new FileOutputStream(cacheFile)) {
+            out.write(CONTENT, 0, 5);
+        }
+
+        final CacheVerificationReport report = cache.verifyCache(1);
+        assertEquals(1, report.getQuarantined());
+        assertTrue(report.getProblems().get(0), report.getProblems().get(0).contains("size"));
+
+        cache.sweepCache();
+        final File quarantined = new File(cacheDir, LeastRecentlyUsedCache.QUARANTINE_DIR_NAME);
+        assertEquals(1, quarantined.list().length);
+    }
+
+    @Test
+    public void brokenEntryIsKeptWhileOtherInstancesAreRunning() throws IOException {
+        final URL url = new URL("http://example.com/a.jar");
+        final File cacheFile = cache.addToCache(new DownloadInfo(url, VERSION, 1234L), new ByteArrayInputStream(CONTENT));
+        try (final OutputStream out = new FileOutputStream(cacheFile)) {
+            out.write(CONTENT, 0, 5);
+        }
+
+        final String mainLock = PathsAndFiles.MAIN_LOCK.getFullPath();
+        final File lockFile = temporaryFolder.newFile("netx_running");
+        PathsAndFiles.MAIN_LOCK.setValue(lockFile.getPath());
+        try (final FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.READ);
+             final FileLock ignored = channel.lock(0, 1, true)) {
+            final CacheVerificationReport report = cache.verifyCache(1);
+
+            assertEquals(0, report.getQuarantined());
+            assertEquals(1, report.getBroken());
+            assertTrue(report.getBrokenProblems().get(0), report.getBrokenProblems().get(0).contains("size"));
+        } finally {
+            PathsAndFiles.MAIN_LOCK.setValue(mainLock);
+        }
+        assertTrue(cache.getResourceInfo(url, VERSION).isPresent());
+        assertTrue(cacheFile.exists());
+        assertFalse(new File(cacheDir, LeastRecentlyUsedCache.QUARANTINE_DIR_NAME).exists());
+    }
+
+    private void add(String url) throws IOException {
+        cache.addToCache(new DownloadInfo(new URL(url), VERSION, 1234L), new ByteArrayInputStream(CONTENT));
+    }
+}
@@ -0,0 +1,108 @@
+package net.adoptopenjdk.icedteaweb.resources.cache;
+
+import net.adoptopenjdk.icedteaweb.jnlp.version.VersionId;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DerivedArtifactsTest {
+
+    private static final VersionId VERSION = VersionId.fromString("1.0");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LeastRecentlyUsedCache cache;
+
+    @Before
+    public void setup() throws IOException {
+        final File cacheDir = temporaryFolder.newFolder();
+        cache = TestCaches.newCache(cacheDir);
+    }
+
+    @Test
+    public void derivedArtifactsAreCountedInTheIndex() throws IOException {
+        final File cacheFile = add("http://example.com/a.jar", 10);
+        final File nestedDir = new File(cacheFile.getPath() + ".nested");
+        write(new File(nestedDir, "lib/b.jar"), 25);
+        write(new File(nestedDir, "c.jar"), 5);
+
+        cache.updateDerivedArtifacts(cacheFile);
+
+        final LeastRecentlyUsedCacheEntry entry = cache.getCacheFiles(null, CacheFile.SortKey.NAME, true).get(0).getEntry();
+        assertEquals(10, entry.getSize());
+        assertEquals(30, entry.getDerivedSize());
+        assertTrue(cache.getStatisticsAsJson().contains("\"sizeInBytes\": 40,"));
+    }
+
+    @Test
+    public void sweepRemovesExpiredPartialFilesAndOrphanedArtifacts() throws IOException {
+        final File cacheFile = add("http://example.com/a.jar", 10);
+        final File expiredPartialFile = new File(cacheFile.getPath() + LeastRecentlyUsedCache.PARTIAL_SUFFIX);
+        write(expiredPartialFile, 3);
+        assertTrue(expiredPartialFile.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2)));
+
+        final File otherCacheFile = add("http://example.com/other.jar", 10);
+        final File runningPartialFile = new File(otherCacheFile.getPath() + LeastRecentlyUsedCache.PARTIAL_SUFFIX);
+        write(runningPartialFile, 3);
+        final File orphanedNestedDir = new File(otherCacheFile.getPath() + ".nested");
+        write(new File(orphanedNestedDir, "b.jar"), 7);
+        assertTrue(otherCacheFile.delete());
+
+        cache.sweepCache();
+
+        assertFalse(expiredPartialFile.exists());
+        assertTrue(cacheFile.exists());
+        assertTrue(runningPartialFile.exists());
+        assertFalse(orphanedNestedDir.exists());
+    }
+
+    @Test
+    public void sweepCorrectsSizeOfDerivedArtifacts() throws IOException {
+        final File cacheFile = add("http://example.com/a.jar", 10);
+        write(new File(cacheFile.getPath() + ".nested", "b.jar"), 7);
+
+        cache.sweepCache();
+
+        final LeastRecentlyUsedCacheEntry entry = cache.getCacheFiles(null, CacheFile.SortKey.NAME, true).get(0).getEntry();
+        assertEquals(7, entry.getDerivedSize());
+    }
+
+    @Test
+    public void extractedNativeLibrariesAreCountedInTheIndex() throws IOException {
+        final File cacheFile = add("http://example.com/a.jar", 10);
+        final String digest = cache.getDigest(cacheFile);
+        write(new File(new File(cache.getNativeLibrariesDir(), digest), "a.so"), 12);
+
+        cache.updateDerivedArtifacts(cacheFile);
+        assertEquals(12, cache.getCacheFiles(null, CacheFile.SortKey.NAME, true).get(0).getEntry().getDerivedSize());
+
+        write(new File(new File(cache.getNativeLibrariesDir(), digest), "b.so"), 3);
+        cache.sweepCache();
+        assertEquals(15, cache.getCacheFiles(null, CacheFile.SortKey.NAME, true).get(0).getEntry().getDerivedSize());
+    }
+
+    private File add(String url, int size) throws IOException {
+        return cache.addToCache(new DownloadInfo(new URL(url), VERSION, 1234L), new ByteArrayInputStream(new byte[size]));
+    }
+
+    private static void write(File file, int size) throws IOException {
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        try (final OutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[size]);
+        }
+    }
+}
@@ -184,6 +184,35 @@ public class LeastRecentlyUsedCacheIndexHolderTest {
         assertFalse(entryTwo.isPresent());
     }
 
+    @Test
+    public void testTotalSizeIsMaintained() {
+        final VersionId otherVersion = VersionId.fromString("2.0");
+        holder.runSynchronized(idx -> {
+            idx.updateSize(idx.createEntry(url, version, "1-1"), 100);
+            idx.updateSize(idx.createEntry(url, otherVersion, "1-2"), 50);
+        });
+        assertEquals(150L, (long) holder.getSynchronized(LeastRecentlyUsedCacheIndex::getTotalSize));
+
+        holder.runSynchronized(idx -> idx.markEntryForDeletion(url, version));
+        assertEquals(50L, (long) holder.getSynchronized(LeastRecentlyUsedCacheIndex::getTotalSize));
+
+        holder.runSynchronized(idx -> idx.removeEntry(url, otherVersion));
+        assertEquals(0L, (long) holder.getSynchronized(LeastRecentlyUsedCacheIndex::getTotalSize));
+    }
+
+    @Test
+    public void testSizeIsStoredInIndexFile() {
+        holder.runSynchronized(idx -> idx.updateSize(idx.createEntry(url, version, entryId), 42));
+
+        final PropertiesFile propertiesFile = new PropertiesFile(recentlyUsedFile);
+        propertiesFile.load();
+        final ConversionResult result = convertPropertiesToEntries(propertiesFile);
+
+        assertEquals(1, result.entries.size());
+        assertEquals(42, result.entries.get(0).getSize());
+        assertEquals(42, new LeastRecentlyUsedCacheIndex(propertiesFile, result.entries).getTotalSize());
+    }
+
     @Test
     public void testSortingOfIndex() throws IOException {
         // given
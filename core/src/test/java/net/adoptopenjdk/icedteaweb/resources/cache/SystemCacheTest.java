@@ -0,0 +1,98 @@
+package net.adoptopenjdk.icedteaweb.resources.cache;
+
+import net.adoptopenjdk.icedteaweb.io.IOUtils;
+import net.adoptopenjdk.icedteaweb.jnlp.version.VersionId;
+import net.adoptopenjdk.icedteaweb.jnlp.version.VersionString;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SystemCacheTest {
+
+    private static final VersionId VERSION_1 = VersionId.fromString("1.0");
+    private static final VersionId VERSION_2 = VersionId.fromString("2.0");
+    private static final byte[] CONTENT = "some jar content".getBytes(UTF_8);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private URL url;
+    private File systemDir;
+
+    @Before
+    public void setup() throws IOException {
+        url = new URL("http://example.com/example.jar");
+
+        final File userDir = temporaryFolder.newFolder();
+        final LeastRecentlyUsedCache cache = TestCaches.newCache(userDir);
+        cache.addToCache(new DownloadInfo(url, VERSION_1, 1234L), new ByteArrayInputStream(CONTENT));
+        cache.addToCache(new DownloadInfo(url, VERSION_2, 5678L), new ByteArrayInputStream(CONTENT));
+
+        final File bundle = new File(temporaryFolder.getRoot(), "cache.zip");
+        cache.exportCache(bundle, ".*");
+        systemDir = temporaryFolder.newFolder();
+        unzip(bundle, systemDir);
+    }
+
+    @Test
+    public void resourcesOfPrebuiltDirectoryAreFound() throws IOException {
+        final SystemCache systemCache = new SystemCache(systemDir, CacheBundle.readExtracted(systemDir));
+
+        final Optional<CacheEntry> entry = systemCache.find(url, VERSION_2);
+        assertTrue(entry.isPresent());
+        assertEquals(5678L, entry.get().getLastModified());
+        assertTrue(systemCache.contains(entry.get().getCacheFile()));
+
+        assertEquals(2, systemCache.findAll(url).size());
+        assertEquals(1, systemCache.findAll(url, VersionString.fromString("1.0")).size());
+        assertFalse(systemCache.find(new URL("http://example.com/other.jar"), VERSION_1).isPresent());
+    }
+
+    @Test
+    public void incompleteResourcesAreIgnored() throws IOException {
+        final SystemCache before = new SystemCache(systemDir, CacheBundle.readExtracted(systemDir));
+        final File cacheFile = before.find(url, VERSION_1).get().getCacheFile();
+        try (final OutputStream out = new FileOutputStream(cacheFile)) {
+            out.write(1);
+        }
+
+        final SystemCache systemCache = new SystemCache(systemDir, CacheBundle.readExtracted(systemDir));
+        assertFalse(systemCache.find(url, VERSION_1).isPresent());
+        assertTrue(systemCache.find(url, VERSION_2).isPresent());
+    }
+
+    @Test
+    public void filesOutsideOfTheSystemCacheAreNotContained() throws IOException {
+        final SystemCache systemCache = new SystemCache(systemDir, CacheBundle.readExtracted(systemDir));
+        assertFalse(systemCache.contains(temporaryFolder.newFile()));
+    }
+
+    private static void unzip(File bundle, File targetDir) throws IOException {
+        try (final ZipInputStream in = new ZipInputStream(new FileInputStream(bundle))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                final File file = new File(targetDir, entry.getName());
+                assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+                try (final OutputStream out = new FileOutputStream(file)) {
+                    IOUtils.copy(in, out);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package net.adoptopenjdk.icedteaweb.resources.cache;
+
+import net.sourceforge.jnlp.config.ConfigurationConstants;
+import net.sourceforge.jnlp.config.InfrastructureFileDescriptor;
+
+import java.io.File;
+
+/**
+ * Creates caches in a directory of a test.
+ */
+final class TestCaches {
+
+    private TestCaches() {
+    }
+
+    /**
+     * @param cacheDir the directory of the cache, the index is kept in the same directory
+     * @return a new cache in the directory
+     */
+    static LeastRecentlyUsedCache newCache(File cacheDir) {
+        final File recentlyUsedFile = new File(cacheDir, ConfigurationConstants.CACHE_INDEX_FILE_NAME);
+        return new LeastRecentlyUsedCache(new DummyInfrastructureFileDescriptor(recentlyUsedFile), new DummyInfrastructureFileDescriptor(cacheDir));
+    }
+
+    private static class DummyInfrastructureFileDescriptor extends InfrastructureFileDescriptor {
+        private final File backend;
+
+        private DummyInfrastructureFileDescriptor(File backend) {
+            super();
+            this.backend = backend;
+        }
+
+        @Override
+        public File getFile() {
+            return backend;
+        }
+
+        @Override
+        public String getFullPath() {
+            return backend.getAbsolutePath();
+        }
+    }
+}
@@ -37,6 +37,7 @@ exception statement from your version.
 
 package net.sourceforge.jnlp.cache;
 
+import net.adoptopenjdk.icedteaweb.io.FileUtils;
 import net.adoptopenjdk.icedteaweb.jnlp.version.VersionString;
 import net.adoptopenjdk.icedteaweb.resources.ResourceTracker;
 import net.adoptopenjdk.icedteaweb.resources.UpdatePolicy;
@@ -51,7 +52,6 @@ import java.util.List;
 
 import static net.adoptopenjdk.icedteaweb.testing.util.FileTestUtils.assertNoFileLeak;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 @NotThreadSafe
@@ -85,13 +85,13 @@ public class NativeLibraryStorageTest {
     private static final List<FileExtension> extensionsToTest = makeExtensionsToTest();
 
     /* Creates a NativeLibraryStorage object, caching the given URLs */
-    private static NativeLibraryStorage nativeLibraryStorageWithCache(URL... urlsToCache) {
+    private static NativeLibraryStorage nativeLibraryStorageWithCache(URL... urlsToCache) throws Exception {
         ResourceTracker tracker = new ResourceTracker();
         for (URL urlToCache : urlsToCache) {
             tracker.addResource(urlToCache, VersionString.fromString("1.0"), UpdatePolicy.ALWAYS);
         }
 
-        return new NativeLibraryStorage(tracker);
+        return new NativeLibraryStorage(tracker, FileTestUtils.createTempDirectory());
     }
 
     /**************************************************************************
@@ -151,18 +151,46 @@ public class NativeLibraryStorageTest {
     }
 
     @Test
-    public void testCleanupTemporaryFolder() {
-        NativeLibraryStorage storage = nativeLibraryStorageWithCache(/* None needed */);
-        storage.getNativeStoreDirectory();
+    public void testExtractedLibrariesAreReused() throws Exception {
+        File tempDirectory = FileTestUtils.createTempDirectory();
+        File library = new File(tempDirectory, "foobar.so");
+        FileTestUtils.createFileWithContents(library, "native code");
+        File jarLocation = new File(tempDirectory, "test.jar");
+        FileTestUtils.createJarWithContents(jarLocation, library);
 
-        /* The temporary native store directory should be our only search folder */
-        assertEquals(1, storage.getSearchDirectories().size());
+        NativeLibraryStorage storage = nativeLibraryStorageWithCache(/* None needed */);
+        File extracted = storage.getExtractedLibraries(jarLocation);
+        File extractedLibrary = new File(extracted, "foobar.so");
+        assertTrue(extractedLibrary.isFile());
+        assertTrue(extractedLibrary.setLastModified(1000));
+
+        /* The unchanged jar is not extracted again */
+        assertEquals(extracted, storage.getExtractedLibraries(jarLocation));
+        assertEquals(1000, extractedLibrary.lastModified());
+
+        /* A damaged extraction is replaced */
+        FileTestUtils.createFileWithContents(extractedLibrary, "");
+        assertEquals(extracted, storage.getExtractedLibraries(jarLocation));
+        assertEquals("native code".length(), extractedLibrary.length());
+        assertEquals(1, extracted.getParentFile().list().length);
+    }
 
-        File searchDirectory = storage.getSearchDirectories().get(0);
-        assertTrue(searchDirectory.exists());
+    @Test
+    public void testModifiedLibrariesAreExtractedAgain() throws Exception {
+        File tempDirectory = FileTestUtils.createTempDirectory();
+        File library = new File(tempDirectory, "foobar.so");
+        FileTestUtils.createFileWithContents(library, "native code");
+        File jarLocation = new File(tempDirectory, "test.jar");
+        FileTestUtils.createJarWithContents(jarLocation, library);
 
-        /* Test that it has been deleted */
-        storage.cleanupTemporaryFolder();
-        assertFalse(searchDirectory.exists());
+        NativeLibraryStorage storage = nativeLibraryStorageWithCache(/* None needed */);
+        File extracted = storage.getExtractedLibraries(jarLocation);
+        File extractedLibrary = new File(extracted, "foobar.so");
+
+        /* A library replaced by one of the same size is not loaded */
+        FileTestUtils.createFileWithContents(extractedLibrary, "evil  code!");
+        assertEquals("native code".length(), extractedLibrary.length());
+        assertEquals(extracted, storage.getExtractedLibraries(jarLocation));
+        assertEquals("native code", FileUtils.loadFileAsUtf8String(extractedLibrary));
     }
 }
@@ -0,0 +1,129 @@
+package net.sourceforge.jnlp.runtime;
+
+import net.adoptopenjdk.icedteaweb.client.parts.dialogs.security.appletextendedsecurity.AppletSecurityLevel;
+import net.adoptopenjdk.icedteaweb.client.parts.dialogs.security.appletextendedsecurity.AppletStartupSecuritySettings;
+import net.adoptopenjdk.icedteaweb.io.IOUtils;
+import net.adoptopenjdk.icedteaweb.manifest.ManifestAttributesChecker;
+import net.adoptopenjdk.icedteaweb.testing.mock.DummyJNLPFile;
+import net.sourceforge.jnlp.config.ConfigurationConstants;
+import net.sourceforge.jnlp.runtime.classloader.JNLPClassLoader;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.AccessControlContext;
+import java.security.AccessController;
+import java.security.AllPermission;
+import java.security.Permission;
+import java.security.Permissions;
+import java.security.PrivilegedAction;
+import java.security.ProtectionDomain;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class JNLPSecurityManagerTest {
+
+    private static AppletSecurityLevel level;
+    private static String macStatus;
+
+    @BeforeClass
+    public static void setPermissions() {
+        level = AppletStartupSecuritySettings.getInstance().getSecurityLevel();
+        macStatus = JNLPRuntime.getConfiguration().getProperty(ConfigurationConstants.KEY_ENABLE_MANIFEST_ATTRIBUTES_CHECK);
+        JNLPRuntime.getConfiguration().setProperty(ConfigurationConstants.KEY_SECURITY_LEVEL, AppletSecurityLevel.ALLOW_UNSIGNED.toChars());
+        JNLPRuntime.getConfiguration().setProperty(ConfigurationConstants.KEY_ENABLE_MANIFEST_ATTRIBUTES_CHECK, ManifestAttributesChecker.MANIFEST_ATTRIBUTES_CHECK.NONE.toString());
+    }
+
+    @AfterClass
+    public static void resetPermissions() {
+        JNLPRuntime.getConfiguration().setProperty(ConfigurationConstants.KEY_SECURITY_LEVEL, level.toChars());
+        JNLPRuntime.getConfiguration().setProperty(ConfigurationConstants.KEY_ENABLE_MANIFEST_ATTRIBUTES_CHECK, macStatus);
+    }
+
+    @Test
+    public void threadsInSubgroupsOfARegisteredGroupBelongToTheApplication() throws Exception {
+        final JNLPSecurityManager security = new JNLPSecurityManager();
+        final ThreadGroup group = new ThreadGroup("application");
+        final ApplicationInstance app = createApplication(group);
+
+        security.registerApplication(app);
+
+        final Thread thread = new Thread(new ThreadGroup(new ThreadGroup(group, "child"), "grandchild"), () -> {
+        });
+        assertSame(app, security.getApplication(thread, new Class<?>[0], 0));
+    }
+
+    @Test
+    public void threadsInOtherGroupsAreResolvedByTheirStack() throws Exception {
+        final JNLPSecurityManager security = new JNLPSecurityManager();
+        final ApplicationInstance registered = createApplication(new ThreadGroup("registered"));
+        final ApplicationInstance other = createApplication(new ThreadGroup("other"));
+        security.registerApplication(registered);
+
+        final Thread thread = new Thread(new ThreadGroup("unregistered"), () -> {
+        });
+        final Class<?> classOfOther = new MarkerClassLoader(other.getClassLoader()).loadMarker();
+        assertSame(other, security.getApplication(thread, new Class<?>[]{getClass(), classOfOther}, 0));
+        assertNull(security.getApplication(thread, new Class<?>[]{getClass()}, 0));
+    }
+
+    @Test
+    public void registeringAnApplicationRequiresAllPermission() throws Exception {
+        final ApplicationInstance app = createApplication(new ThreadGroup("application"));
+        final AccessControlContext untrusted = new AccessControlContext(new ProtectionDomain[]{new ProtectionDomain(null, new Permissions())});
+
+        final SecurityManager previous = System.getSecurityManager();
+        System.setSecurityManager(new SecurityManager() {
+            @Override
+            public void checkPermission(Permission perm) {
+                if (perm instanceof AllPermission) {
+                    AccessController.checkPermission(perm);
+                }
+            }
+        });
+        try {
+            AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+                JNLPRuntime.registerApplication(app);
+                return null;
+            }, untrusted);
+            fail("An application was registered without AllPermission");
+        } catch (SecurityException e) {
+            // expected
+        } finally {
+            System.setSecurityManager(previous);
+        }
+    }
+
+    private static ApplicationInstance createApplication(ThreadGroup group) throws Exception {
+        final DummyJNLPFile file = new DummyJNLPFile();
+        final JNLPClassLoader loader = new JNLPClassLoader(file, null);
+        final ApplicationInstance app = new ApplicationInstance(file, group, loader);
+        loader.setApplication(app);
+        return app;
+    }
+
+    /**
+     * Defines its own copy of {@link Marker}, so a class of an application can be put on the stack.
+     */
+    private static class MarkerClassLoader extends ClassLoader {
+
+        MarkerClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> loadMarker() throws IOException {
+            final String name = Marker.class.getName();
+            try (InputStream in = Marker.class.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+                final byte[] bytes = IOUtils.readContent(in);
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        }
+    }
+
+    private static class Marker {
+    }
+}
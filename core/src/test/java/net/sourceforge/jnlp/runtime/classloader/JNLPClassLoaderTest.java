@@ -55,6 +55,7 @@ import net.sourceforge.jnlp.config.ConfigurationConstants;
 import net.sourceforge.jnlp.config.PathsAndFiles;
 import net.sourceforge.jnlp.runtime.CachedJarFileCallback;
 import net.sourceforge.jnlp.runtime.JNLPRuntime;
+import net.sourceforge.jnlp.util.JarFilePool;
 import net.sourceforge.jnlp.util.logging.NoStdOutErrTest;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -301,6 +302,8 @@ public class JNLPClassLoaderTest extends NoStdOutErrTest {
                 try {
                     assertNull(getAttributeFromJar(MAIN_CLASS, jnlpFile.getJarLocation(), classLoader.getTracker()));
                     assertNull(getAttributeFromJar(IMPLEMENTATION_TITLE, jnlpFile.getJarLocation(), classLoader.getTracker()));
+                    // unused jars stay open in the pool, released ones are closed here
+                    JarFilePool.getInstance().closeIdle();
                 } catch (Exception e) {
                     exs[0] = e;
                 }
@@ -615,6 +618,67 @@ public class JNLPClassLoaderTest extends NoStdOutErrTest {
 
     }
 
+    @Test
+    public void testLoadClassOfNestedJarInLazyJarInALaterRun() throws Exception {
+        final String cacheDir = temporaryFolder.newFolder("cache").getCanonicalPath();
+        final File cacheBackup = PathsAndFiles.CACHE_DIR.getFile();
+        PathsAndFiles.CACHE_DIR.setValue(cacheDir);
+
+        final int port = ServerAccess.findFreePort();
+        final File dir = temporaryFolder.newFolder("base");
+        final File mainClass = new File(temporaryFolder.newFolder("classes"), "Main.class");
+        FileTestUtils.createFileWithContents(mainClass, "not loaded");
+        FileTestUtils.createJarWithContents(new File(dir, "main.jar"), mainClass);
+        final File nestedJar = new File(temporaryFolder.newFolder("nested"), "inner.jar");
+        try (InputStream is = this.getClass().getClassLoader().getResourceAsStream("net/sourceforge/jnlp/runtime/j1.jar")) {
+            Files.copy(is, nestedJar.toPath());
+        }
+        FileTestUtils.createJarWithContents(new File(dir, "outer.jar"), nestedJar);
+        final String jnlpString = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<jnlp spec=\"6.0+\" codebase=\"http://localhost:" + port + "/\">\n" +
+                "    <information><title>Test</title><vendor>IcedTea-Web</vendor></information>\n" +
+                "    <resources>\n" +
+                "        <jar href=\"main.jar\" main=\"true\"/>\n" +
+                "        <jar href=\"outer.jar\" download=\"lazy\"/>\n" +
+                "    </resources>\n" +
+                "    <application-desc main-class=\"Main\"/>\n" +
+                "</jnlp>\n";
+        Files.write(new File(dir, "lazy.jnlp").toPath(), jnlpString.getBytes(UTF_8));
+
+        final boolean verifyBackup = JNLPRuntime.isVerifying();
+        final boolean trustBackup = JNLPRuntime.isTrustAll();
+        final boolean securityBackup = JNLPRuntime.isSecurityEnabled();
+        final String manifestAttsBackup = getConfiguration().getProperty(ConfigurationConstants.KEY_ENABLE_MANIFEST_ATTRIBUTES_CHECK);
+
+        JNLPRuntime.setVerify(false);
+        JNLPRuntime.setTrustAll(true);
+        JNLPRuntime.setSecurityEnabled(false);
+        getConfiguration().setProperty(ConfigurationConstants.KEY_ENABLE_MANIFEST_ATTRIBUTES_CHECK, "NONE");
+        URLJarFile.setCallBack(CachedJarFileCallback.getInstance());
+
+        final ServerLauncher as = ServerAccess.getIndependentInstance(dir.getAbsolutePath(), port);
+        try {
+            final URL jnlpUrl = new URL("http://localhost:" + port + "/lazy.jnlp");
+            new JNLPClassLoader(jnlpFileFactory.create(jnlpUrl), UpdatePolicy.ALWAYS).loadClass("Hello1");
+            final String[] indexes = Cache.getClassIndexesDir().list();
+            assertNotNull(indexes);
+            assertEquals(1, indexes.length);
+
+            // the recorded index must not hide the class of the nested jar
+            assertEquals("Hello1", new JNLPClassLoader(jnlpFileFactory.create(jnlpUrl), UpdatePolicy.ALWAYS).loadClass("Hello1").getName());
+        } finally {
+            JNLPRuntime.setVerify(verifyBackup);
+            JNLPRuntime.setTrustAll(trustBackup);
+            JNLPRuntime.setSecurityEnabled(securityBackup);
+            getConfiguration().setProperty(ConfigurationConstants.KEY_ENABLE_MANIFEST_ATTRIBUTES_CHECK, manifestAttsBackup);
+            URLJarFile.setCallBack(null);
+            as.stop();
+
+            clearCache();
+            PathsAndFiles.CACHE_DIR.setValue(cacheBackup.getCanonicalPath());
+        }
+    }
+
     @SuppressWarnings("EmptyTryBlock")
     private void openResourceAsStream(JNLPClassLoader classLoader, String path) throws IOException {
         try (final InputStream ignored = classLoader.getResourceAsStream(path)) {
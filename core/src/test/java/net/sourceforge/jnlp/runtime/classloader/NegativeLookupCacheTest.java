@@ -0,0 +1,60 @@
+package net.sourceforge.jnlp.runtime.classloader;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NegativeLookupCacheTest {
+
+    @Test
+    public void missingNamesAreRemembered() {
+        final NegativeLookupCache cache = new NegativeLookupCache(2, new AtomicLong()::get);
+        final long generation = cache.currentGeneration();
+        cache.add("a.A", generation);
+        cache.add("b.B", generation);
+
+        assertTrue(cache.contains("a.A"));
+        assertTrue(cache.contains("b.B"));
+        assertFalse(cache.contains("c.C"));
+    }
+
+    @Test
+    public void leastRecentlyUsedNameIsDropped() {
+        final NegativeLookupCache cache = new NegativeLookupCache(2, new AtomicLong()::get);
+        final long generation = cache.currentGeneration();
+        cache.add("a.A", generation);
+        cache.add("b.B", generation);
+        cache.contains("a.A");
+        cache.add("c.C", generation);
+
+        assertTrue(cache.contains("a.A"));
+        assertFalse(cache.contains("b.B"));
+        assertTrue(cache.contains("c.C"));
+    }
+
+    @Test
+    public void addingAJarInvalidatesTheMissingNames() {
+        final AtomicLong searchPath = new AtomicLong();
+        final NegativeLookupCache cache = new NegativeLookupCache(2, searchPath::get);
+        cache.add("a.A", cache.currentGeneration());
+
+        searchPath.incrementAndGet();
+
+        assertFalse(cache.contains("a.A"));
+    }
+
+    @Test
+    public void missIsNotRecordedIfAJarWasAddedDuringTheSearch() {
+        final AtomicLong searchPath = new AtomicLong();
+        final NegativeLookupCache cache = new NegativeLookupCache(2, searchPath::get);
+        final long generation = cache.currentGeneration();
+
+        searchPath.incrementAndGet();
+        cache.add("a.A", generation);
+
+        assertFalse(cache.contains("a.A"));
+    }
+}
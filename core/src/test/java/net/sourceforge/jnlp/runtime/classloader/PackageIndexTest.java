@@ -0,0 +1,108 @@
+package net.sourceforge.jnlp.runtime.classloader;
+
+import net.adoptopenjdk.icedteaweb.jnlp.element.resource.JARDesc;
+import net.adoptopenjdk.icedteaweb.jnlp.version.VersionString;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PackageIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void packagesAreFoundInALaterRun() throws Exception {
+        final File indexFile = new File(temporaryFolder.getRoot(), "index.properties");
+        final JARDesc a = lazyJar("http://example.com/a.jar", null);
+        final JARDesc b = lazyJar("http://example.com/b.jar", "1.0");
+
+        final PackageIndex index = new PackageIndex(indexFile);
+        index.record(a, "digest-a", asList("com/example/", "com/example/A.class", "images/a.png"), false);
+        index.record(b, "digest-b", asList("com/example/B.class", "com/example/util/C.class"), false);
+        index.store();
+
+        final PackageIndex loaded = new PackageIndex(indexFile);
+        assertEquals(asList(a.getLocation().toString(), b.getLocation().toString()), loaded.getJarLocations("com/example/X.class"));
+        assertEquals(singletonList(b.getLocation().toString()), loaded.getJarLocations("com/example/util/C.class"));
+        assertEquals(singletonList(a.getLocation().toString()), loaded.getJarLocations("images/a.png"));
+        assertEquals(emptyList(), loaded.getJarLocations("images/b.png"));
+        assertEquals(emptyList(), loaded.getJarLocations("org/example/A.class"));
+    }
+
+    @Test
+    public void jarsWithChangedVersionOrContentAreDropped() throws Exception {
+        final File indexFile = new File(temporaryFolder.getRoot(), "index.properties");
+        final JARDesc a = lazyJar("http://example.com/a.jar", null);
+        final JARDesc b = lazyJar("http://example.com/b.jar", "1.0");
+        final JARDesc c = lazyJar("http://example.com/c.jar", null);
+
+        final PackageIndex index = new PackageIndex(indexFile);
+        index.record(a, "digest-a", singletonList("a/A.class"), false);
+        index.record(b, "digest-b", singletonList("b/B.class"), false);
+        index.record(c, "digest-c", singletonList("c/C.class"), false);
+        index.store();
+
+        final PackageIndex loaded = new PackageIndex(indexFile);
+        final Map<String, String> cachedDigests = new HashMap<>();
+        cachedDigests.put(a.getLocation().toString(), "digest-a");
+        cachedDigests.put(b.getLocation().toString(), "digest-b");
+        cachedDigests.put(c.getLocation().toString(), "digest-c2");
+        loaded.retainAll(new JARDesc[]{a, lazyJar("http://example.com/b.jar", "2.0"), c}, jar -> Optional.ofNullable(cachedDigests.get(jar.getLocation().toString())));
+        assertEquals(singletonList(a.getLocation().toString()), loaded.getJarLocations("a/A.class"));
+        assertEquals(emptyList(), loaded.getJarLocations("b/B.class"));
+        assertEquals(emptyList(), loaded.getJarLocations("c/C.class"));
+
+        loaded.record(a, "digest-a2", singletonList("d/D.class"), false);
+        assertEquals(emptyList(), loaded.getJarLocations("a/A.class"));
+        assertEquals(singletonList(a.getLocation().toString()), loaded.getJarLocations("d/D.class"));
+    }
+
+    @Test
+    public void onlyUnknownJarsAndJarsWithTheResourceMayContainIt() throws Exception {
+        final JARDesc a = lazyJar("http://example.com/a.jar", null);
+        final String unknown = "http://example.com/unknown.jar";
+
+        final PackageIndex index = new PackageIndex(null);
+        index.record(a, "digest-a", asList("com/example/A.class", "com/example/a.properties"), false);
+
+        assertTrue(index.mayContain(a.getLocation().toString(), "com/example/Other.class"));
+        assertTrue(index.mayContain(a.getLocation().toString(), "com/example/a.properties"));
+        assertFalse(index.mayContain(a.getLocation().toString(), "com/example/b.properties"));
+        assertFalse(index.mayContain(a.getLocation().toString(), "org/example/A.class"));
+        assertTrue(index.mayContain(unknown, "org/example/A.class"));
+        assertTrue(index.mayContain(unknown, "com/example/b.properties"));
+    }
+
+    @Test
+    public void jarsReferringToOtherJarsMayContainAnythingInALaterRun() throws Exception {
+        final File indexFile = new File(temporaryFolder.getRoot(), "index.properties");
+        final JARDesc a = lazyJar("http://example.com/a.jar", null);
+
+        final PackageIndex index = new PackageIndex(indexFile);
+        index.record(a, "digest-a", asList("META-INF/MANIFEST.MF", "com/example/A.class"), true);
+        index.store();
+
+        final PackageIndex loaded = new PackageIndex(indexFile);
+        assertEquals(singletonList(a.getLocation().toString()), loaded.getJarLocations("com/example/A.class"));
+        assertTrue(loaded.mayContain(a.getLocation().toString(), "org/example/B.class"));
+        assertTrue(loaded.mayContain(a.getLocation().toString(), "org/example/b.properties"));
+    }
+
+    private static JARDesc lazyJar(String location, String version) throws Exception {
+        return new JARDesc(new URL(location), version == null ? null : VersionString.fromString(version), null, true, false, false, true);
+    }
+}
@@ -0,0 +1,180 @@
+package net.sourceforge.jnlp.runtime.classloader;
+
+import net.adoptopenjdk.icedteaweb.client.parts.dialogs.security.appletextendedsecurity.AppletSecurityLevel;
+import net.adoptopenjdk.icedteaweb.client.parts.dialogs.security.appletextendedsecurity.AppletStartupSecuritySettings;
+import net.adoptopenjdk.icedteaweb.logging.Logger;
+import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
+import net.adoptopenjdk.icedteaweb.resources.UpdatePolicy;
+import net.adoptopenjdk.icedteaweb.testing.mock.DummyJNLPFileWithJar;
+import net.jcip.annotations.NotThreadSafe;
+import net.sourceforge.jnlp.config.ConfigurationConstants;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static net.sourceforge.jnlp.runtime.JNLPRuntime.getConfiguration;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Loads the classes of a generated set of jars with several threads at once.
+ * <p>
+ * Besides checking that every class is defined exactly once, the test reports the time needed by a single thread
+ * and by all threads. The size of the benchmark can be changed with the system properties
+ * {@code benchmark.jars}, {@code benchmark.classes} (per jar) and {@code benchmark.threads}.
+ */
+@NotThreadSafe
+public class ParallelClassLoadingBenchmarkTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelClassLoadingBenchmarkTest.class);
+
+    private static final int JARS = Integer.getInteger("benchmark.jars", 4);
+    private static final int CLASSES_PER_JAR = Integer.getInteger("benchmark.classes", 25);
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 4);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static AppletSecurityLevel level;
+    private static String askUser;
+
+    @BeforeClass
+    public static void setPermissions() {
+        level = AppletStartupSecuritySettings.getInstance().getSecurityLevel();
+        getConfiguration().setProperty(ConfigurationConstants.KEY_SECURITY_LEVEL, AppletSecurityLevel.ALLOW_UNSIGNED.toChars());
+        askUser = getConfiguration().getProperty(ConfigurationConstants.KEY_SECURITY_PROMPT_USER);
+        getConfiguration().setProperty(ConfigurationConstants.KEY_SECURITY_PROMPT_USER, Boolean.toString(false));
+    }
+
+    @AfterClass
+    public static void resetPermissions() {
+        getConfiguration().setProperty(ConfigurationConstants.KEY_SECURITY_LEVEL, level.toChars());
+        getConfiguration().setProperty(ConfigurationConstants.KEY_SECURITY_PROMPT_USER, askUser);
+    }
+
+    @Test
+    public void classesAreLoadedOnceByConcurrentThreads() throws Exception {
+        final File[] jars = new File[JARS];
+        final List<String> classNames = new ArrayList<>();
+        for (int i = 0; i < JARS; i++) {
+            jars[i] = createJarWithClasses(i, classNames);
+        }
+
+        final long singleThreaded = loadAll(jars, classNames, 1);
+        final long multiThreaded = loadAll(jars, classNames, THREADS);
+
+        LOG.info("Loaded {} classes from {} jars: 1 thread {} ms, {} threads {} ms",
+                classNames.size(), JARS, singleThreaded, THREADS, multiThreaded);
+    }
+
+    /**
+     * Loads all classes with a new classloader in each of the given number of threads.
+     *
+     * @return the time in milliseconds
+     */
+    private static long loadAll(final File[] jars, final List<String> classNames, final int threads) throws Exception {
+        final JNLPClassLoader classLoader = new JNLPClassLoader(new DummyJNLPFileWithJar(jars), UpdatePolicy.ALWAYS);
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<List<Class<?>>>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final List<String> names = new ArrayList<>(classNames);
+                Collections.shuffle(names, new Random(t));
+                final Callable<List<Class<?>>> task = () -> {
+                    start.await();
+                    final List<Class<?>> classes = new ArrayList<>();
+                    for (String name : names) {
+                        classes.add(classLoader.loadClass(name));
+                    }
+                    classes.sort((c1, c2) -> c1.getName().compareTo(c2.getName()));
+                    return classes;
+                };
+                results.add(executor.submit(task));
+            }
+
+            final long begin = System.nanoTime();
+            start.countDown();
+            final List<List<Class<?>>> loaded = new ArrayList<>();
+            for (Future<List<Class<?>>> result : results) {
+                loaded.add(result.get());
+            }
+            final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+            final List<Class<?>> expected = loaded.get(0);
+            assertEquals(classNames.size(), expected.size());
+            for (List<Class<?>> classes : loaded) {
+                for (int i = 0; i < classes.size(); i++) {
+                    assertSame(expected.get(i), classes.get(i));
+                    assertSame(classLoader, classes.get(i).getClassLoader());
+                }
+            }
+            return duration;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private File createJarWithClasses(final int jarNumber, final List<String> classNames) throws IOException {
+        final File jar = temporaryFolder.newFile("generated" + jarNumber + ".jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            for (int i = 0; i < CLASSES_PER_JAR; i++) {
+                final String name = "generated/p" + jarNumber + "/C" + i;
+                out.putNextEntry(new JarEntry(name + ".class"));
+                out.write(emptyClass(name));
+                out.closeEntry();
+                classNames.add(name.replace('/', '.'));
+            }
+        }
+        return jar;
+    }
+
+    /**
+     * @return the bytes of a public class without members extending {@link Object}
+     */
+    private static byte[] emptyClass(final String internalName) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0); // minor version
+        out.writeShort(50); // major version
+        out.writeShort(5); // constant pool count
+        out.writeByte(7); // #1 class
+        out.writeShort(2);
+        out.writeByte(1); // #2 utf8
+        out.writeUTF(internalName);
+        out.writeByte(7); // #3 class
+        out.writeShort(4);
+        out.writeByte(1); // #4 utf8
+        out.writeUTF("java/lang/Object");
+        out.writeShort(0x0021); // public super
+        out.writeShort(1); // this class
+        out.writeShort(3); // super class
+        out.writeShort(0); // interfaces
+        out.writeShort(0); // fields
+        out.writeShort(0); // methods
+        out.writeShort(0); // attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,143 @@
+package net.sourceforge.jnlp.runtime.classloader;
+
+import net.adoptopenjdk.icedteaweb.client.parts.dialogs.security.appletextendedsecurity.AppletSecurityLevel;
+import net.adoptopenjdk.icedteaweb.client.parts.dialogs.security.appletextendedsecurity.AppletStartupSecuritySettings;
+import net.adoptopenjdk.icedteaweb.logging.Logger;
+import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
+import net.adoptopenjdk.icedteaweb.resources.UpdatePolicy;
+import net.adoptopenjdk.icedteaweb.testing.mock.DummyJNLPFileWithJar;
+import net.jcip.annotations.NotThreadSafe;
+import net.sourceforge.jnlp.config.ConfigurationConstants;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.AccessControlContext;
+import java.security.CodeSource;
+import java.security.Permission;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PropertyPermission;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static net.sourceforge.jnlp.runtime.JNLPRuntime.getConfiguration;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks permissions of a classloader with several threads at once.
+ * <p>
+ * Besides checking that permissions granted at runtime are seen by later checks, the test reports the throughput
+ * of permission checks against the permissions of a code source and against the context used to load classes.
+ * The size of the benchmark can be changed with the system properties {@code benchmark.checks} (per thread)
+ * and {@code benchmark.threads}.
+ */
+@NotThreadSafe
+public class PermissionCheckBenchmarkTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PermissionCheckBenchmarkTest.class);
+
+    private static final int CHECKS = Integer.getInteger("benchmark.checks", 20000);
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 4);
+
+    private static final Permission SANDBOX_PERMISSION = new PropertyPermission("java.version", "read");
+    private static final Permission RUNTIME_PERMISSION = new RuntimePermission("benchmark.granted");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static AppletSecurityLevel level;
+    private static String askUser;
+
+    @BeforeClass
+    public static void setPermissions() {
+        level = AppletStartupSecuritySettings.getInstance().getSecurityLevel();
+        getConfiguration().setProperty(ConfigurationConstants.KEY_SECURITY_LEVEL, AppletSecurityLevel.ALLOW_UNSIGNED.toChars());
+        askUser = getConfiguration().getProperty(ConfigurationConstants.KEY_SECURITY_PROMPT_USER);
+        getConfiguration().setProperty(ConfigurationConstants.KEY_SECURITY_PROMPT_USER, Boolean.toString(false));
+    }
+
+    @AfterClass
+    public static void resetPermissions() {
+        getConfiguration().setProperty(ConfigurationConstants.KEY_SECURITY_LEVEL, level.toChars());
+        getConfiguration().setProperty(ConfigurationConstants.KEY_SECURITY_PROMPT_USER, askUser);
+    }
+
+    @Test
+    public void permissionsAreCheckedByConcurrentThreads() throws Exception {
+        final File jar = createJar();
+        final JNLPClassLoader classLoader = new JNLPClassLoader(new DummyJNLPFileWithJar(jar), UpdatePolicy.ALWAYS);
+        final CodeSource codeSource = new CodeSource(jar.toURI().toURL(), (Certificate[]) null);
+
+        assertTrue(classLoader.getPermissions(codeSource).implies(SANDBOX_PERMISSION));
+        assertFalse(classLoader.getPermissions(codeSource).implies(RUNTIME_PERMISSION));
+        final long generation = classLoader.getPermissionsGeneration();
+        classLoader.addPermission(RUNTIME_PERMISSION);
+        assertTrue(generation != classLoader.getPermissionsGeneration());
+        assertTrue(classLoader.getPermissions(codeSource).implies(RUNTIME_PERMISSION));
+
+        final long codeSourceChecks = checkAll(() -> classLoader.getPermissions(codeSource).implies(RUNTIME_PERMISSION));
+        final long contextChecks = checkAll(() -> {
+            final AccessControlContext context = classLoader.getAccessControlContextForClassLoading();
+            context.checkPermission(SANDBOX_PERMISSION);
+            return true;
+        });
+
+        LOG.info("Checked {} permissions with {} threads: code source {} ms, class loading context {} ms",
+                CHECKS * THREADS, THREADS, codeSourceChecks, contextChecks);
+    }
+
+    /**
+     * Runs the check the configured number of times in each thread.
+     *
+     * @return the time in milliseconds
+     */
+    private static long checkAll(final Callable<Boolean> check) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    boolean granted = true;
+                    for (int i = 0; i < CHECKS; i++) {
+                        granted &= check.call();
+                    }
+                    return granted;
+                }));
+            }
+
+            final long begin = System.nanoTime();
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private File createJar() throws IOException {
+        final File jar = temporaryFolder.newFile("permissions.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("benchmark.properties"));
+            out.closeEntry();
+        }
+        return jar;
+    }
+}
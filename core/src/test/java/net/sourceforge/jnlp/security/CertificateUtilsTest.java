@@ -0,0 +1,58 @@
+package net.sourceforge.jnlp.security;
+
+import net.adoptopenjdk.icedteaweb.testing.tools.CodeSignerCreator;
+import org.junit.Before;
+import org.junit.Test;
+import sun.security.x509.X500Name;
+
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CertificateUtilsTest {
+
+    private X509Certificate certificate;
+    private X509Certificate otherCertificate;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setSecurityManager(null);
+        certificate = createCertificate("CN=test");
+        otherCertificate = createCertificate("CN=other");
+    }
+
+    @Test
+    public void certificateIsFoundInKeyStore() throws Exception {
+        final KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null, null);
+        CertificateUtils.addToKeyStore(certificate, keyStore);
+
+        assertTrue(CertificateUtils.inKeyStores(certificate, Collections.singletonList(keyStore)));
+        assertFalse(CertificateUtils.inKeyStores(otherCertificate, Collections.singletonList(keyStore)));
+    }
+
+    @Test
+    public void sharedKeyStoresAreIndexed() throws Exception {
+        final List<KeyStore> caKeyStores = KeyStores.getCAKeyStores();
+        for (KeyStore keyStore : caKeyStores) {
+            assertNotNull(KeyStores.getCertificateIndex(keyStore));
+        }
+        assertFalse(CertificateUtils.inKeyStores(certificate, caKeyStores));
+
+        final KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null, null);
+        assertNull(KeyStores.getCertificateIndex(keyStore));
+    }
+
+    private static X509Certificate createCertificate(final String name) throws Exception {
+        final CodeSignerCreator.KeyPair keyPair = new CodeSignerCreator.KeyPair("RSA", "SHA256withRSA", 1024);
+        return keyPair.getSelfCertificate(new X500Name(name), new Date(), 365);
+    }
+}
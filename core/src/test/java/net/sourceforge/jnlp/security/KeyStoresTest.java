@@ -42,7 +42,9 @@ import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.security.KeyStore;
 import java.security.Permission;
+import java.util.List;
 
 public class KeyStoresTest {
 
@@ -129,4 +131,36 @@ public class KeyStoresTest {
         Assert.assertEquals(true, dm.called);
     } 
 
+    @Test
+    public void keyStoresStampChangesWhenKeyStoreIsStored() {
+        System.setSecurityManager(null);
+        final String stamp = KeyStores.getKeyStoresStamp();
+        Assert.assertEquals(stamp, KeyStores.getKeyStoresStamp());
+        KeyStores.keyStoreStored();
+        Assert.assertNotEquals(stamp, KeyStores.getKeyStoresStamp());
+    }
+
+    @Test
+    public void keyStoresAreLoadedAgainOnlyWhenChanged() {
+        System.setSecurityManager(null);
+        KeyStores.loadKeyStores();
+        final List<KeyStore> caKeyStores = KeyStores.getCAKeyStores();
+        assertSameElements(caKeyStores, KeyStores.getCAKeyStores());
+
+        KeyStores.keyStoreStored();
+        final List<KeyStore> changed = KeyStores.getCAKeyStores();
+        Assert.assertEquals(caKeyStores.size(), changed.size());
+        for (int i = 0; i < changed.size(); i++) {
+            Assert.assertNotSame(caKeyStores.get(i), changed.get(i));
+        }
+        assertSameElements(changed, KeyStores.getCAKeyStores());
+    }
+
+    private static void assertSameElements(final List<KeyStore> expected, final List<KeyStore> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertSame(expected.get(i), actual.get(i));
+        }
+    }
+
 }
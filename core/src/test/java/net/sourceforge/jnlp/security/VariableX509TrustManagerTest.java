@@ -0,0 +1,90 @@
+package net.sourceforge.jnlp.security;
+
+import net.adoptopenjdk.icedteaweb.testing.tools.CodeSignerCreator;
+import org.junit.Before;
+import org.junit.Test;
+import sun.security.x509.X500Name;
+
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class VariableX509TrustManagerTest {
+
+    private static final String AUTH_TYPE = "RSA";
+
+    /**
+     * The certificate is not in any key store and is not for this host, so the user is asked unless the chain is
+     * remembered.
+     */
+    private static final String HOST = "other.org";
+
+    private X509Certificate[] chain;
+
+    @Before
+    public void setUp() throws Exception {
+        final CodeSignerCreator.KeyPair keyPair = new CodeSignerCreator.KeyPair("RSA", "SHA256withRSA", 1024);
+        chain = new X509Certificate[]{keyPair.getSelfCertificate(new X500Name("CN=example.com"), new Date(), 365)};
+    }
+
+    @Test
+    public void trustedChainIsNotPromptedForAgain() throws Exception {
+        final AnsweringPrompt prompt = new AnsweringPrompt(true);
+        final VariableX509TrustManager trustManager = new VariableX509TrustManager(prompt);
+
+        trustManager.checkTrustServer(chain, AUTH_TYPE, HOST, null, null);
+        trustManager.checkTrustServer(chain, AUTH_TYPE, HOST, null, null);
+
+        assertEquals(1, prompt.prompts);
+    }
+
+    @Test
+    public void trustedChainsAreForgottenWhenAKeyStoreIsStored() throws Exception {
+        final AnsweringPrompt prompt = new AnsweringPrompt(true);
+        final VariableX509TrustManager trustManager = new VariableX509TrustManager(prompt);
+
+        trustManager.checkTrustServer(chain, AUTH_TYPE, HOST, null, null);
+        KeyStores.keyStoreStored();
+        trustManager.checkTrustServer(chain, AUTH_TYPE, HOST, null, null);
+
+        assertEquals(2, prompt.prompts);
+    }
+
+    @Test
+    public void rejectedChainIsNotRemembered() throws Exception {
+        final AnsweringPrompt prompt = new AnsweringPrompt(false);
+        final VariableX509TrustManager trustManager = new VariableX509TrustManager(prompt);
+
+        assertRejected(trustManager);
+        assertRejected(trustManager);
+
+        assertEquals(1, prompt.prompts);
+    }
+
+    private void assertRejected(final VariableX509TrustManager trustManager) {
+        try {
+            trustManager.checkTrustServer(chain, AUTH_TYPE, HOST, null, null);
+            fail("The chain was trusted although the user rejected it");
+        } catch (CertificateException e) {
+            // expected
+        }
+    }
+
+    private static class AnsweringPrompt implements VariableX509TrustManager.TrustPrompt {
+        private final boolean answer;
+        private int prompts = 0;
+
+        private AnsweringPrompt(final boolean answer) {
+            this.answer = answer;
+        }
+
+        @Override
+        public boolean askUser(final X509Certificate[] chain, final boolean isTrusted, final boolean hostMatched, final String hostName) {
+            prompts++;
+            return answer;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package net.sourceforge.jnlp.tools;
+
+import net.adoptopenjdk.icedteaweb.jnlp.element.resource.JARDesc;
+import net.adoptopenjdk.icedteaweb.logging.Logger;
+import net.adoptopenjdk.icedteaweb.logging.LoggerFactory;
+import net.adoptopenjdk.icedteaweb.resources.ResourceTracker;
+import net.adoptopenjdk.icedteaweb.testing.tools.CodeSignerCreator;
+import net.sourceforge.jnlp.security.JNLPAppVerifier;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sun.security.x509.X500Name;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies a generated set of signed jars one by one, all at once and all at once again with the results
+ * of the first verification at hand.
+ * <p>
+ * Besides checking that all ways lead to the same result, the test reports the time needed by each.
+ * The size of the benchmark can be changed with the system properties {@code benchmark.jars},
+ * {@code benchmark.entries} (per jar) and {@code benchmark.entrySize} (in bytes).
+ */
+public class JarCertVerifierBenchmarkTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JarCertVerifierBenchmarkTest.class);
+
+    private static final int JARS = Integer.getInteger("benchmark.jars", 8);
+    private static final int ENTRIES_PER_JAR = Integer.getInteger("benchmark.entries", 100);
+    private static final int ENTRY_SIZE = Integer.getInteger("benchmark.entrySize", 8192);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void signedJarsAreVerifiedConcurrently() throws Exception {
+        final CodeSignerCreator.KeyPair keyPair = new CodeSignerCreator.KeyPair("RSA", "SHA256withRSA", 2048);
+        final X509Certificate certificate = keyPair.getSelfCertificate(new X500Name("CN=benchmark"), new Date(), 365);
+
+        final List<JARDesc> jars = new ArrayList<>();
+        for (int i = 0; i < JARS; i++) {
+            final File jar = createSignedJar(i, keyPair.getPrivateKey(), certificate);
+            jars.add(new JARDesc(jar.toURI().toURL(), null, null, false, false, false, false));
+        }
+        final ResourceTracker tracker = new LocalFileTracker();
+
+        final JarCertVerifier oneByOne = new JarCertVerifier(new JNLPAppVerifier(), new VerificationResultCache(temporaryFolder.newFolder("one-by-one")));
+        long begin = System.nanoTime();
+        for (JARDesc jar : jars) {
+            oneByOne.add(jar, tracker);
+        }
+        final long sequential = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        final VerificationResultCache results = new VerificationResultCache(temporaryFolder.newFolder("verification"));
+        final JarCertVerifier allAtOnce = new JarCertVerifier(new JNLPAppVerifier(), results);
+        begin = System.nanoTime();
+        allAtOnce.add(jars, tracker);
+        final long concurrent = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        final JarCertVerifier again = new JarCertVerifier(new JNLPAppVerifier(), results);
+        begin = System.nanoTime();
+        again.add(jars, tracker);
+        final long cached = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        assertTrue(allAtOnce.allJarsSigned());
+        assertTrue(allAtOnce.isFullySigned());
+        assertEquals(oneByOne.getJarSignableEntries(), allAtOnce.getJarSignableEntries());
+        assertEquals(oneByOne.getCertsList(), allAtOnce.getCertsList());
+        assertEquals(1, allAtOnce.getCertsList().size());
+        assertTrue(again.isFullySigned());
+        assertEquals(allAtOnce.getJarSignableEntries(), again.getJarSignableEntries());
+        assertEquals(allAtOnce.getCertsList(), again.getCertsList());
+
+        LOG.info("Verified {} jars with {} entries of {} bytes: one by one {} ms, all at once {} ms, again {} ms",
+                JARS, ENTRIES_PER_JAR, ENTRY_SIZE, sequential, concurrent, cached);
+    }
+
+    private File createSignedJar(final int jarNumber, final PrivateKey key, final X509Certificate certificate) throws IOException, GeneralSecurityException {
+        final Random random = new Random(jarNumber);
+        final List<String> names = new ArrayList<>();
+        final List<byte[]> contents = new ArrayList<>();
+        for (int i = 0; i < ENTRIES_PER_JAR; i++) {
+            final byte[] content = new byte[ENTRY_SIZE];
+            random.nextBytes(content);
+            names.add("generated/p" + jarNumber + "/R" + i + ".dat");
+            contents.add(content);
+        }
+
+        final File jar = temporaryFolder.newFile("signed" + jarNumber + ".jar");
+        SignedJarWriter.write(jar, names, contents, key, certificate, true);
+        return jar;
+    }
+
+    /**
+     * Tracker for jars which are already local files.
+     */
+    private static class LocalFileTracker extends ResourceTracker {
+        @Override
+        public File getCacheFile(final URL location) {
+            try {
+                return new File(location.toURI());
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package net.sourceforge.jnlp.tools;
+
+import net.adoptopenjdk.icedteaweb.resources.cache.Cache;
+import net.adoptopenjdk.icedteaweb.testing.tools.CodeSignerCreator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sun.security.x509.X500Name;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JarStreamVerifierTest {
+
+    private static final int ENTRIES = 5;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private VerificationResultCache results;
+    private CodeSignerCreator.KeyPair keyPair;
+    private X509Certificate certificate;
+
+    @Before
+    public void setUp() throws Exception {
+        results = new VerificationResultCache(temporaryFolder.newFolder("verification"));
+        keyPair = new CodeSignerCreator.KeyPair("RSA", "SHA256withRSA", 1024);
+        certificate = keyPair.getSelfCertificate(new X500Name("CN=test"), new Date(), 365);
+    }
+
+    @Test
+    public void signedJarIsVerifiedWhileDownloading() throws Exception {
+        final File downloaded = download(createJar(true));
+
+        final JarSignerCounts counts = results.load(downloaded, Cache.getDigest(downloaded));
+        assertEquals(ENTRIES, counts.getSignableEntries());
+        assertEquals(1, counts.getSignedEntries().size());
+        assertEquals(ENTRIES, (int) counts.getSignedEntries().values().iterator().next());
+        assertEquals(Collections.singletonList(certificate), counts.getSignedEntries().keySet().iterator().next().getCertificates());
+    }
+
+    @Test
+    public void jarWithSignatureFilesAfterEntriesIsNotVerifiedWhileDownloading() throws Exception {
+        final File downloaded = download(createJar(false));
+
+        assertNull(results.load(downloaded, Cache.getDigest(downloaded)));
+    }
+
+    @Test
+    public void abandonedVerificationIsNotStored() throws Exception {
+        final File jar = createJar(true);
+        final File downloaded = temporaryFolder.newFile("abandoned.jar");
+        final JarStreamVerifier verifier = new JarStreamVerifier(results);
+        try (InputStream in = verifier.verifyWhileReading(new FileInputStream(jar)); OutputStream out = new FileOutputStream(downloaded)) {
+            verifier.abandon();
+            copy(in, out);
+        }
+        verifier.complete(downloaded);
+
+        assertNull(results.load(downloaded, Cache.getDigest(downloaded)));
+    }
+
+    @Test
+    public void otherContentIsNotVerified() throws Exception {
+        final File file = temporaryFolder.newFile("other.jar");
+        Files.write(file.toPath(), "not a jar".getBytes(StandardCharsets.UTF_8));
+        final File downloaded = download(file);
+
+        assertNull(results.load(downloaded, Cache.getDigest(downloaded)));
+    }
+
+    @Test
+    public void jarIsNotVerifiedWhileDownloadingIfAllThreadsAreBusy() throws Exception {
+        final File jar = createJar(true);
+        final List<JarStreamVerifier> slowDownloads = new ArrayList<>();
+        try {
+            for (int i = 0; i < Runtime.getRuntime().availableProcessors(); i++) {
+                final JarStreamVerifier slowDownload = new JarStreamVerifier(results);
+                slowDownload.verifyWhileReading(new ByteArrayInputStream(new byte[0]));
+                slowDownloads.add(slowDownload);
+            }
+
+            final File downloaded = download(jar);
+
+            assertArrayEquals(Files.readAllBytes(jar.toPath()), Files.readAllBytes(downloaded.toPath()));
+            assertNull(results.load(downloaded, Cache.getDigest(downloaded)));
+        } finally {
+            slowDownloads.forEach(JarStreamVerifier::abandon);
+        }
+    }
+
+    private File download(final File jar) throws IOException {
+        final File downloaded = temporaryFolder.newFile("downloaded-" + jar.getName());
+        final JarStreamVerifier verifier = new JarStreamVerifier(results);
+        try (InputStream in = verifier.verifyWhileReading(new FileInputStream(jar)); OutputStream out = new FileOutputStream(downloaded)) {
+            copy(in, out);
+        }
+        verifier.complete(downloaded);
+        return downloaded;
+    }
+
+    private static void copy(final InputStream in, final OutputStream out) throws IOException {
+        final byte[] buffer = new byte[1000];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+    }
+
+    private File createJar(final boolean signatureFilesFirst) throws Exception {
+        final List<String> names = new ArrayList<>();
+        final List<byte[]> contents = new ArrayList<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            names.add("test/R" + i + ".txt");
+            contents.add(("content " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        final File jar = temporaryFolder.newFile(signatureFilesFirst ? "signed.jar" : "signed-last.jar");
+        SignedJarWriter.write(jar, names, contents, keyPair.getPrivateKey(), certificate, signatureFilesFirst);
+        return jar;
+    }
+}
@@ -0,0 +1,101 @@
+package net.sourceforge.jnlp.tools;
+
+import sun.security.pkcs.ContentInfo;
+import sun.security.pkcs.PKCS7;
+import sun.security.pkcs.SignerInfo;
+import sun.security.x509.AlgorithmId;
+import sun.security.x509.X500Name;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Writes jars signed like jarsigner does: the manifest lists the digests of the entries, the signature file
+ * lists the digests of the manifest and its sections, and the signature block signs the signature file.
+ */
+final class SignedJarWriter {
+
+    private SignedJarWriter() {
+    }
+
+    /**
+     * @param jar                 the file to write
+     * @param names               the names of the entries
+     * @param contents            the contents of the entries
+     * @param key                 the key to sign with
+     * @param certificate         the certificate of the key
+     * @param signatureFilesFirst whether the signature files come right after the manifest or after all other entries
+     */
+    static void write(final File jar, final List<String> names, final List<byte[]> contents, final PrivateKey key,
+                      final X509Certificate certificate, final boolean signatureFilesFirst) throws IOException, GeneralSecurityException {
+        final StringBuilder manifest = new StringBuilder("Manifest-Version: 1.0\r\nCreated-By: test\r\n\r\n");
+        final StringBuilder signatureFile = new StringBuilder("Signature-Version: 1.0\r\nCreated-By: test\r\n");
+        final StringBuilder sections = new StringBuilder();
+        for (int i = 0; i < names.size(); i++) {
+            final String section = "Name: " + names.get(i) + "\r\nSHA-256-Digest: " + digest(contents.get(i)) + "\r\n\r\n";
+            manifest.append(section);
+            sections.append("Name: ").append(names.get(i)).append("\r\nSHA-256-Digest: ").append(digest(bytes(section))).append("\r\n\r\n");
+        }
+        signatureFile.append("SHA-256-Digest-Manifest: ").append(digest(bytes(manifest))).append("\r\n\r\n").append(sections);
+
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            writeEntry(out, "META-INF/MANIFEST.MF", bytes(manifest));
+            if (signatureFilesFirst) {
+                writeSignatureFiles(out, bytes(signatureFile), key, certificate);
+            }
+            for (int i = 0; i < names.size(); i++) {
+                writeEntry(out, names.get(i), contents.get(i));
+            }
+            if (!signatureFilesFirst) {
+                writeSignatureFiles(out, bytes(signatureFile), key, certificate);
+            }
+        }
+    }
+
+    private static void writeSignatureFiles(final JarOutputStream out, final byte[] signatureFile, final PrivateKey key, final X509Certificate certificate) throws IOException, GeneralSecurityException {
+        writeEntry(out, "META-INF/TEST.SF", signatureFile);
+        writeEntry(out, "META-INF/TEST.RSA", signatureBlock(signatureFile, key, certificate));
+    }
+
+    private static byte[] signatureBlock(final byte[] signatureFile, final PrivateKey key, final X509Certificate certificate) throws IOException, GeneralSecurityException {
+        final Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(key);
+        signature.update(signatureFile);
+
+        final AlgorithmId digestAlgorithm = AlgorithmId.get("SHA-256");
+        final SignerInfo signerInfo = new SignerInfo(X500Name.asX500Name(certificate.getIssuerX500Principal()),
+                certificate.getSerialNumber(), digestAlgorithm, AlgorithmId.get("RSA"), signature.sign());
+        final PKCS7 block = new PKCS7(new AlgorithmId[]{digestAlgorithm}, new ContentInfo(ContentInfo.DATA_OID, null),
+                new X509Certificate[]{certificate}, new SignerInfo[]{signerInfo});
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        block.encodeSignedData(out);
+        return out.toByteArray();
+    }
+
+    private static void writeEntry(final JarOutputStream out, final String name, final byte[] content) throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        out.write(content);
+        out.closeEntry();
+    }
+
+    private static String digest(final byte[] content) throws GeneralSecurityException {
+        return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    private static byte[] bytes(final CharSequence text) {
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
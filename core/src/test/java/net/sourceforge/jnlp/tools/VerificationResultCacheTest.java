@@ -0,0 +1,78 @@
+package net.sourceforge.jnlp.tools;
+
+import net.adoptopenjdk.icedteaweb.testing.tools.CodeSignerCreator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sun.security.x509.X500Name;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.cert.CertPath;
+import java.security.cert.CertificateFactory;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class VerificationResultCacheTest {
+
+    private static final String DIGEST = "0123456789abcdef";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private VerificationResultCache cache;
+    private File jar;
+    private CertPath certPath;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new VerificationResultCache(temporaryFolder.newFolder("verification"));
+        jar = temporaryFolder.newFile("test.jar");
+        Files.write(jar.toPath(), new byte[]{1, 2, 3});
+
+        final CodeSignerCreator.KeyPair keyPair = new CodeSignerCreator.KeyPair("RSA", "SHA256withRSA", 1024);
+        certPath = CertificateFactory.getInstance("X.509").generateCertPath(
+                Collections.singletonList(keyPair.getSelfCertificate(new X500Name("CN=test"), new Date(), 365)));
+    }
+
+    @Test
+    public void storedResultIsLoaded() {
+        final Map<CertPath, Integer> signedEntries = new LinkedHashMap<>();
+        signedEntries.put(certPath, 3);
+        cache.store(jar, DIGEST, new JarSignerCounts(4, signedEntries));
+
+        final JarSignerCounts loaded = cache.load(jar, DIGEST);
+        assertEquals(4, loaded.getSignableEntries());
+        assertEquals(signedEntries, loaded.getSignedEntries());
+    }
+
+    @Test
+    public void resultOfUnsignedJarIsLoaded() {
+        cache.store(jar, DIGEST, new JarSignerCounts(1, Collections.emptyMap()));
+
+        final JarSignerCounts loaded = cache.load(jar, DIGEST);
+        assertEquals(1, loaded.getSignableEntries());
+        assertEquals(Collections.emptyMap(), loaded.getSignedEntries());
+    }
+
+    @Test
+    public void unknownDigestHasNoResult() {
+        cache.store(jar, DIGEST, new JarSignerCounts(1, Collections.singletonMap(certPath, 1)));
+
+        assertNull(cache.load(jar, "fedcba9876543210"));
+    }
+
+    @Test
+    public void changedJarHasNoResult() throws Exception {
+        cache.store(jar, DIGEST, new JarSignerCounts(1, Collections.singletonMap(certPath, 1)));
+
+        Files.write(jar.toPath(), new byte[]{1, 2, 3, 4});
+        assertNull(cache.load(jar, DIGEST));
+    }
+}
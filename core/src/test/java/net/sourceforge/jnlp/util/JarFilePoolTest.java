@@ -0,0 +1,103 @@
+package net.sourceforge.jnlp.util;
+
+import net.adoptopenjdk.icedteaweb.testing.util.FileTestUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class JarFilePoolTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void jarIsReusedAfterLeaseIsClosed() throws Exception {
+        final JarFilePool pool = new JarFilePool(2);
+        final File jar = createJar("a.jar");
+
+        final JarFile first;
+        try (JarFilePool.Lease lease = pool.acquire(jar)) {
+            first = lease.getJarFile();
+        }
+        try (JarFilePool.Lease lease = pool.acquire(jar)) {
+            assertSame(first, lease.getJarFile());
+            // still open and usable
+            assertNotNull(lease.getJarFile().getManifest());
+        }
+        assertEquals(1, pool.getOpenCount());
+    }
+
+    @Test
+    public void closingThePooledJarDoesNotCloseIt() throws Exception {
+        final JarFilePool pool = new JarFilePool(2);
+        final File jar = createJar("a.jar");
+
+        try (JarFilePool.Lease lease = pool.acquire(jar)) {
+            lease.getJarFile().close();
+            assertNotNull(lease.getJarFile().getManifest());
+        }
+    }
+
+    @Test
+    public void changedJarIsOpenedAgain() throws Exception {
+        final JarFilePool pool = new JarFilePool(2);
+        final File jar = createJar("a.jar");
+
+        final JarFile first;
+        try (JarFilePool.Lease lease = pool.acquire(jar)) {
+            first = lease.getJarFile();
+        }
+        assertEquals(true, jar.setLastModified(jar.lastModified() - 10_000));
+
+        try (JarFilePool.Lease lease = pool.acquire(jar)) {
+            assertNotSame(first, lease.getJarFile());
+        }
+        assertEquals(1, pool.getOpenCount());
+    }
+
+    @Test
+    public void numberOfIdleJarsIsBounded() throws Exception {
+        final JarFilePool pool = new JarFilePool(2);
+
+        for (int i = 0; i < 5; i++) {
+            try (JarFilePool.Lease ignored = pool.acquire(createJar(i + ".jar"))) {
+                // just use it
+            }
+        }
+        assertEquals(2, pool.getOpenCount());
+    }
+
+    @Test
+    public void jarsInUseAreNotEvicted() throws Exception {
+        final JarFilePool pool = new JarFilePool(0);
+
+        try (JarFilePool.Lease lease = pool.acquire(createJar("used.jar"))) {
+            try (JarFilePool.Lease ignored = pool.acquire(createJar("other.jar"))) {
+                assertEquals(2, pool.getOpenCount());
+            }
+            assertEquals(1, pool.getOpenCount());
+            assertNotNull(lease.getJarFile().getManifest());
+
+            pool.closeIdle();
+            assertEquals(1, pool.getOpenCount());
+        }
+        assertEquals(0, pool.getOpenCount());
+    }
+
+    private File createJar(String name) throws Exception {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        final File jar = new File(temporaryFolder.getRoot(), name);
+        FileTestUtils.createJarWithContents(jar, manifest);
+        return jar;
+    }
+}